@@ -9,6 +9,10 @@ public class AtomicAsVolatileJava {
     private final AtomicReference<Object> volatileAtomic = new AtomicReference<>();
     private final AtomicReference<Object> complicatedNormalAtomic = new AtomicReference<>();
     private final AtomicReference<Object> complicatedVolatileAtomic = new AtomicReference<>();
+    private final AtomicReference<Object> lazySetAtomic = new AtomicReference<>(); // lazySet() is a volatile write, too
+    // in batch mode, non-private fields are reported only for the whole project including tests
+    final AtomicReference<Object> packageVolatileAtomic = new AtomicReference<>();
+    final AtomicReference<Object> packageNormalAtomic = new AtomicReference<>();
 
     private volatile int v1;
     private volatile int v2;
@@ -16,6 +20,10 @@ public class AtomicAsVolatileJava {
     void someFunc() {
         normalAtomic.compareAndSet(new Object(), new Object());
         volatileAtomic.set(new Object());
+        lazySetAtomic.lazySet(new Object());
+        lazySetAtomic.get();
+        packageVolatileAtomic.set(new Object());
+        packageNormalAtomic.getAndSet(new Object());
 
         normalFU.getAndSet(this, 11);
         atomicAsVolatileFU.get(this);
@@ -6,6 +6,10 @@ import java.util.concurrent.atomic.AtomicReference
 class AtomicAsVolatileKotlin {
 
     private val normalAtomic = AtomicReference<Any>()
+    private val lazySetAtomic = AtomicReference<Any>() // lazySet() is a volatile write, too
+    // in batch mode, non-private properties are reported only for the whole project including tests
+    internal val internalVolatileAtomic = AtomicReference<Any>()
+    internal val internalNormalAtomic = AtomicReference<Any>()
     private val volatileAtomic: AtomicReference<Any>
     init {
         volatileAtomic = AtomicReference()
@@ -17,6 +21,10 @@ class AtomicAsVolatileKotlin {
     internal fun someFunc() {
         normalAtomic.compareAndSet(Any(), Any())
         volatileAtomic.set(Any())
+        lazySetAtomic.lazySet(Any())
+        lazySetAtomic.get()
+        internalVolatileAtomic.set(Any())
+        internalNormalAtomic.getAndSet(Any())
 
         normalFU.getAndSet(this, 11)
         atomicFUAsVolatile.get(this)
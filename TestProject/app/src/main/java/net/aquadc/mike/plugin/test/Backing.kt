@@ -17,4 +17,15 @@ class Backing {
     var zzz: List<String>
         get() = privZzz
         internal set(v) { privZzz = ArrayList(v) }
+
+    private var _count: Int? = null
+    val count: Int
+        get() = _count ?: yyy.size.also { _count = it }
+
+    private var _joined: String? = null
+    val joined: String
+        get() = _joined ?: run lazy@{
+            if (zzz.isEmpty()) return@lazy ""
+            zzz.joinToString()
+        }.also { _joined = it }
 }
@@ -0,0 +1,75 @@
+@file:Suppress("unused", "UNUSED_VARIABLE", "ReplaceGetOrSet", "ReplacePutWithAssignment")
+package net.aquadc.mike.plugin.test
+
+import android.app.Activity
+import android.content.Context
+import android.graphics.Canvas
+import android.os.Bundle
+import android.view.View
+
+class BoxCollectionActivity : Activity() {
+
+    private val seen = HashSet<Long>() // cold: weak warning; LongOpenHashSet or MutableLongSet
+    private val order = linkedSetOf<Int>() // IntLinkedOpenHashSet, no androidx one keeps insertion order
+
+    override fun onCreate(savedInstanceState: Bundle?) {
+        super.onCreate(savedInstanceState)
+        seen.add(1L)
+        if (2L in seen) seen.remove(2L)
+        order.add(1)
+    }
+}
+
+class BoxCollectionView(context: Context) : View(context) {
+
+    private val xs = ArrayList<Float>() // hot: onDraw(); FloatArrayList or MutableFloatList
+
+    override fun onDraw(canvas: Canvas) {
+        for (i in 0 until xs.size) canvas.drawPoint(xs[i], 0f, null)
+    }
+}
+
+fun boxCollections(keys: IntArray) {
+    val ids = ArrayList<Int>() // hot: a loop; IntArrayList or MutableIntList
+    for (k in keys) ids.add(k)
+
+    val iterated = mutableListOf<Int>() // IntArrayList, no androidx fix: iterated over
+    iterated.add(1)
+    for (i in iterated) println(i)
+
+    val mapped = ArrayList<Long>() // LongArrayList, no androidx fix: map() is not supported
+    mapped.add(1L)
+    mapped.map { it + 1 }
+
+    val counts = HashMap<Int, Int>() // hot: forEach { }; Int2IntOpenHashMap or MutableIntIntMap
+    keys.forEach { counts[it] = counts.getOrDefault(it, 0) + 1 }
+    val first = counts[keys[0]]!!
+
+    val names = HashMap<Int, String>() // Int2ObjectOpenHashMap<String> or MutableIntObjectMap<String>
+    names[1] = "one"
+    val one = names[1]
+
+    val sizes = HashMap<Int, Int>() // Int2ObjectOpenHashMap<Int> or MutableIntObjectMap<Int>: reads expect null
+    sizes[1] = 1
+    val size = sizes[2] ?: -1
+
+    val removed = HashMap<Int, Int>() // Int2ObjectOpenHashMap<Int>, no androidx fix: remove() result is used
+    removed.put(1, 1)
+    removed.remove(2)
+    val previous = removed.remove(1) ?: -1
+
+    val replaced = HashMap<Int, Int>() // Int2ObjectOpenHashMap<Int>, no androidx fix: put() result is used
+    replaced.put(1, 1)?.let(::println)
+
+    val readOnly = listOf<Int>() // reported, no fix: a mutable replacement changes semantics
+    val presized = ArrayList<Int>(16) // reported, no fix: has arguments
+    val booleans = HashSet<Boolean>() // reported, no fastutil fix, no androidx fix
+    val strings = ArrayList<String>() // ok
+    val nullable = ArrayList<Int?>() // ok
+}
+
+class BoxCollectionFields {
+    val exposed = ArrayList<Int>() // ok, not private
+    private val escapes = ArrayList<Int>() // IntArrayList, no androidx fix: escapes
+    fun expose(): List<Int> = escapes
+}
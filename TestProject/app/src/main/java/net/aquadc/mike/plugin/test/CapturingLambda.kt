@@ -0,0 +1,55 @@
+@file:Suppress("unused", "NOTHING_TO_INLINE", "ktNoinlineFunc")
+package net.aquadc.mike.plugin.test
+
+import android.content.Context
+import android.graphics.Canvas
+import android.os.Handler
+import android.os.Looper
+import android.view.View
+
+class CapturingLambda {
+
+    private val handler = Handler(Looper.getMainLooper())
+    private var total = 0
+
+    fun loop(items: List<String>, prefix: String) {
+        for (item in items) {
+            later { println(item) } // captures item
+            later { println(prefix + item) } // captures prefix, item
+            later { println("static") } // ok, non-capturing
+            later { total++ } // captures this only, hoist to property
+            later(delay = 1) { total-- } // hoist, keeps the named argument
+            inlined { println(item) } // ok, inlined
+            notInlined { println(item) } // captures item, noinline parameter
+            handler.post { total++ } // captures this, no fix: SAM-converted anyway
+        }
+    }
+
+    fun perElement(items: List<String>) {
+        items.forEach { item ->
+            later { println(item) } // captures item in forEach { }
+        }
+    }
+
+    fun once(item: String) {
+        later { println(item) } // ok, not hot
+    }
+
+}
+
+class CapturingLambdaView(context: Context) : View(context) {
+    override fun onDraw(canvas: Canvas) {
+        later { invalidate() } // ok here, reported by drawAllocation
+    }
+}
+
+fun later(delay: Int = 0, action: () -> Unit) {
+}
+
+inline fun inlined(action: () -> Unit) {
+    action()
+}
+
+inline fun notInlined(noinline action: () -> Unit) {
+    later(action = action)
+}
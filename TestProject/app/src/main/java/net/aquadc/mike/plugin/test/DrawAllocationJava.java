@@ -0,0 +1,57 @@
+package net.aquadc.mike.plugin.test;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.view.View;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@SuppressWarnings({"unused", "MismatchedQueryAndUpdateOfCollection"})
+public class DrawAllocationJava extends View {
+
+    private Paint cached;
+    private final List<Integer> sizes = new ArrayList<>();
+
+    public DrawAllocationJava(Context context) {
+        super(context);
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        Paint paint = new Paint(); // move to field and reset()
+        Rect bounds = new Rect(); // move to field and setEmpty()
+        Rect copy = new Rect(bounds); // no fix, has arguments
+        if (cached == null) cached = new Paint(); // ok, cached
+        canvas.drawRect(bounds, paint);
+        canvas.drawText("size: " + getWidth(), 0, 0, cached); // concatenation
+        canvas.drawText("size: " + 1, 0, 0, cached); // ok, constant
+        sizes.add(getWidth()); // boxing
+        sizes.add(1); // ok, cached box
+        post(() -> invalidate()); // captures this
+        post(() -> System.gc()); // ok, non-capturing
+        first();
+    }
+
+    private void first() {
+        float[] points = new float[4]; // in onDraw() → first()
+        second();
+    }
+
+    private void second() {
+        Rect r = new Rect(); // in onDraw() → first() → second()
+        third();
+    }
+
+    private void third() {
+        Rect r = new Rect(); // ok, deeper than calleeDepth
+    }
+
+    private void unused() {
+        Paint p = new Paint(); // ok, not called from drawing code
+        if (p.isAntiAlias()) throw new IllegalStateException("" + p); // ok, not hot anymore
+    }
+
+}
@@ -0,0 +1,53 @@
+@file:Suppress("unused", "OVERRIDE_DEPRECATION")
+package net.aquadc.mike.plugin.test
+
+import android.graphics.Canvas
+import android.graphics.ColorFilter
+import android.graphics.Paint
+import android.graphics.Path
+import android.graphics.PixelFormat
+import android.graphics.RectF
+import android.graphics.drawable.Drawable
+
+class DrawAllocationKt : Drawable() {
+
+    private var cached: Path? = null
+
+    override fun draw(canvas: Canvas) {
+        val paint = Paint() // move to field and reset()
+        val oval = RectF() // move to field and setEmpty()
+        var reassigned = Path() // no fix, var
+        val sized = RectF(0f, 0f, 1f, 1f) // no fix, has arguments
+        if (cached == null) cached = Path() // ok, cached
+        canvas.drawOval(oval, paint)
+        val points = floatArrayOf(0f, 1f) // allocation by floatArrayOf()
+        val empty = floatArrayOf() // ok, no arguments
+        bounds.run { canvas.drawRect(RectF(this), paint) } // inlined lambda, RectF allocated
+        first()
+    }
+
+    private fun first() {
+        val colors = IntArray(4) // in draw() → first()
+        second()
+    }
+
+    private fun second() {
+        val path = Path() // in draw() → first() → second()
+        third()
+    }
+
+    private fun third() {
+        val path = Path() // ok, deeper than calleeDepth
+    }
+
+    override fun setAlpha(alpha: Int) {
+        val paint = Paint() // ok, not drawing code
+    }
+
+    override fun setColorFilter(colorFilter: ColorFilter?) {
+    }
+
+    override fun getOpacity(): Int =
+        PixelFormat.TRANSLUCENT
+
+}
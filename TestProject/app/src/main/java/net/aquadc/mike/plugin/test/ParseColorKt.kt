@@ -3,6 +3,7 @@ package net.aquadc.mike.plugin.test
 
 import android.graphics.Color
 import android.graphics.Color.parseColor
+import android.graphics.Color.parseColor as pc
 
 
 private val black = Color.parseColor("black")
@@ -14,3 +15,4 @@ private val transparentOrange = 0x88FF8855.toInt()
 private val fuchsia = parseColor("fuchsia")
 private val bad = parseColor("nope")
 private val nonConst = parseColor(bad.toString())
+private val aliased = pc("#FF00FF00")
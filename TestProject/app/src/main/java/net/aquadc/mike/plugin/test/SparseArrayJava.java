@@ -0,0 +1,70 @@
+package net.aquadc.mike.plugin.test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@SuppressWarnings({"unused", "MismatchedQueryAndUpdateOfCollection", "FieldCanBeLocal"})
+public class SparseArrayJava {
+
+    private final Map<Integer, String> names = new HashMap<>(); // SparseArray
+    private final HashMap<Long, String> byId = new HashMap<>(16); // LongSparseArray
+    public final Map<Integer, String> exposed = new HashMap<>(); // no, not private
+
+    void names(int k, String v) {
+        names.put(k, v);
+        String s = names.get(k);
+        if (names.containsKey(k)) names.remove(k);
+        if (!names.containsKey(k + 1)) names.clear();
+        boolean empty = names.isEmpty();
+        int size = names.size();
+        for (String value : names.values()) System.out.println(value);
+        byId.put(1L, v);
+        byId.remove((long) k);
+    }
+
+    void counts(int[] keys) {
+        Map<Integer, Integer> counts = new HashMap<>(); // SparseIntArray, remove() becomes delete()
+        for (int key : keys) {
+            int count = counts.get(key);
+            counts.put(key, count + 1);
+        }
+        counts.remove(0);
+        for (int key : counts.keySet()) System.out.println(key);
+        for (Map.Entry<Integer, Integer> e : counts.entrySet()) {
+            int key = e.getKey(), count = e.getValue();
+            System.out.println(key + " " + count);
+        }
+    }
+
+    void boxedReads(int k) {
+        Map<Integer, Integer> m = new HashMap<>(); // SparseArray<Integer>: get() result may be null
+        m.put(k, 1);
+        Integer v = m.get(k);
+    }
+
+    void escapes() {
+        Map<Integer, String> m = new HashMap<>(); // no, escapes
+        m.put(1, "");
+        consume(m);
+    }
+
+    void modifiedInLoop() {
+        Map<Integer, String> m = new HashMap<>(); // no, modified while iterating
+        m.put(1, "");
+        for (int key : m.keySet()) m.put(key + 1, "");
+    }
+
+    void copied(Map<Integer, String> other) {
+        Map<Integer, String> m = new HashMap<>(other); // no, copy constructor
+        m.put(1, "");
+    }
+
+    void objectKeys(Integer k) {
+        Map<Integer, String> m = new HashMap<>(); // no, boxed key
+        m.put(k, "");
+    }
+
+    private static void consume(Map<Integer, String> m) {
+    }
+
+}
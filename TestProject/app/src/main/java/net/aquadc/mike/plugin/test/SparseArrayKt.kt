@@ -0,0 +1,71 @@
+@file:Suppress("unused", "UNUSED_VARIABLE", "ReplaceGetOrSet", "ReplacePutWithAssignment", "PlatformExtensionReceiverOfInline")
+package net.aquadc.mike.plugin.test
+
+class SparseArrayKt {
+
+    private val names = HashMap<Int, String>() // SparseArray
+    private val byId = hashMapOf<Long, String>() // LongSparseArray
+    val exposed = HashMap<Int, String>() // no, not private
+
+    fun names(k: Int, v: String) {
+        names[k] = v
+        names.put(k + 1, v)
+        val s = names[k]
+        val t = names.get(k)
+        if (names.containsKey(k)) names.remove(k)
+        if (k !in names) names.clear()
+        val empty = names.isEmpty() || !names.isNotEmpty()
+        val size = names.size
+        for ((key, value) in names) println("$key $value")
+        for (value in names.values) println(value)
+        byId[1L] = v
+        byId.remove(k.toLong())
+    }
+
+    fun counts(keys: IntArray) {
+        val counts = HashMap<Int, Int>(keys.size) // SparseIntArray, remove() becomes delete()
+        for (key in keys) counts[key] = counts[key]!! + 1
+        counts.remove(0)
+        if (0 in counts) println(counts[0]!!)
+        for (key in counts.keys) println(key)
+        for (e in counts.entries) println(e.key + e.value)
+    }
+
+    fun nullableReads(k: Int) {
+        val m = HashMap<Int, Int>() // SparseArray<Int>: get() result may be null
+        m[k] = 1
+        val v: Int? = m[k]
+    }
+
+    fun escapes() {
+        val m = HashMap<Int, String>() // no, escapes
+        m[1] = ""
+        consume(m)
+    }
+
+    fun compoundAssignment(k: Int) {
+        val m = HashMap<Int, String>() // no, m[k] += v
+        m[k] = ""
+        m[k] += "!"
+    }
+
+    fun modifiedInLoop() {
+        val m = HashMap<Int, String>() // no, modified while iterating
+        m[1] = ""
+        for (key in m.keys) m[key + 1] = ""
+    }
+
+    fun copied(other: Map<Int, String>) {
+        val m = HashMap(other) // no, copy constructor
+        m[1] = ""
+    }
+
+    fun nullableKeys(k: Int?) {
+        val m = HashMap<Int?, String>() // no, nullable key
+        m[k] = ""
+    }
+
+    private fun consume(m: Map<Int, String>) {
+    }
+
+}
@@ -2,8 +2,12 @@ package net.aquadc.mike.plugin.test;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.squareup.moshi.Moshi;
 import okhttp3.OkHttpClient;
 
+import java.text.SimpleDateFormat;
+import java.util.regex.Pattern;
+
 @SuppressWarnings({"FieldCanBeLocal", "unused"})
 public class UncachedJava {
 
@@ -40,4 +44,14 @@ public class UncachedJava {
         okHttp4 = new OkHttpClient.Builder().build();
     }
 
+    void factories(Object adapter, String pattern) {
+        new Moshi.Builder().build();
+        new Moshi.Builder().add(adapter).build(); // ok, not constant
+        new SimpleDateFormat("yyyy-MM-dd"); // reported with java.text.SimpleDateFormat in the list
+        new SimpleDateFormat(pattern); // ok, not constant
+        Pattern.compile("\\d+"); // reported with java.util.regex.Pattern#compile in the list
+        Pattern.compile("\\d+", Pattern.CASE_INSENSITIVE); // constant flags, too
+        Pattern.compile(pattern); // ok, not constant
+    }
+
 }
@@ -3,14 +3,25 @@
 )
 package net.aquadc.mike.plugin.test
 
+import android.app.Activity
+import android.os.Bundle
+import android.view.View
+import android.view.ViewGroup
+import androidx.recyclerview.widget.RecyclerView
 import com.google.gson.Gson
 import com.google.gson.GsonBuilder
+import com.squareup.moshi.Moshi
 import okhttp3.OkHttpClient
+import java.text.SimpleDateFormat
+import java.util.regex.Pattern
 
 private val GSON = Gson()
 private val GSON2 = GsonBuilder().create()
 private val OK_HTTP = OkHttpClient()
 private val OK_HTTP2 = OkHttpClient.Builder().build()
+private val MOSHI = Moshi.Builder().build()
+
+typealias Json = Gson
 
 class UncachedKotlin {
 
@@ -31,6 +42,17 @@ class UncachedKotlin {
         okHttp4 = OkHttpClient.Builder().build()
     }
 
+    fun factories(adapter: Any, pattern: String) {
+        Moshi.Builder().build()
+        Moshi.Builder().add(adapter).build() // ok, not constant
+        MOSHI.newBuilder().build() // ok, not fresh
+        SimpleDateFormat("yyyy-MM-dd") // reported with java.text.SimpleDateFormat in the list
+        SimpleDateFormat(pattern) // ok, not constant
+        Pattern.compile("\\d+") // reported with java.util.regex.Pattern#compile in the list
+        Pattern.compile(pattern) // ok, not constant
+        Json() // ok, calls are matched by simple name, aliases are not recognized
+    }
+
     companion object {
         private val GSON2 = Gson()
         private val OK_HTTP2 = OkHttpClient()
@@ -49,3 +71,36 @@ class UncachedKotlin {
         }
     }
 }
+
+class UncachedHotness {
+
+    fun loop(items: List<String>) {
+        for (item in items) Gson().toJson(item) // in a loop, hoist to field
+        items.forEach { Gson().toJson(it) } // in forEach { }
+    }
+
+    val byJson = Comparator<String> { a, b -> Gson().toJson(a).compareTo(Gson().toJson(b)) } // in Comparator { }
+
+    object ByLength : Comparator<String> {
+        override fun compare(a: String, b: String): Int =
+            GsonBuilder().create().toJson(a).length - b.length // in compare()
+    }
+
+    fun normal() = Gson() // neither hot nor cold: a warning with no hint
+
+    class Adapter : RecyclerView.Adapter<RecyclerView.ViewHolder>() {
+        override fun onCreateViewHolder(parent: ViewGroup, viewType: Int): RecyclerView.ViewHolder =
+            object : RecyclerView.ViewHolder(View(parent.context)) {}
+        override fun onBindViewHolder(holder: RecyclerView.ViewHolder, position: Int) {
+            holder.itemView.tag = Gson().toJson(position) // in onBindViewHolder()
+        }
+        override fun getItemCount(): Int = 0
+    }
+
+    class Screen : Activity() {
+        override fun onCreate(savedInstanceState: Bundle?) {
+            super.onCreate(savedInstanceState)
+            title = Gson().toJson(1) // once, weak warning
+        }
+    }
+}
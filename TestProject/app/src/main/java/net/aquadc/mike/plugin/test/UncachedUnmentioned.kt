@@ -0,0 +1,8 @@
+@file:Suppress("unused")
+package net.aquadc.mike.plugin.test
+
+import java.util.Date
+
+// This file never mentions expensive class or method names, the inspection skips it without building UAST.
+fun unmentioned(): List<Any> =
+    listOf(Json(), Date())
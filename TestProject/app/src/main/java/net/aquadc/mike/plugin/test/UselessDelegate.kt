@@ -0,0 +1,73 @@
+@file:Suppress("unused", "UNUSED_PARAMETER", "MemberVisibilityCanBePrivate")
+package net.aquadc.mike.plugin.test
+
+import android.app.Activity
+import android.content.Context
+import android.util.AttributeSet
+import android.view.View
+import androidx.annotation.MainThread
+import kotlin.properties.Delegates
+
+class LazyActivity : Activity() {
+    val text by lazy { intent.getStringExtra("text").orEmpty() } // synchronized lazy, NONE or backing field
+    val nullable by lazy { intent.getStringExtra("text") } // synchronized lazy, NONE only
+    val unsafe by lazy(LazyThreadSafetyMode.NONE) { intent.getStringExtra("text") } // ok
+    val early by lazy {
+        if (intent == null) return@lazy "" // return@lazy survives the backing field fix
+        intent.getStringExtra("early") ?: "@lazy" // and so does this string
+    }
+}
+
+class LazyView(context: Context, attrs: AttributeSet?) : View(context, attrs) {
+    val density by lazy { resources.displayMetrics.density } // synchronized lazy in View subclass
+}
+
+@MainThread
+class LazyController {
+    val name by lazy { javaClass.simpleName } // synchronized lazy in @MainThread class
+}
+
+class LazyEverywhere {
+    val name by lazy { javaClass.simpleName } // ok, may be used from any thread
+}
+
+class CheapLazy(private val param: String) {
+    val constant by lazy { 42 } // cheap, replace with initializer
+    val string by lazy { "whatever" } // cheap
+    val template by lazy { "$param!" } // ok, builds a string
+    val parameter by lazy { param } // cheap, replace with initializer
+    val member by lazy { late } // cheap, but may be not initialized yet, replace with getter
+    val computed by lazy { param.length } // ok
+    private val late = param.length
+}
+
+fun cheapLocalLazy(param: String) {
+    val p by lazy { param } // cheap, replace with initializer
+    println(p)
+}
+
+data class ObservableItem(val id: Long) {
+    var selected by Delegates.observable(false) { _, old, new -> // observable in data class, backing field
+        if (old == new) return@observable
+        println("$id: $new")
+    }
+    var checked by Delegates.observable(false) { property, _, _ -> println(property.name) } // no fix, property is used
+}
+
+class ObservableHolder {
+    var selected by Delegates.observable(false) { _, _, new -> println(new) } // ok
+}
+
+data class MapItem(val map: Map<String, Any?>) {
+    val name: String by map // map delegate in data class, read once
+    val id: Long by map
+}
+
+data class MutableMapItem(private val fields: MutableMap<String, Any?>) {
+    var name: String by fields // map delegate, no fix for var
+    val other: String by mutableMapOf<String, Any?>() // map delegate, no fix: not a constructor parameter
+}
+
+class MapHolder(map: Map<String, Any?>) {
+    val name: String by map // ok
+}
@@ -20,4 +20,27 @@ public class VarargsJava {
         new VarargsJava(1, new int[] { 2, 3 });
         new VarargsKotlin(1, new int[] { 2, 3 });
     }
+
+    // Allocation cost hints
+    static void allocationCost(List<String> items, int n) {
+        box(1000); // 1 alloc: boxing into T
+        box(1); // no hint, small boxes are cached
+        Arrays.asList(1, 2, 300); // 2 allocs: vararg array, boxing of 300
+        run(() -> System.out.println(n)); // 1 alloc: capturing lambda
+        run(() -> System.out.println()); // no hint, non-capturing lambda is a singleton
+        iterate(items); // 2+ allocs: Iterator, concatenation in a loop
+        count(new int[n]); // 1+ allocs: no Iterator for an array, concatenation in a loop
+    }
+
+    static <T> void box(T value) {}
+
+    static void run(Runnable action) {}
+
+    static void iterate(List<String> items) {
+        for (String item : items) System.out.println(item + "!"); // 1 alloc after items: Iterator
+    }
+
+    static void count(int[] numbers) {
+        for (int i : numbers) System.out.println("" + i); // no hint, an array needs no Iterator
+    }
 }
@@ -33,3 +33,33 @@ inline fun remember(vararg keys: Any, calculation: () -> Unit) {
 
 fun checkNoOob(a: Int, b: Int = 2, vararg c: Int) {
 }
+
+// Allocation cost hints
+fun allocationCost(items: List<String>, n: Int) {
+    box(1000) // 1 alloc: boxing into T
+    box(1) // no hint, small boxes are cached
+    later { println(n) } // 1 alloc: capturing lambda
+    later { println() } // no hint, non-capturing lambda is a singleton
+    iterate(items) // 2+ allocs: Iterator, concatenation in a loop
+    count(n) // 1+ allocs: no Iterator for a range, string template in a loop
+    pair(n) // 3 allocs: Pair, boxing of both n
+    pair(1) // 1 alloc: Pair, small boxes are cached
+    recursive(n) // 1 alloc: boxing into listOf(), the recursive call is not counted
+}
+
+fun <T> box(value: T) {
+}
+
+fun iterate(items: List<String>) {
+    for (item in items) println(item + "!") // 1 alloc after items: Iterator
+}
+
+fun count(n: Int) {
+    for (i in 0 until n) println("$i") // no hint, a range needs no Iterator
+}
+
+fun pair(n: Int): Pair<Int, Int> =
+    n to n
+
+fun recursive(n: Int): Int =
+    if (n == 0) 0 else recursive(n - 1) + listOf(n).size
@@ -0,0 +1,194 @@
+package net.aquadc.mike.plugin.android.res
+
+import android.graphics.PathDelegate
+import android.graphics.PixelFormat
+import it.unimi.dsi.fastutil.floats.FloatArrayList
+import it.unimi.dsi.fastutil.ints.IntArrayList
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.Warmup
+import org.openjdk.jmh.infra.Blackhole
+import org.w3c.dom.Element
+import java.awt.BasicStroke
+import java.awt.geom.AffineTransform
+import java.awt.geom.Area
+import java.awt.geom.Path2D
+import java.awt.geom.Rectangle2D
+import java.util.concurrent.TimeUnit
+import javax.xml.parsers.DocumentBuilderFactory
+
+/**
+ * Vector drawable analysis pipeline, stage by stage, without PSI: `./gradlew jmh`.
+ * Each invocation processes the whole corpus, allocation rate is reported by the gc profiler.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+open class VectorBenchmark {
+
+    /**
+     * `icons` are real Material icons, `illustration` is an 8×8 grid of them, overlapping each other,
+     * `text` is a few lines of text converted to outlines, i.e. lots of sub-paths and holes.
+     */
+    @Param("icons", "illustration", "text")
+    lateinit var corpus: String
+
+    private lateinit var paths: List<VectorPath>
+    private lateinit var cmds: List<List<Cmd>>
+    private lateinit var paintKeys: List<PaintKey>
+    private lateinit var painted: List<PaintedAreas>
+    private lateinit var viewport: Rectangle2D
+
+    @Setup fun setUp() {
+        val icons = ICONS.flatMap(::loadVector)
+        paths = when (corpus) {
+            "icons" -> icons
+            "illustration" -> illustration(icons)
+            "text" -> loadVector("text_outlines")
+            else -> throw IllegalArgumentException(corpus)
+        }
+        cmds = paths.map {
+            ArrayList<Cmd>().also { cmds -> PathDelegate.parse(it.pathData, ArrayList(), cmds, null, IntArrayList(), null, false) }
+        }
+        paintKeys = paths.map { path ->
+            PaintKey(
+                PathTag.parseGeometry(path.geometryKey()) as PathGeometry,
+                path.stroke, path.fillOpacity, path.strokeOpacity, evenOdd = false,
+                checkCaps = path.stroke != null, checkJoins = path.stroke != null, USEFUL_PRECISION,
+            )
+        }
+        painted = paintKeys.map(PathTag::paintAreas)
+        viewport = Rectangle2D.Double().also { viewport ->
+            painted.forEach { p -> (p.fills.orEmpty() + p.strokes.orEmpty()).forEach { it?.bounds2D?.let(viewport::add) } }
+        }
+    }
+
+    @Benchmark fun parse(bh: Blackhole) {
+        for (path in paths) {
+            val outlines = ArrayList<Path2D.Float>()
+            val cmds = ArrayList<Cmd>()
+            PathDelegate.parse(path.pathData, outlines, cmds, IntArrayList(), IntArrayList(), FloatArrayList(), false)
+            bh.consume(outlines)
+            bh.consume(cmds)
+        }
+    }
+
+    /** Note: [Cmd]s keep their [java.math.BigDecimal]s after the first run, like cached ones do in the IDE. */
+    @Benchmark fun shorten(bh: Blackhole) {
+        for (cmds in cmds)
+            bh.consume(cmds.shortened(USEFUL_PRECISION))
+    }
+
+    /** Parse, merge sub-paths, transform. Subtract [parse] to get merging cost. */
+    @Benchmark fun geometry(bh: Blackhole) {
+        for (path in paths)
+            bh.consume(PathTag.parseGeometry(path.geometryKey()))
+    }
+
+    @Benchmark fun toAreas(bh: Blackhole) {
+        for (key in paintKeys)
+            bh.consume(PathTag.paintAreas(key))
+    }
+
+    @Benchmark fun overdraw(bh: Blackhole) {
+        bh.consume(overdraw(approximate = false))
+    }
+
+    /** Same on a pixel grid, see [VectorCanvas]. */
+    @Benchmark fun overdrawApproximate(bh: Blackhole) {
+        bh.consume(overdraw(approximate = true))
+    }
+
+    private fun overdraw(approximate: Boolean): List<PaintedPath> {
+        val canvas = VectorCanvas(USEFUL_PRECISION, viewport.width.toFloat(), viewport.height.toFloat(), PIXEL_SIZE, approximate)
+        val noClips = emptyList<Area>()
+        return List(paths.size) { i ->
+            val path = paths[i]
+            val areas = painted[i]
+            PaintedPath(
+                areas.fills?.mapTo(ArrayList()) { it?.let(::Area) },
+                areas.strokes?.mapTo(ArrayList()) { it?.let(::Area) },
+                areas.opaque?.let(::Area),
+                path.fillColor, path.fillOpacity, path.strokeColor, path.strokeOpacity,
+            ).also {
+                canvas.clip(it, null, noClips, IntOpenHashSet())
+                canvas.paint(it)
+            }
+        }
+    }
+
+    private class VectorPath(
+        val pathData: String,
+        val matrix: AffineTransform?,
+        val fillColor: String?,
+        val fillOpacity: Int,
+        val strokeColor: String?,
+        val strokeOpacity: Int,
+        val stroke: BasicStroke?,
+    ) {
+        fun geometryKey() =
+            GeometryKey(pathData, trackRanges = true, evenOdd = false, mergeSubPaths = fillOpacity != PixelFormat.TRANSPARENT, matrix)
+        fun moved(matrix: AffineTransform, fillColor: String) =
+            VectorPath(pathData, matrix, fillColor, fillOpacity, strokeColor, strokeOpacity, stroke)
+    }
+
+    private companion object {
+        private const val USEFUL_PRECISION = 2
+        private const val PIXEL_SIZE = 1 / 6f // 1dp viewport unit at xxxhdpi, display size scaled by 1.5
+        private val ICONS = arrayOf("ic_android", "ic_favorite", "ic_home", "ic_search", "ic_settings", "stroked_timer")
+        private val COLORS = arrayOf("#FF3DDC84", "#FF000000", "#FF6200EE", "#806200EE")
+
+        /** Reads `<path>`s ignoring groups and clips, it's enough for our corpus. */
+        private fun loadVector(name: String): List<VectorPath> {
+            val doc = VectorBenchmark::class.java.getResourceAsStream("/vectors/$name.xml")!!.use {
+                DocumentBuilderFactory.newInstance().apply { isNamespaceAware = true }.newDocumentBuilder().parse(it)
+            }
+            val tags = doc.getElementsByTagName("path")
+            return List(tags.length) { i ->
+                val tag = tags.item(i) as Element
+                fun attr(name: String) = tag.getAttributeNS(ANDROID_NS, name).takeIf(String::isNotEmpty)
+                val fillColor = attr("fillColor")
+                val strokeColor = attr("strokeColor")
+                val strokeWidth = attr("strokeWidth")?.toFloat() ?: 0f
+                val strokeOpacity = if (strokeWidth == 0f) PixelFormat.TRANSPARENT else opacity(strokeColor)
+                VectorPath(
+                    attr("pathData")!!, null,
+                    fillColor, opacity(fillColor), strokeColor, strokeOpacity,
+                    if (strokeOpacity == PixelFormat.TRANSPARENT) null else BasicStroke(
+                        strokeWidth,
+                        if (attr("strokeLineCap") == "round") BasicStroke.CAP_ROUND else BasicStroke.CAP_BUTT,
+                        BasicStroke.JOIN_MITER,
+                    ),
+                )
+            }
+        }
+        private fun opacity(color: String?): Int = when {
+            color == null -> PixelFormat.TRANSPARENT
+            color.length == 9 && !color.startsWith("#FF", ignoreCase = true) -> PixelFormat.TRANSLUCENT
+            else -> PixelFormat.OPAQUE
+        }
+
+        private fun illustration(icons: List<VectorPath>): List<VectorPath> {
+            val size = 8
+            return List(size * size) { i ->
+                val (row, col) = i / size to i % size
+                icons[i % icons.size].moved(
+                    AffineTransform.getTranslateInstance(col * 18.0, row * 18.0), // 24×24 icons, overlap by 6
+                    COLORS[(row + col) % COLORS.size],
+                )
+            }
+        }
+    }
+}
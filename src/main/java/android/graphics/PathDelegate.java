@@ -11,7 +11,6 @@ import java.math.BigDecimal;
 import java.util.Arrays;
 import java.util.List;
 
-import static java.math.BigDecimal.ZERO;
 import static net.aquadc.mike.plugin.android.res.PathParseUtilKt.*;
 
 // I can see Path_Delegate and PathParser_Delegate, but they are not stable,
@@ -21,8 +20,6 @@ import static net.aquadc.mike.plugin.android.res.PathParseUtilKt.*;
 // Spec: https://www.w3.org/TR/SVG/paths.html
 
 public final class PathDelegate {
-    private static final BigDecimal[] EMPTY = new BigDecimal[0];
-    private static final BigDecimal TWO = new BigDecimal(2);
     private final List<? super Path2D.Float> paths;
     private final int windingRule;
     private Path2D.Float currentPath;
@@ -120,20 +117,18 @@ public final class PathDelegate {
      * Parses {@param pathData} SVG path data sub-paths into {@param paths}
      */
     public static void parse(
-            String pathData,
+            CharSequence pathData,
             List<? super Path2D.Float> paths,
             List<Cmd> cmds,
             @Nullable IntArrayList pathStarts, IntArrayList floatRanges, @Nullable FloatArrayList endPositions,
             boolean evenOdd
     ) throws PathError {
         PathDelegate delegate = new PathDelegate(paths, evenOdd ? Path2D.WIND_EVEN_ODD : Path2D.WIND_NON_ZERO);
-        BigDecimal[] state = new BigDecimal[6];
-        Arrays.fill(state, ZERO);
+        Decimals state = new Decimals();
         char prevCmd = 'm';
         Path2D.Float prevPath = null;
 
         int[] tmp = new int[1];
-        BigDecimal[] results = EMPTY;
         int start, end, pdLen;
         for (start = 0, end = 1, pdLen = pathData.length(); end < pdLen; start = end++) {
             end = nextCmd(pathData, end);
@@ -143,14 +138,14 @@ public final class PathDelegate {
 
             int len = endTrimmed - start;
             if (len > 0) {
-                if (results.length < len) results = new BigDecimal[len / 2 + 1/*bad estimation but it sort of works*/];
+                state.ensureCapacity(ARGS + len / 2 + 1/*bad estimation but it sort of works*/);
                 int rangesOffset = floatRanges.size();
-                int count = getFloats(pathData, start, endTrimmed, results, tmp, floatRanges);
+                int count = getFloats(pathData, start, endTrimmed, state, tmp, floatRanges);
                 char next = pathData.charAt(start);
                 float lastX = delegate.mLastX, lastY = delegate.mLastY;
                 if ((prevCmd == 'z' || prevCmd == 'Z') && (next != 'm' && next != 'M'))
-                    delegate.moveTo(state[0].floatValue(), state[1].floatValue());
-                addCommand(delegate, state, prevCmd, start, results, count, pathData, cmds, floatRanges, rangesOffset);
+                    delegate.moveTo(state.floatValue(X), state.floatValue(Y));
+                addCommand(delegate, state, prevCmd, start, count, pathData, cmds, floatRanges, rangesOffset);
                 prevCmd = next;
                 if (delegate.currentPath != null && prevPath != delegate.currentPath) {
                     if (pathStarts != null) pathStarts.add(start);
@@ -161,7 +156,7 @@ public final class PathDelegate {
         }
 
         if (end - start == 1 && start < pdLen) { // 'z' case, one last command
-            addCommand(delegate, state, prevCmd, start, EMPTY, 0, pathData, cmds, floatRanges, -1);
+            addCommand(delegate, state, prevCmd, start, 0, pathData, cmds, floatRanges, -1);
         }
         if (pathStarts != null) pathStarts.add(pdLen);
         if (endPositions != null) add(endPositions, delegate.mLastX, delegate.mLastY);
@@ -171,7 +166,7 @@ public final class PathDelegate {
         into.add(y);
     }
 
-    private static int nextCmd(String s, int end) {
+    private static int nextCmd(CharSequence s, int end) {
         for (int len = s.length(); end < len; end++) {
             char c = s.charAt(end);
             if (isCommand(c)) {
@@ -182,7 +177,7 @@ public final class PathDelegate {
         return end;
     }
 
-    private static boolean extract(String input, int start, int end, int[] outEndPosition) {
+    private static boolean extract(CharSequence input, int start, int end, int[] outEndPosition) {
         int currentIndex = start;
         boolean endWithNegOrDot = false;
         int dotAt = -1;
@@ -222,7 +217,7 @@ public final class PathDelegate {
     }
 
     private static int getFloats(
-            String input, int start, int end, BigDecimal[] results, int[] tmp,
+            CharSequence input, int start, int end, Decimals results, int[] tmp,
             IntArrayList floatRanges
     ) throws PathError {
         start++; // skip cmd
@@ -232,7 +227,7 @@ public final class PathDelegate {
                 boolean endWithNegOrDot = extract(input, start, end, tmp);
                 int endPosition = tmp[0];
                 if (start < endPosition) {
-                    results[count++] = new BigDecimal(input.substring(start, endPosition));
+                    results.parse(input, start, endPosition, ARGS + count++);
                     floatRanges.add(start);
                     floatRanges.add(endPosition);
                 }
@@ -245,199 +240,190 @@ public final class PathDelegate {
     }
 
     private static void addCommand(
-            PathDelegate path, BigDecimal[] current, char previousCmd, int position, BigDecimal[] val, int count,
-            String pathData, List<Cmd> cmds, IntArrayList floatRanges, int rangesOffset
+            PathDelegate path, Decimals d, char previousCmd, int position, int count,
+            CharSequence pathData, List<Cmd> cmds, IntArrayList floatRanges, int rangesOffset
     ) throws PathError {
         char cmd = pathData.charAt(position);
         Cmd.Param[] params = Cmd.paramsOf(cmd);
         if (params == null) {
             throw new PathError("Unsupported command '" + cmd + "'", TextRange.from(position, 1));
         }
-        BigDecimal currentX = current[0];
-        BigDecimal currentY = current[1];
-        BigDecimal ctrlPointX = current[2];
-        BigDecimal ctrlPointY = current[3];
-        BigDecimal currentSegmentStartX = current[4];
-        BigDecimal currentSegmentStartY = current[5];
         int incr = params.length;
         if (incr == 0) { // Zz
             path.close();
-            currentX = currentSegmentStartX;
-            currentY = currentSegmentStartY;
-            ctrlPointX = currentSegmentStartX;
-            ctrlPointY = currentSegmentStartY;
-            path.mLastX = currentSegmentStartX.floatValue();
-            path.mLastY = currentSegmentStartY.floatValue();
-            cmds.add(new Cmd(currentX, currentY, cmd, EMPTY, new Cmd.Src(pathData, floatRanges, -1)));
+            d.copy(X, SEGMENT_START_X);
+            d.copy(Y, SEGMENT_START_Y);
+            d.copy(CTRL_X, SEGMENT_START_X);
+            d.copy(CTRL_Y, SEGMENT_START_Y);
+            path.mLastX = d.floatValue(SEGMENT_START_X);
+            path.mLastY = d.floatValue(SEGMENT_START_Y);
+            cmds.add(d.cmd(cmd, ARGS, 0, new Cmd.Src(pathData, floatRanges, -1)));
             count = 0; // guard against passing arguments to Zz: skip the following loop
         }
 
         for (int k = 0; k < count; k += incr) {
-            if (k + incr >= val.length) {
+            if (k + incr > count) {
                 throw new PathError(
                     String.format(
                         "Missing arguments for '%s': provided %d, required %d %s",
                         cmd, count % params.length, params.length, Arrays.toString(params)
                     ),
-                    new TextRange(rangesOffset + 2 * k, floatRanges.getInt(rangesOffset + 2 * count - 1))
+                    new TextRange(floatRanges.getInt(rangesOffset + 2 * k), floatRanges.getInt(rangesOffset + 2 * count - 1))
                 );
             }
-            cmds.add(new Cmd(currentX, currentY, cmd, Arrays.copyOfRange(val, k, k + incr), new Cmd.Src(pathData, floatRanges, rangesOffset + 2 * k)));
-            BigDecimal reflectiveCtrlPointX;
-            BigDecimal reflectiveCtrlPointY;
+            int a = ARGS + k;
+            cmds.add(d.cmd(cmd, a, incr, new Cmd.Src(pathData, floatRanges, rangesOffset + 2 * k)));
             switch(cmd) {
                 case 'A':
-                    drawArc(path, currentX.floatValue(), currentY.floatValue(), val[k + 5].floatValue(), val[k + 6].floatValue(), val[k].floatValue(), val[k + 1].floatValue(), val[k + 2].floatValue(), val[k + 3].signum() != 0, val[k + 4].signum() != 0);
-                    currentX = val[k + 5];
-                    currentY = val[k + 6];
-                    ctrlPointX = currentX;
-                    ctrlPointY = currentY;
+                    drawArc(path, d.floatValue(X), d.floatValue(Y), d.floatValue(a + 5), d.floatValue(a + 6), d.floatValue(a), d.floatValue(a + 1), d.floatValue(a + 2), d.signum(a + 3) != 0, d.signum(a + 4) != 0);
+                    d.copy(X, a + 5);
+                    d.copy(Y, a + 6);
+                    d.copy(CTRL_X, X);
+                    d.copy(CTRL_Y, Y);
                     break;
                 case 'C':
-                    path.cubicTo(val[k].floatValue(), val[k + 1].floatValue(), val[k + 2].floatValue(), val[k + 3].floatValue(), val[k + 4].floatValue(), val[k + 5].floatValue());
-                    currentX = val[k + 4];
-                    currentY = val[k + 5];
-                    ctrlPointX = val[k + 2];
-                    ctrlPointY = val[k + 3];
+                    path.cubicTo(d.floatValue(a), d.floatValue(a + 1), d.floatValue(a + 2), d.floatValue(a + 3), d.floatValue(a + 4), d.floatValue(a + 5));
+                    d.copy(X, a + 4);
+                    d.copy(Y, a + 5);
+                    d.copy(CTRL_X, a + 2);
+                    d.copy(CTRL_Y, a + 3);
                     break;
                 case 'H':
-                    path.lineTo(val[k].floatValue(), currentY.floatValue());
-                    //                               ^^^^^^^^- This should be 0 according to the spec but works differently EVERYWHERE
-                    currentX = val[k];
+                    path.lineTo(d.floatValue(a), d.floatValue(Y));
+                    //                           ^^^^^^^^^^^^^^^- This should be 0 according to the spec but works differently EVERYWHERE
+                    d.copy(X, a);
                     break;
                 case 'L':
-                    path.lineTo(val[k].floatValue(), val[k + 1].floatValue());
-                    currentX = val[k];
-                    currentY = val[k + 1];
+                    path.lineTo(d.floatValue(a), d.floatValue(a + 1));
+                    d.copy(X, a);
+                    d.copy(Y, a + 1);
                     break;
                 case 'M':
-                    currentX = val[k];
-                    currentY = val[k + 1];
-                    path.moveTo(val[k].floatValue(), val[k + 1].floatValue());
-                    currentSegmentStartX = currentX;
-                    currentSegmentStartY = currentY;
+                    d.copy(X, a);
+                    d.copy(Y, a + 1);
+                    path.moveTo(d.floatValue(a), d.floatValue(a + 1));
+                    d.copy(SEGMENT_START_X, X);
+                    d.copy(SEGMENT_START_Y, Y);
                     cmd = 'L';
                     break;
                 case 'Q':
-                    path.quadTo(val[k].floatValue(), val[k + 1].floatValue(), val[k + 2].floatValue(), val[k + 3].floatValue());
-                    ctrlPointX = val[k];
-                    ctrlPointY = val[k + 1];
-                    currentX = val[k + 2];
-                    currentY = val[k + 3];
+                    path.quadTo(d.floatValue(a), d.floatValue(a + 1), d.floatValue(a + 2), d.floatValue(a + 3));
+                    d.copy(CTRL_X, a);
+                    d.copy(CTRL_Y, a + 1);
+                    d.copy(X, a + 2);
+                    d.copy(Y, a + 3);
                     break;
                 case 'S':
-                    reflectiveCtrlPointX = currentX;
-                    reflectiveCtrlPointY = currentY;
                     if (previousCmd == 'c' || previousCmd == 's' || previousCmd == 'C' || previousCmd == 'S') {
-                        reflectiveCtrlPointX = TWO.multiply(currentX).subtract(ctrlPointX);
-                        reflectiveCtrlPointY = TWO.multiply(currentY).subtract(ctrlPointY);
+                        d.twiceMinus(REFLECTIVE_CTRL_X, X, CTRL_X);
+                        d.twiceMinus(REFLECTIVE_CTRL_Y, Y, CTRL_Y);
+                    } else {
+                        d.copy(REFLECTIVE_CTRL_X, X);
+                        d.copy(REFLECTIVE_CTRL_Y, Y);
                     }
 
-                    path.cubicTo(reflectiveCtrlPointX.floatValue(), reflectiveCtrlPointY.floatValue(), val[k].floatValue(), val[k + 1].floatValue(), val[k + 2].floatValue(), val[k + 3].floatValue());
-                    ctrlPointX = val[k];
-                    ctrlPointY = val[k + 1];
-                    currentX = val[k + 2];
-                    currentY = val[k + 3];
+                    path.cubicTo(d.floatValue(REFLECTIVE_CTRL_X), d.floatValue(REFLECTIVE_CTRL_Y), d.floatValue(a), d.floatValue(a + 1), d.floatValue(a + 2), d.floatValue(a + 3));
+                    d.copy(CTRL_X, a);
+                    d.copy(CTRL_Y, a + 1);
+                    d.copy(X, a + 2);
+                    d.copy(Y, a + 3);
                     break;
                 case 'T':
-                    reflectiveCtrlPointX = currentX;
-                    reflectiveCtrlPointY = currentY;
                     if (previousCmd == 'q' || previousCmd == 't' || previousCmd == 'Q' || previousCmd == 'T') {
-                        reflectiveCtrlPointX = TWO.multiply(currentX).subtract(ctrlPointX);
-                        reflectiveCtrlPointY = TWO.multiply(currentY).subtract(ctrlPointY);
+                        d.twiceMinus(REFLECTIVE_CTRL_X, X, CTRL_X);
+                        d.twiceMinus(REFLECTIVE_CTRL_Y, Y, CTRL_Y);
+                    } else {
+                        d.copy(REFLECTIVE_CTRL_X, X);
+                        d.copy(REFLECTIVE_CTRL_Y, Y);
                     }
 
-                    path.quadTo(reflectiveCtrlPointX.floatValue(), reflectiveCtrlPointY.floatValue(), val[k].floatValue(), val[k + 1].floatValue());
-                    ctrlPointX = reflectiveCtrlPointX;
-                    ctrlPointY = reflectiveCtrlPointY;
-                    currentX = val[k];
-                    currentY = val[k + 1];
+                    path.quadTo(d.floatValue(REFLECTIVE_CTRL_X), d.floatValue(REFLECTIVE_CTRL_Y), d.floatValue(a), d.floatValue(a + 1));
+                    d.copy(CTRL_X, REFLECTIVE_CTRL_X);
+                    d.copy(CTRL_Y, REFLECTIVE_CTRL_Y);
+                    d.copy(X, a);
+                    d.copy(Y, a + 1);
                     break;
                 case 'V':
-                    path.lineTo(currentX.floatValue(), val[k].floatValue());
-                    //          ^^^^^^^^- This should be 0 according to the spec but works differently EVERYWHERE
-                    currentY = val[k];
+                    path.lineTo(d.floatValue(X), d.floatValue(a));
+                    //          ^^^^^^^^^^^^^^^- This should be 0 according to the spec but works differently EVERYWHERE
+                    d.copy(Y, a);
                     break;
                 case 'a':
-                    drawArc(path, currentX.floatValue(), currentY.floatValue(), val[k + 5].add(currentX).floatValue(), val[k + 6].add(currentY).floatValue(), val[k].floatValue(), val[k + 1].floatValue(), val[k + 2].floatValue(), val[k + 3].signum() != 0, val[k + 4].signum() != 0);
-                    currentX = currentX.add(val[k + 5]);
-                    currentY = currentY.add(val[k + 6]);
-                    ctrlPointX = currentX;
-                    ctrlPointY = currentY;
+                    float x0 = d.floatValue(X), y0 = d.floatValue(Y);
+                    d.add(X, X, a + 5);
+                    d.add(Y, Y, a + 6);
+                    drawArc(path, x0, y0, d.floatValue(X), d.floatValue(Y), d.floatValue(a), d.floatValue(a + 1), d.floatValue(a + 2), d.signum(a + 3) != 0, d.signum(a + 4) != 0);
+                    d.copy(CTRL_X, X);
+                    d.copy(CTRL_Y, Y);
                     break;
                 case 'c':
-                    path.rCubicTo(val[k].floatValue(), val[k + 1].floatValue(), val[k + 2].floatValue(), val[k + 3].floatValue(), val[k + 4].floatValue(), val[k + 5].floatValue());
-                    ctrlPointX = currentX.add(val[k + 2]);
-                    ctrlPointY = currentY.add(val[k + 3]);
-                    currentX = currentX.add(val[k + 4]);
-                    currentY = currentY.add(val[k + 5]);
+                    path.rCubicTo(d.floatValue(a), d.floatValue(a + 1), d.floatValue(a + 2), d.floatValue(a + 3), d.floatValue(a + 4), d.floatValue(a + 5));
+                    d.add(CTRL_X, X, a + 2);
+                    d.add(CTRL_Y, Y, a + 3);
+                    d.add(X, X, a + 4);
+                    d.add(Y, Y, a + 5);
                     break;
                 case 'h':
-                    path.rLineTo(val[k].floatValue(), 0f);
-                    currentX = currentX.add(val[k]);
+                    path.rLineTo(d.floatValue(a), 0f);
+                    d.add(X, X, a);
                     break;
                 case 'l':
-                    path.rLineTo(val[k].floatValue(), val[k + 1].floatValue());
-                    currentX = currentX.add(val[k]);
-                    currentY = currentY.add(val[k + 1]);
+                    path.rLineTo(d.floatValue(a), d.floatValue(a + 1));
+                    d.add(X, X, a);
+                    d.add(Y, Y, a + 1);
                     break;
                 case 'm':
-                    currentX = currentX.add(val[k]);
-                    currentY = currentY.add(val[k + 1]);
-                    path.rMoveTo(val[k].floatValue(), val[k + 1].floatValue());
-                    currentSegmentStartX = currentX;
-                    currentSegmentStartY = currentY;
+                    d.add(X, X, a);
+                    d.add(Y, Y, a + 1);
+                    path.rMoveTo(d.floatValue(a), d.floatValue(a + 1));
+                    d.copy(SEGMENT_START_X, X);
+                    d.copy(SEGMENT_START_Y, Y);
                     cmd = 'l';
                     break;
                 case 'q':
-                    path.rQuadTo(val[k].floatValue(), val[k + 1].floatValue(), val[k + 2].floatValue(), val[k + 3].floatValue());
-                    ctrlPointX = currentX.add(val[k]);
-                    ctrlPointY = currentY.add(val[k + 1]);
-                    currentX = currentX.add(val[k + 2]);
-                    currentY = currentY.add(val[k + 3]);
+                    path.rQuadTo(d.floatValue(a), d.floatValue(a + 1), d.floatValue(a + 2), d.floatValue(a + 3));
+                    d.add(CTRL_X, X, a);
+                    d.add(CTRL_Y, Y, a + 1);
+                    d.add(X, X, a + 2);
+                    d.add(Y, Y, a + 3);
                     break;
                 case 's':
-                    reflectiveCtrlPointX = ZERO;
-                    reflectiveCtrlPointY = ZERO;
                     if (previousCmd == 'c' || previousCmd == 's' || previousCmd == 'C' || previousCmd == 'S') {
-                        reflectiveCtrlPointX = currentX.subtract(ctrlPointX);
-                        reflectiveCtrlPointY = currentY.subtract(ctrlPointY);
+                        d.subtract(REFLECTIVE_CTRL_X, X, CTRL_X);
+                        d.subtract(REFLECTIVE_CTRL_Y, Y, CTRL_Y);
+                    } else {
+                        d.zero(REFLECTIVE_CTRL_X);
+                        d.zero(REFLECTIVE_CTRL_Y);
                     }
 
-                    path.rCubicTo(reflectiveCtrlPointX.floatValue(), reflectiveCtrlPointY.floatValue(), val[k].floatValue(), val[k + 1].floatValue(), val[k + 2].floatValue(), val[k + 3].floatValue());
-                    ctrlPointX = currentX.add(val[k]);
-                    ctrlPointY = currentY.add(val[k + 1]);
-                    currentX = currentX.add(val[k + 2]);
-                    currentY = currentY.add(val[k + 3]);
+                    path.rCubicTo(d.floatValue(REFLECTIVE_CTRL_X), d.floatValue(REFLECTIVE_CTRL_Y), d.floatValue(a), d.floatValue(a + 1), d.floatValue(a + 2), d.floatValue(a + 3));
+                    d.add(CTRL_X, X, a);
+                    d.add(CTRL_Y, Y, a + 1);
+                    d.add(X, X, a + 2);
+                    d.add(Y, Y, a + 3);
                     break;
                 case 't':
-                    reflectiveCtrlPointX = ZERO;
-                    reflectiveCtrlPointY = ZERO;
                     if (previousCmd == 'q' || previousCmd == 't' || previousCmd == 'Q' || previousCmd == 'T') {
-                        reflectiveCtrlPointX = currentX.subtract(ctrlPointX);
-                        reflectiveCtrlPointY = currentY.subtract(ctrlPointY);
+                        d.subtract(REFLECTIVE_CTRL_X, X, CTRL_X);
+                        d.subtract(REFLECTIVE_CTRL_Y, Y, CTRL_Y);
+                    } else {
+                        d.zero(REFLECTIVE_CTRL_X);
+                        d.zero(REFLECTIVE_CTRL_Y);
                     }
 
-                    path.rQuadTo(reflectiveCtrlPointX.floatValue(), reflectiveCtrlPointY.floatValue(), val[k].floatValue(), val[k + 1].floatValue());
-                    ctrlPointX = currentX.add(reflectiveCtrlPointX);
-                    ctrlPointY = currentY.add(reflectiveCtrlPointY);
-                    currentX = currentX.add(val[k]);
-                    currentY = currentY.add(val[k + 1]);
+                    path.rQuadTo(d.floatValue(REFLECTIVE_CTRL_X), d.floatValue(REFLECTIVE_CTRL_Y), d.floatValue(a), d.floatValue(a + 1));
+                    d.add(CTRL_X, X, REFLECTIVE_CTRL_X);
+                    d.add(CTRL_Y, Y, REFLECTIVE_CTRL_Y);
+                    d.add(X, X, a);
+                    d.add(Y, Y, a + 1);
                     break;
                 case 'v':
-                    path.rLineTo(0.0F, val[k].floatValue());
-                    currentY = currentY.add(val[k]);
+                    path.rLineTo(0.0F, d.floatValue(a));
+                    d.add(Y, Y, a);
             }
 
             previousCmd = cmd;
         }
-
-        current[0] = currentX;
-        current[1] = currentY;
-        current[2] = ctrlPointX;
-        current[3] = ctrlPointY;
-        current[4] = currentSegmentStartX;
-        current[5] = currentSegmentStartY;
     }
 
     private static void drawArc(
@@ -531,6 +517,160 @@ public final class PathDelegate {
         }
     }
 
+    // Decimals slots: current point, control point, current segment start, reflective control point, then arguments
+    private static final int X = 0, Y = 1, CTRL_X = 2, CTRL_Y = 3, SEGMENT_START_X = 4, SEGMENT_START_Y = 5,
+        REFLECTIVE_CTRL_X = 6, REFLECTIVE_CTRL_Y = 7, ARGS = 8;
+
+    /**
+     * Exact decimal arithmetic like {@link BigDecimal} has, but values are stored as primitive unscaled value and scale
+     * in reusable arrays, allocation-free. A value gets inflated into a real {@link BigDecimal}
+     * only when it doesn't fit into {@code long}, which never happens in sane pathData.
+     * Results, including scales, are the same as BigDecimal ones, thus outlines and {@link Cmd}s don't change a bit.
+     */
+    private static final class Decimals {
+        private static final long[] LONG_TEN_POWERS = {
+            1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L,
+            10_000_000_000L, 100_000_000_000L, 1_000_000_000_000L, 10_000_000_000_000L, 100_000_000_000_000L,
+            1_000_000_000_000_000L, 10_000_000_000_000_000L, 100_000_000_000_000_000L, 1_000_000_000_000_000_000L,
+        };
+        private static final float[] FLOAT_TEN_POWERS = { 1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f };
+
+        private long[] unscaled = new long[16];
+        private int[] scale = new int[16];
+        private BigDecimal[] inflated = new BigDecimal[16];
+
+        void ensureCapacity(int capacity) {
+            if (unscaled.length < capacity) {
+                unscaled = Arrays.copyOf(unscaled, capacity);
+                scale = Arrays.copyOf(scale, capacity);
+                inflated = Arrays.copyOf(inflated, capacity);
+            }
+        }
+
+        /** Parses a number like {@link BigDecimal#BigDecimal(String)} does. */
+        void parse(CharSequence input, int start, int end, int dst) throws NumberFormatException {
+            int i = start;
+            char c = input.charAt(i);
+            boolean negative = c == '-';
+            if (negative || c == '+') i++;
+
+            long value = 0;
+            int digits = 0, fraction = -1;
+            for (; i < end; i++) {
+                c = input.charAt(i);
+                if (c >= '0' && c <= '9') {
+                    if (value > (Long.MAX_VALUE - 9) / 10) break; // too long, let BigDecimal handle it
+                    value = 10 * value + (c - '0');
+                    digits++;
+                    if (fraction >= 0) fraction++;
+                } else if (c == '.' && fraction < 0) {
+                    fraction = 0;
+                } else {
+                    break;
+                }
+            }
+
+            int exponent = 0;
+            if (digits > 0 && i < end && (c == 'e' || c == 'E')) {
+                c = ++i < end ? input.charAt(i) : '\0';
+                boolean negativeExponent = c == '-';
+                if (negativeExponent || c == '+') i++;
+                int expStart = i;
+                for (; i < end && i - expStart < 9; i++) {
+                    c = input.charAt(i);
+                    if (c >= '0' && c <= '9') exponent = 10 * exponent + (c - '0');
+                    else break;
+                }
+                if (i == expStart) i = -1; // no exponent digits, malformed
+                if (negativeExponent) exponent = -exponent;
+            }
+
+            if (digits == 0 || i != end) { // anything unusual, including errors
+                inflated[dst] = new BigDecimal(input.subSequence(start, end).toString());
+            } else {
+                set(dst, negative ? -value : value, Math.max(fraction, 0) - exponent);
+            }
+        }
+
+        void zero(int dst) {
+            set(dst, 0L, 0);
+        }
+        void copy(int dst, int src) {
+            unscaled[dst] = unscaled[src];
+            scale[dst] = scale[src];
+            inflated[dst] = inflated[src];
+        }
+        void add(int dst, int a, int b) {
+            combine(dst, 1, a, 1, b);
+        }
+        void subtract(int dst, int a, int b) {
+            combine(dst, 1, a, -1, b);
+        }
+        void twiceMinus(int dst, int a, int b) {
+            combine(dst, 2, a, -1, b);
+        }
+
+        /** {@code dst = ma * a + mb * b} */
+        private void combine(int dst, long ma, int a, long mb, int b) {
+            if (inflated[a] == null && inflated[b] == null) {
+                int s = Math.max(scale[a], scale[b]);
+                long da = (long) s - scale[a], db = (long) s - scale[b];
+                if (da < LONG_TEN_POWERS.length && db < LONG_TEN_POWERS.length) {
+                    try {
+                        set(dst, Math.addExact(
+                            Math.multiplyExact(ma, Math.multiplyExact(unscaled[a], LONG_TEN_POWERS[(int) da])),
+                            Math.multiplyExact(mb, Math.multiplyExact(unscaled[b], LONG_TEN_POWERS[(int) db]))
+                        ), s);
+                        return;
+                    } catch (ArithmeticException ignored) {
+                        // overflow, inflate
+                    }
+                }
+            }
+            inflated[dst] = big(a).multiply(BigDecimal.valueOf(ma)).add(big(b).multiply(BigDecimal.valueOf(mb)));
+        }
+
+        private void set(int dst, long unscaled, int scale) {
+            this.unscaled[dst] = unscaled;
+            this.scale[dst] = scale;
+            this.inflated[dst] = null;
+        }
+
+        int signum(int i) {
+            BigDecimal big = inflated[i];
+            return big == null ? Long.signum(unscaled[i]) : big.signum();
+        }
+
+        /** Same as {@link BigDecimal#floatValue()}, including its fast path, but without allocation. */
+        float floatValue(int i) {
+            BigDecimal big = inflated[i];
+            if (big != null) return big.floatValue();
+            long u = unscaled[i];
+            int s = scale[i];
+            if (s == 0) return (float) u;
+            if (Math.abs(u) < 1L << 22) { // both operands are exact, the result is correctly rounded
+                if (s > 0 && s < FLOAT_TEN_POWERS.length) return (float) u / FLOAT_TEN_POWERS[s];
+                if (s < 0 && s > -FLOAT_TEN_POWERS.length) return (float) u * FLOAT_TEN_POWERS[-s];
+            }
+            return BigDecimal.valueOf(u, s).floatValue();
+        }
+
+        private BigDecimal big(int i) {
+            BigDecimal big = inflated[i];
+            return big == null ? BigDecimal.valueOf(unscaled[i], scale[i]) : big;
+        }
+
+        /** Creates a command starting at current point. {@link BigDecimal}s will be created lazily, if ever. */
+        Cmd cmd(char cmd, int argsAt, int argCount, Cmd.Src src) {
+            if (inflated[X] == null && inflated[Y] == null)
+                return new Cmd(unscaled[X], scale[X], unscaled[Y], scale[Y], cmd, src);
+
+            BigDecimal[] args = new BigDecimal[argCount];
+            for (int i = 0; i < argCount; i++) args[i] = big(argsAt + i);
+            return new Cmd(big(X), big(Y), cmd, args, src);
+        }
+    }
+
     public static final class PathError extends Exception {
         public final TextRange at;
         PathError(String message, TextRange at) {
@@ -145,6 +145,66 @@ public class Shapes
         return area;
     }
 
+    /**
+     * Mike-ADDED: computes the largest absolute area of closed sub-shapes without flattening.
+     * Signed areas of line, quadratic, and cubic segments are exact by Green's theorem,
+     * unclosed sub-shapes are ignored like in {@link #computeRegions(Shape, double)}.
+     *
+     * @param shape The shape
+     * @return The area of the largest sub-shape
+     */
+    public static double computeMaxSubShapeArea(Shape shape) {
+        PathIterator pi = shape.getPathIterator(null);
+        double[] c = new double[6];
+        double firstX = 0, firstY = 0, x = 0, y = 0;
+        double sum = 0, max = 0; // doubled signed area of the current sub-shape
+        while (!pi.isDone()) {
+            switch (pi.currentSegment(c)) {
+                case PathIterator.SEG_MOVETO:
+                    firstX = x = c[0];
+                    firstY = y = c[1];
+                    sum = 0;
+                    break;
+
+                case PathIterator.SEG_LINETO:
+                    sum += cross(x, y, c[0], c[1]);
+                    x = c[0];
+                    y = c[1];
+                    break;
+
+                case PathIterator.SEG_QUADTO:
+                    sum += (2 * cross(x, y, c[0], c[1]) + 2 * cross(c[0], c[1], c[2], c[3]) + cross(x, y, c[2], c[3])) / 3;
+                    x = c[2];
+                    y = c[3];
+                    break;
+
+                case PathIterator.SEG_CUBICTO:
+                    sum += (6 * cross(x, y, c[0], c[1]) + 3 * cross(x, y, c[2], c[3]) + cross(x, y, c[4], c[5]) +
+                        3 * cross(c[0], c[1], c[2], c[3]) + 3 * cross(c[0], c[1], c[4], c[5]) + 6 * cross(c[2], c[3], c[4], c[5])) / 10;
+                    x = c[4];
+                    y = c[5];
+                    break;
+
+                case PathIterator.SEG_CLOSE:
+                    sum += cross(x, y, firstX, firstY);
+                    max = Math.max(max, Math.abs(sum));
+                    x = firstX;
+                    y = firstY;
+                    sum = 0;
+                    break;
+
+                default:
+                    throw new AssertionError(
+                            "Invalid segment in path!");
+            }
+            pi.next();
+        }
+        return 0.5 * max;
+    }
+    private static double cross(double x0, double y0, double x1, double y1) {
+        return x0 * y1 - x1 * y0;
+    }
+
     // Mike-REMOVED public static double computeLength(Shape shape, double flatness)
 
     /**
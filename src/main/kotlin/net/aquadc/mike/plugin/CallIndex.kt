@@ -0,0 +1,77 @@
+package net.aquadc.mike.plugin
+
+import com.intellij.psi.PsiElement
+import com.intellij.psi.PsiExpressionStatement
+import com.intellij.psi.PsiFile
+import com.intellij.psi.util.CachedValueProvider
+import com.intellij.psi.util.CachedValuesManager
+import com.intellij.psi.util.PsiModificationTracker
+import org.jetbrains.uast.UBinaryExpression
+import org.jetbrains.uast.UCallExpression
+import org.jetbrains.uast.UExpression
+import org.jetbrains.uast.UReferenceExpression
+import org.jetbrains.uast.UResolvable
+import org.jetbrains.uast.UastCallKind
+import org.jetbrains.uast.toUElement
+import org.jetbrains.uast.visitor.AbstractUastVisitor
+
+/**
+ * Calls and comparisons of a file, converted to UAST once and shared by all [FunctionCallVisitor]s.
+ * Each call is resolved lazily, at most once, and only if some inspection is interested in its name.
+ */
+class CallIndex internal constructor(file: PsiFile) {
+
+    class Call internal constructor(
+        /** [UCallExpression], or [UBinaryExpression] for comparisons */
+        val node: UExpression,
+    ) {
+        val kind: UastCallKind
+            get() = (node as? UCallExpression)?.kind ?: UastCallKind.METHOD_CALL
+        val operator: String?
+            get() = (node as? UBinaryExpression)?.operatorIdentifier?.name
+        val receiver: UExpression?
+            get() = if (node is UCallExpression) node.receiver else (node as UBinaryExpression).leftOperand
+        val methodName: String? by lazy(LazyThreadSafetyMode.PUBLICATION) {
+            if (node is UCallExpression) (if (node.kind == UastCallKind.CONSTRUCTOR_CALL) "<init>" else node.methodName)
+            else "compareTo"
+        }
+        val declaringClassFqn: String? by lazy(LazyThreadSafetyMode.PUBLICATION) {
+            (if (node is UBinaryExpression) node.leftOperand as UReferenceExpression else node as UResolvable)
+                .resolvedClassFqn
+        }
+        val valueArguments: List<UExpression> =
+            if (node is UCallExpression) {
+                if (node.valueArgumentCount == 0) emptyList() else object : AbstractList<UExpression>() {
+                    override val size: Int get() = node.valueArgumentCount
+                    override fun get(index: Int): UExpression = node.valueArguments[index]
+                }
+            } else listOf((node as UBinaryExpression).rightOperand)
+    }
+
+    private val calls = HashMap<PsiElement, Call>()
+
+    init {
+        file.toUElement()?.accept(object : AbstractUastVisitor() {
+            override fun visitCallExpression(node: UCallExpression): Boolean {
+                node.sourcePsi?.takeIf { it !is PsiExpressionStatement }?.let { calls[it] = Call(node) }
+                return false
+            }
+            override fun visitBinaryExpression(node: UBinaryExpression): Boolean {
+                val op = node.operatorIdentifier?.name
+                if ((op == "<" || op == "<=" || op == ">" || op == ">=") && node.leftOperand is UReferenceExpression)
+                    node.sourcePsi?.let { calls[it] = Call(node) }
+                return false
+            }
+        })
+    }
+
+    /** @return a call or a comparison which [src] is the source of */
+    operator fun get(src: PsiElement): Call? =
+        calls[src]
+
+}
+
+val PsiFile.callIndex: CallIndex
+    get() = CachedValuesManager.getCachedValue(this) {
+        CachedValueProvider.Result.create(CallIndex(this), PsiModificationTracker.getInstance(project))
+    }
@@ -41,6 +41,9 @@ import net.aquadc.mike.plugin.NamedReplacementFix
 import net.aquadc.mike.plugin.PsiType_INT
 import net.aquadc.mike.plugin.UastInspection
 import net.aquadc.mike.plugin.fixes
+import net.aquadc.mike.plugin.perf.Instrumentation
+import net.aquadc.mike.plugin.perf.Sample
+import net.aquadc.mike.plugin.perf.measure
 import org.jetbrains.kotlin.idea.KotlinLanguage
 import org.jetbrains.kotlin.idea.caches.resolve.analyze
 import org.jetbrains.kotlin.idea.structuralsearch.visitor.KotlinRecursiveElementWalkingVisitor
@@ -76,7 +79,7 @@ import org.jetbrains.kotlin.KtNodeTypes.INTEGER_CONSTANT as KT_INTEGER_CONSTANT
 class ConstantParseColor : UastInspection(), CleanupLocalInspectionTool {
     override fun uVisitor(
         holder: ProblemsHolder, isOnTheFly: Boolean,
-    ): AbstractUastNonRecursiveVisitor = object : FunctionCallVisitor() {
+    ): AbstractUastNonRecursiveVisitor = object : FunctionCallVisitor(names = setOf("parseColor")) {
         override fun visitCallExpr(
             node: UExpression, src: PsiElement, kind: UastCallKind, operator: String?,
             declaringClassFqn: String, receiver: UExpression?, methodName: String, valueArguments: List<UExpression>,
@@ -250,8 +253,11 @@ class GutterColorPreview : LineMarkerProviderDescriptor() {
  * @author Mike Gorünóv
  */
 class ColorIntLiteralFolding : FoldingBuilderEx() {
-    override fun buildFoldRegions(root: PsiElement, document: Document, quick: Boolean): Array<FoldingDescriptor> {
-        if (quick || (root !is PsiJavaFile && root !is KtFile)) return FoldingDescriptor.EMPTY
+    override fun buildFoldRegions(root: PsiElement, document: Document, quick: Boolean): Array<FoldingDescriptor> =
+        if (quick || (root !is PsiJavaFile && root !is KtFile)) FoldingDescriptor.EMPTY
+        else Instrumentation.sample("ColorIntLiteralFolding", Sample.Kind.FOLDING, root.containingFile).measure { buildFoldRegions(root) }
+
+    private fun buildFoldRegions(root: PsiElement): Array<FoldingDescriptor> {
         val regions = SmartList<FoldingDescriptor>()
         when (root) {
             is PsiJavaFile -> root.accept(object : JavaRecursiveElementWalkingVisitor() {
@@ -43,14 +43,14 @@ class ReflectPropAnimInspection : UastInspection(), CleanupLocalInspectionTool {
 
     override fun uVisitor(
         holder: ProblemsHolder, isOnTheFly: Boolean,
-    ): AbstractUastNonRecursiveVisitor = object : FunctionCallVisitor() {
+    ): AbstractUastNonRecursiveVisitor = object : FunctionCallVisitor(names = MATCHERS.names) {
 
         override fun visitCallExpr(
             node: UExpression, src: PsiElement, kind: UastCallKind, operator: String?,
             declaringClassFqn: String, receiver: UExpression?, methodName: String, valueArguments: List<UExpression>,
         ): Boolean {
             node.sourcePsi?.let { srcPsi ->
-                MATCHERS_TO_FIXES.firstOrNull { it.tryReport(holder, valueArguments, srcPsi) }
+                MATCHERS.indexOfFirst(srcPsi) { MATCHERS_TO_FIXES[it].tryReport(holder, valueArguments, srcPsi) }
             }
 
             return true
@@ -58,14 +58,13 @@ class ReflectPropAnimInspection : UastInspection(), CleanupLocalInspectionTool {
     }
 
     private class MatcherToFix(
-        private val matcher: CallMatcher,
+        val matcher: CallMatcher,
         private val isStandardViewProperty: ArgsPredicate,
         private val argIndices: IntArray,
         private val replaceMethodWith: String?, // null: don't; "": get rid of; "$name": name
     ) {
+        /** Called for calls matched by [matcher]. */
         fun tryReport(holder: ProblemsHolder, args: List<UExpression>, srcPsi: PsiElement): Boolean {
-            if (!matcher.test(srcPsi)) return false
-
             val replacements = if (isStandardViewProperty(args) && argIndices.all { i -> args[i].sourcePsi != null })
                 argIndices.mapNullize { argIndex ->
                     args[argIndex].evaluateString()?.let { VIEW_PROPERTY_FIXES[it.replaceFirstChar(Char::lowercase)] }
@@ -220,6 +219,7 @@ class ReflectPropAnimInspection : UastInspection(), CleanupLocalInspectionTool {
             "scaleX" to "SCALE_X",
             "scaleY" to "SCALE_Y",
         )
+        private val MATCHERS = CallMatchers(*Array(MATCHERS_TO_FIXES.size) { MATCHERS_TO_FIXES[it].matcher })
     }
 
 }
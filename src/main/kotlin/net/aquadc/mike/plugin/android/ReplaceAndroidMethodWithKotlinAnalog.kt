@@ -11,7 +11,8 @@ import com.intellij.psi.PsiElementVisitor
 import com.intellij.psi.codeStyle.CodeStyleManager
 import com.intellij.psi.util.parentOfType
 import com.siyeh.ig.callMatcher.CallMatcher
-import net.aquadc.mike.plugin.test
+import net.aquadc.mike.plugin.CallMatchers
+import net.aquadc.mike.plugin.perf.instrumented
 import org.jetbrains.kotlin.idea.base.resources.KotlinBundle
 import org.jetbrains.kotlin.idea.caches.resolve.analyze
 import org.jetbrains.kotlin.idea.core.ShortenReferences
@@ -35,7 +36,7 @@ class ReplaceAndroidMethodWithKotlinAnalog : LocalInspectionTool(), CleanupLocal
     override fun buildVisitor(
         holder: ProblemsHolder, isOnTheFly: Boolean,
     ): PsiElementVisitor = callExpressionVisitor { call: KtCallExpression ->
-        val which = matchers.indexOfFirst { it.test(call) }
+        val which = matchers.indexOfFirst(call)
         when (which) {
             0, 1 -> call.valueArgumentList!!.arguments.let { (delimiterArg, tokensArg) ->
                 val delimiter = delimiterArg.getArgumentExpression()
@@ -93,7 +94,7 @@ class ReplaceAndroidMethodWithKotlinAnalog : LocalInspectionTool(), CleanupLocal
                 }
             )
         }
-    }
+    }.instrumented(this, holder)
 
     private companion object {
         private const val TextUtils = "android.text.TextUtils"
@@ -108,7 +109,7 @@ class ReplaceAndroidMethodWithKotlinAnalog : LocalInspectionTool(), CleanupLocal
         private val isEmpty = CallMatcher.staticCall(TextUtils, "isEmpty").parameterTypes(JAVA_LANG_CHAR_SEQUENCE/*?*/) // -> boolean
         private val equals = CallMatcher.staticCall(TextUtils, "equals").parameterTypes(JAVA_LANG_CHAR_SEQUENCE/*?*/, JAVA_LANG_CHAR_SEQUENCE/*?*/) // -> boolean
 
-        private val matchers = arrayOf(
+        private val matchers = CallMatchers(
             joinArray, joinIterable,
             splitWithStr, splitWithPat,
             isEmpty, equals,
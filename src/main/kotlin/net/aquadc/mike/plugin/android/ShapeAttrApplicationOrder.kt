@@ -28,7 +28,7 @@ class ShapeAttrApplicationOrder : UastInspection() {
 
     override fun uVisitor(
         holder: ProblemsHolder, isOnTheFly: Boolean,
-    ): AbstractUastNonRecursiveVisitor = object : FunctionCallVisitor(assignment = true) {
+    ): AbstractUastNonRecursiveVisitor = object : FunctionCallVisitor(assignment = true, names = setOf("setCornerRadius", "setCornerRadii")) {
 
         override fun visitCallExpr(
             node: UExpression, src: PsiElement, kind: UastCallKind, operator: String?,
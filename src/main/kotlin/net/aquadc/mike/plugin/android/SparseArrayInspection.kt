@@ -0,0 +1,462 @@
+package net.aquadc.mike.plugin.android
+
+import com.intellij.codeInspection.ProblemDescriptor
+import com.intellij.codeInspection.ProblemsHolder
+import com.intellij.openapi.project.Project
+import com.intellij.psi.JavaPsiFacade
+import com.intellij.psi.JavaTokenType
+import com.intellij.psi.PsiAssignmentExpression
+import com.intellij.psi.PsiBlockStatement
+import com.intellij.psi.PsiClassType
+import com.intellij.psi.PsiCodeBlock
+import com.intellij.psi.PsiConditionalExpression
+import com.intellij.psi.PsiElement
+import com.intellij.psi.PsiExpression
+import com.intellij.psi.PsiExpressionStatement
+import com.intellij.psi.PsiField
+import com.intellij.psi.PsiForeachStatement
+import com.intellij.psi.PsiLambdaExpression
+import com.intellij.psi.PsiLocalVariable
+import com.intellij.psi.PsiMethodCallExpression
+import com.intellij.psi.PsiModifier
+import com.intellij.psi.PsiNewExpression
+import com.intellij.psi.PsiParenthesizedExpression
+import com.intellij.psi.PsiPolyadicExpression
+import com.intellij.psi.PsiPrefixExpression
+import com.intellij.psi.PsiPrimitiveType
+import com.intellij.psi.PsiReferenceExpression
+import com.intellij.psi.PsiStatement
+import com.intellij.psi.PsiTypeElement
+import com.intellij.psi.PsiVariable
+import com.intellij.psi.codeStyle.CodeStyleManager
+import com.intellij.psi.codeStyle.JavaCodeStyleManager
+import com.intellij.psi.search.LocalSearchScope
+import com.intellij.psi.search.searches.ReferencesSearch
+import com.intellij.psi.tree.TokenSet
+import com.intellij.psi.util.PsiTreeUtil
+import com.siyeh.ig.psiutils.ExpectedTypeUtils
+import net.aquadc.mike.plugin.NamedLocalQuickFix
+import net.aquadc.mike.plugin.UastInspection
+import org.jetbrains.kotlin.idea.caches.resolve.analyze
+import org.jetbrains.kotlin.idea.core.ShortenReferences
+import org.jetbrains.kotlin.js.descriptorUtils.nameIfStandardType
+import org.jetbrains.kotlin.lexer.KtTokens
+import org.jetbrains.kotlin.psi.KtArrayAccessExpression
+import org.jetbrains.kotlin.psi.KtBinaryExpression
+import org.jetbrains.kotlin.psi.KtBinaryExpressionWithTypeRHS
+import org.jetbrains.kotlin.psi.KtBlockExpression
+import org.jetbrains.kotlin.psi.KtCallExpression
+import org.jetbrains.kotlin.psi.KtContainerNode
+import org.jetbrains.kotlin.psi.KtDotQualifiedExpression
+import org.jetbrains.kotlin.psi.KtElement
+import org.jetbrains.kotlin.psi.KtExpression
+import org.jetbrains.kotlin.psi.KtForExpression
+import org.jetbrains.kotlin.psi.KtIsExpression
+import org.jetbrains.kotlin.psi.KtNameReferenceExpression
+import org.jetbrains.kotlin.psi.KtPrefixExpression
+import org.jetbrains.kotlin.psi.KtProperty
+import org.jetbrains.kotlin.psi.KtPsiFactory
+import org.jetbrains.kotlin.psi.KtQualifiedExpression
+import org.jetbrains.kotlin.psi.KtThisExpression
+import org.jetbrains.kotlin.psi.KtTypeReference
+import org.jetbrains.kotlin.psi.KtUnaryExpression
+import org.jetbrains.kotlin.psi.psiUtil.isPrivate
+import org.jetbrains.kotlin.renderer.DescriptorRenderer
+import org.jetbrains.kotlin.types.checker.SimpleClassicTypeSystemContext.getClassFqNameUnsafe
+import org.jetbrains.uast.UField
+import org.jetbrains.uast.ULocalVariable
+import org.jetbrains.uast.UVariable
+import org.jetbrains.uast.visitor.AbstractUastNonRecursiveVisitor
+
+/**
+ * @author Mike Gorünóv
+ */
+class SparseArrayInspection : UastInspection() {
+
+    override fun uVisitor(
+        holder: ProblemsHolder, isOnTheFly: Boolean,
+    ): AbstractUastNonRecursiveVisitor? {
+        if (JavaPsiFacade.getInstance(holder.project).findClass(Target.SPARSE.fqn, holder.file.resolveScope) == null)
+            return null // not an Android module
+
+        return object : AbstractUastNonRecursiveVisitor() {
+            override fun visitVariable(node: UVariable): Boolean {
+                if (node !is UField && node !is ULocalVariable) return true
+                val (anchor, plan) = when (val src = node.sourcePsi) {
+                    is KtProperty -> src.nameIdentifier to kotlinPlan(src)
+                    is PsiVariable -> src.nameIdentifier to javaPlan(src)
+                    else -> return true
+                }
+                if (anchor != null && plan != null) holder.registerProblem(
+                    anchor,
+                    "Map with ${plan.key} keys can be replaced with ${plan.target.simpleName}",
+                    MigrateFix(plan.target.simpleName),
+                )
+                return true
+            }
+        }
+    }
+
+    private class MigrateFix(name: String) : NamedLocalQuickFix("Replace with $name") {
+        override fun applyFix(project: Project, descriptor: ProblemDescriptor) {
+            val plan = when (val variable = descriptor.psiElement.parent) {
+                is KtProperty -> kotlinPlan(variable)
+                is PsiVariable -> javaPlan(variable)
+                else -> null
+            } ?: return
+            plan.rewrites
+                .sortedByDescending { it.first.textRange.startOffset }
+                .forEach { (element, text) -> replace(project, element, text) }
+        }
+
+        private fun replace(project: Project, element: PsiElement, text: String) {
+            val java = JavaPsiFacade.getElementFactory(project)
+            val replaced = when (element) {
+                is PsiTypeElement -> element.replace(java.createTypeElementFromText(text, element))
+                is PsiStatement -> element.replace(java.createStatementFromText(text, element))
+                is PsiExpression -> element.replace(java.createExpressionFromText(text, element))
+                is KtTypeReference -> element.replace(KtPsiFactory(project).createType(text))
+                is KtForExpression -> element.replace(KtPsiFactory(project).createBlock(text).statements.single())
+                is KtExpression -> element.replace(KtPsiFactory(project).createExpression(text))
+                else -> return
+            }
+            val shortened =
+                if (replaced is KtElement) ShortenReferences.DEFAULT.process(replaced)
+                else JavaCodeStyleManager.getInstance(project).shortenClassReferences(replaced)
+            if (element is PsiForeachStatement || element is KtForExpression)
+                CodeStyleManager.getInstance(project).reformat(shortened)
+        }
+    }
+
+    private enum class Target(val fqn: String, val generic: Boolean, val remove: String) {
+        SPARSE("android.util.SparseArray", true, "remove"),
+        LONG("android.util.LongSparseArray", true, "remove"),
+        INT("android.util.SparseIntArray", false, "delete");
+        val simpleName: String get() = fqn.substring(fqn.lastIndexOf('.') + 1)
+    }
+
+    private class Plan(val key: String, val target: Target, private val rewriters: List<(Target) -> Pair<PsiElement, String>?>) {
+        val rewrites: List<Pair<PsiElement, String>> get() = rewriters.mapNotNull { it(target) } // only needed by the fix
+    }
+
+    /**
+     * Collects rewrites of every usage, or gives up on the first one which can't be migrated.
+     * Rewrites depend on the [Target] which is known only after all usages are seen.
+     */
+    private class Migration(val key: String, val refs: Collection<PsiElement>, var intValues: Boolean) {
+        val rewrites = ArrayList<(Target) -> Pair<PsiElement, String>?>()
+        fun plan(): Plan {
+            val target = if (key == "long") Target.LONG else if (intValues) Target.INT else Target.SPARSE
+            return Plan(key, target, rewrites)
+        }
+    }
+
+    private companion object {
+        private val MAP_TYPES = setOf("java.util.Map", "java.util.AbstractMap", "java.util.HashMap")
+        private val HASH_MAPS = setOf("java.util.HashMap", "kotlin.collections.HashMap")
+        private val JAVA_KEYS = mapOf("java.lang.Integer" to "int", "java.lang.Long" to "long")
+        private val KOTLIN_KEYS = mapOf("Int" to "int", "Long" to "long")
+        private val ASSIGNABLE_TO_KEY = mapOf(
+            "int" to setOf("int", "short", "char", "byte"),
+            "long" to setOf("long", "int", "short", "char", "byte"),
+        )
+        private val LOOSE_J = TokenSet.create(
+            JavaTokenType.ANDAND, JavaTokenType.OROR, JavaTokenType.EQEQ, JavaTokenType.NE,
+            JavaTokenType.AND, JavaTokenType.OR, JavaTokenType.XOR,
+        )
+        private val LOOSE_KT = TokenSet.create(
+            KtTokens.ANDAND, KtTokens.OROR, KtTokens.EQEQ, KtTokens.EXCLEQ, KtTokens.EQEQEQ, KtTokens.EXCLEQEQEQ, KtTokens.EQ,
+        )
+
+        fun javaPlan(variable: PsiVariable): Plan? {
+            if (variable !is PsiLocalVariable && !(variable is PsiField && variable.hasModifierProperty(PsiModifier.PRIVATE)))
+                return null
+            val type = variable.type as? PsiClassType ?: return null
+            if (type.resolve()?.qualifiedName !in MAP_TYPES) return null
+            val typeArgs = type.parameters.takeIf { it.size == 2 } ?: return null
+            val key = JAVA_KEYS[typeArgs[0].canonicalText] ?: return null
+            val typeElement = variable.typeElement?.takeIf { !it.isInferredType && it.parent === variable } ?: return null
+            if (PsiTreeUtil.skipWhitespacesAndCommentsForward(variable)?.text == ",") return null // int a, b;
+
+            val init = variable.initializer as? PsiNewExpression ?: return null
+            if (init.anonymousClass != null || init.classReference?.qualifiedName != "java.util.HashMap") return null
+            val args = init.argumentList?.expressions ?: return null
+            if (args.size > 1 || args.any { it.type?.canonicalText != "int" }) return null // (capacity) only
+
+            val scope = if (variable is PsiLocalVariable) PsiTreeUtil.getParentOfType(variable, PsiCodeBlock::class.java) else variable.containingFile
+            val refs = ReferencesSearch.search(variable, LocalSearchScope(scope ?: return null)).findAll().map { it.element }
+            val migration = Migration(key, refs, typeArgs[1].canonicalText == "java.lang.Integer")
+            for (ref in refs)
+                if (!migration.javaUse(ref as? PsiReferenceExpression ?: return null)) return null
+
+            migration.rewrites.add { t -> typeElement to if (t.generic) "${t.fqn}<${typeArgs[1].canonicalText}>" else t.fqn }
+            migration.rewrites.add { t -> init to "new ${t.fqn}${if (t.generic) "<>" else ""}(${args.joinToString { it.text }})" }
+            return migration.plan()
+        }
+
+        private fun Migration.javaUse(ref: PsiReferenceExpression): Boolean {
+            val m = ref.text
+            val qualified = ref.parent as? PsiReferenceExpression ?: return false
+            if (qualified.qualifierExpression !== ref) return false
+            val call = qualified.parent as? PsiMethodCallExpression ?: return false
+            val args = call.argumentList.expressions
+            fun isKey(i: Int) = (args[i].type as? PsiPrimitiveType)?.canonicalText in ASSIGNABLE_TO_KEY[key]!!
+            val statement = call.parent is PsiExpressionStatement
+            when (val name = qualified.referenceName) {
+                "get" -> {
+                    if (args.size != 1 || !isKey(0)) return false
+                    if (ExpectedTypeUtils.findExpectedType(call, false) !is PsiPrimitiveType) intValues = false
+                }
+                "put" -> {
+                    if (args.size != 2 || !isKey(0) || !statement) return false
+                    if (args[1].type !is PsiPrimitiveType) intValues = false
+                }
+                "remove" -> {
+                    if (args.size != 1 || !isKey(0) || !statement) return false
+                    rewrites.add { t -> call to "$m.${t.remove}(${args[0].text})" }
+                }
+                "containsKey" -> {
+                    if (args.size != 1 || !isKey(0)) return false
+                    rewrites.add { javaComparison(call, "$m.indexOfKey(${args[0].text})", ">= 0", "< 0") }
+                }
+                "isEmpty" -> {
+                    if (args.isNotEmpty()) return false
+                    rewrites.add { javaComparison(call, "$m.size()", "== 0", "!= 0") }
+                }
+                "size", "clear" ->
+                    if (args.isNotEmpty()) return false
+                "keySet", "values", "entrySet" -> {
+                    val loop = call.parent as? PsiForeachStatement ?: return false
+                    return loop.iteratedValue === call && javaLoop(loop, m, name)
+                }
+                else ->
+                    return false
+            }
+            return true
+        }
+
+        private fun Migration.javaLoop(loop: PsiForeachStatement, m: String, view: String): Boolean {
+            val body = loop.body ?: return false
+            if (refs.any { PsiTreeUtil.isAncestor(body, it, false) }) return false // no modification while iterating
+            val param = loop.iterationParameter
+            val entryUses = if (view != "entrySet") emptyList() else
+                ReferencesSearch.search(param, LocalSearchScope(body)).findAll().map {
+                    val qualified = it.element.parent as? PsiReferenceExpression ?: return false
+                    val call = qualified.parent as? PsiMethodCallExpression ?: return false
+                    if (call.argumentList.expressions.isNotEmpty()) return false
+                    call to when (qualified.referenceName) {
+                        "getKey" -> "keyAt"
+                        "getValue" -> "valueAt".also {
+                            if (ExpectedTypeUtils.findExpectedType(call, false) !is PsiPrimitiveType) intValues = false
+                        }
+                        else -> return false
+                    }
+                }
+            rewrites.add {
+                val i = JavaCodeStyleManager.getInstance(loop.project).suggestUniqueVariableName("i", loop, true)
+                val declaration = when (view) {
+                    "keySet" -> "${param.text} = $m.keyAt($i);\n"
+                    "values" -> "${param.text} = $m.valueAt($i);\n"
+                    else -> ""
+                }
+                val inner = body.textReplacing(entryUses.map { (call, accessor) -> call to "$m.$accessor($i)" })
+                    .let { if (body is PsiBlockStatement) it.substring(1, it.length - 1) else it }
+                loop to "for (int $i = 0; $i < $m.size(); $i++) {\n$declaration$inner\n}"
+            }
+            return true
+        }
+
+        private fun javaComparison(call: PsiExpression, lhs: String, op: String, negated: String): Pair<PsiElement, String> {
+            val parent = call.parent
+            val (target, text) =
+                if (parent is PsiPrefixExpression && parent.operationTokenType == JavaTokenType.EXCL) parent to "$lhs $negated"
+                else call to "$lhs $op"
+            val outer = target.parent
+            val parens = outer is PsiExpression && outer !is PsiParenthesizedExpression && outer !is PsiAssignmentExpression &&
+                outer !is PsiConditionalExpression && outer !is PsiLambdaExpression &&
+                !(outer is PsiPolyadicExpression && outer.operationTokenType in LOOSE_J)
+            return target to if (parens) "($text)" else text
+        }
+
+        fun kotlinPlan(property: KtProperty): Plan? {
+            if (!property.isLocal && !property.isPrivate()) return null
+            if (property.getter != null || property.setter != null || property.hasDelegate()) return null
+            val init = property.initializer ?: return null
+            val call = init as? KtCallExpression
+                ?: (init as? KtDotQualifiedExpression)?.selectorExpression as? KtCallExpression ?: return null
+            val args = call.valueArguments
+            when (call.calleeExpression?.text) {
+                "HashMap" -> if (args.size > 1) return null
+                "hashMapOf" -> if (args.isNotEmpty()) return null
+                else -> return null
+            }
+
+            val context = init.analyze()
+            val type = context.getType(init) ?: return null
+            if (type.constructor.getClassFqNameUnsafe().asString() !in HASH_MAPS || type.arguments.size != 2) return null
+            val (keyType, valueType) = type.arguments.map { it.type }
+            if (keyType.isMarkedNullable) return null
+            val key = KOTLIN_KEYS[keyType.nameIfStandardType?.asString()] ?: return null
+            args.singleOrNull()?.getArgumentExpression()?.let { capacity ->
+                if (context.getType(capacity)?.nameIfStandardType?.asString() != "Int") return null // HashMap(anotherMap)
+            }
+
+            val scope = if (property.isLocal) property.parent else property.containingKtFile
+            val refs = ReferencesSearch.search(property, LocalSearchScope(scope)).findAll().map { it.element }
+            val migration = Migration(key, refs, !valueType.isMarkedNullable && valueType.nameIfStandardType?.asString() == "Int")
+            for (ref in refs)
+                if (!migration.kotlinUse(ref as? KtNameReferenceExpression ?: return null)) return null
+
+            val value = DescriptorRenderer.FQ_NAMES_IN_TYPES.renderType(valueType)
+            fun typeOf(t: Target) = if (t.generic) "${t.fqn}<$value>" else t.fqn
+            property.typeReference?.let { typeRef -> migration.rewrites.add { t -> typeRef to typeOf(t) } }
+            migration.rewrites.add { t -> init to "${typeOf(t)}(${args.joinToString { it.text }})" }
+            return migration.plan()
+        }
+
+        private fun Migration.kotlinUse(ref: KtNameReferenceExpression): Boolean {
+            val expr = (ref.parent as? KtDotQualifiedExpression)
+                ?.takeIf { it.selectorExpression === ref && it.receiverExpression is KtThisExpression } ?: ref
+            val m = expr.text
+            when (val parent = expr.parent) {
+                is KtDotQualifiedExpression -> {
+                    if (parent.receiverExpression !== expr) return false
+                    when (val selector = parent.selectorExpression) {
+                        is KtCallExpression -> {
+                            val args = selector.valueArguments.map { it.getArgumentExpression() ?: return false }
+                            val statement = parent.parent is KtBlockExpression
+                            when (selector.calleeExpression?.text) {
+                                "get" -> if (args.size != 1 || !kotlinGet(parent)) return false
+                                "put" -> if (args.size != 2 || !statement) return false
+                                "remove" -> {
+                                    if (args.size != 1 || !statement) return false
+                                    rewrites.add { t -> parent to "$m.${t.remove}(${args[0].text})" }
+                                }
+                                "containsKey", "contains" -> {
+                                    if (args.size != 1) return false
+                                    rewrites.add { kotlinComparison(parent, "$m.indexOfKey(${args[0].text})", ">= 0", "< 0") }
+                                }
+                                "isEmpty", "isNotEmpty" -> {
+                                    if (args.isNotEmpty()) return false
+                                    val empty = selector.calleeExpression?.text == "isEmpty"
+                                    rewrites.add { kotlinComparison(parent, "$m.size()", if (empty) "== 0" else "!= 0", if (empty) "!= 0" else "== 0") }
+                                }
+                                "clear" ->
+                                    if (args.isNotEmpty()) return false
+                                else ->
+                                    return false
+                            }
+                        }
+                        is KtNameReferenceExpression -> when (val name = selector.getReferencedName()) {
+                            "size" -> rewrites.add { parent to "$m.size()" }
+                            "keys", "values", "entries" -> {
+                                val loop = (parent.parent as? KtContainerNode)?.parent as? KtForExpression ?: return false
+                                return loop.loopRange === parent && kotlinLoop(loop, m, name)
+                            }
+                            else -> return false
+                        }
+                        else -> return false
+                    }
+                }
+                is KtArrayAccessExpression -> {
+                    if (parent.arrayExpression !== expr || parent.indexExpressions.size != 1) return false
+                    val assignment = parent.parent as? KtBinaryExpression
+                    if (assignment?.left === parent) {
+                        if (assignment.operationToken != KtTokens.EQ) return false // m[k] += v
+                        val value = assignment.right ?: return false
+                        rewrites.add { assignment to "$m.put(${parent.indexExpressions[0].text}, ${value.text})" }
+                    } else if (!kotlinGet(parent)) {
+                        return false
+                    }
+                }
+                is KtBinaryExpression -> {
+                    val op = parent.operationToken
+                    if (parent.right !== expr || op != KtTokens.IN_KEYWORD && op != KtTokens.NOT_IN) return false
+                    val k = parent.left?.text ?: return false
+                    rewrites.add {
+                        kotlinComparison(parent, "$m.indexOfKey($k)", if (op == KtTokens.IN_KEYWORD) ">= 0" else "< 0", "")
+                    }
+                }
+                is KtContainerNode -> {
+                    val loop = parent.parent as? KtForExpression ?: return false
+                    return loop.loopRange === expr && kotlinLoop(loop, m, "entries")
+                }
+                else ->
+                    return false
+            }
+            return true
+        }
+
+        /** `m[k]` or `m.get(k)`. SparseIntArray returns non-null, so it's OK only if the value is asserted to be non-null. */
+        private fun Migration.kotlinGet(get: KtExpression): Boolean {
+            val unary = get.parent as? KtUnaryExpression
+            val op = unary?.operationToken
+            if (op == KtTokens.PLUSPLUS || op == KtTokens.MINUSMINUS) return false // there's no set() operator before API 31
+            if (unary != null && op == KtTokens.EXCLEXCL) rewrites.add { t -> if (t == Target.INT) unary to get.text else null }
+            else intValues = false
+            return true
+        }
+
+        private fun Migration.kotlinLoop(loop: KtForExpression, m: String, view: String): Boolean {
+            val body = loop.body ?: return false
+            if (refs.any { PsiTreeUtil.isAncestor(body, it, false) }) return false // no modification while iterating
+            val param = loop.loopParameter ?: return false
+            val destructuring = loop.destructuringDeclaration
+            var entryUses = emptyList<Pair<PsiElement, String>>()
+            val declarations = when {
+                view == "keys" -> listOf(param.text to "keyAt")
+                view == "values" -> listOf(param.text to "valueAt")
+                destructuring != null -> {
+                    if (destructuring.entries.size > 2) return false
+                    destructuring.entries.zip(listOf("keyAt", "valueAt"))
+                        .filter { (entry, _) -> entry.name != null && entry.name != "_" }
+                        .map { (entry, accessor) -> entry.text to accessor }
+                }
+                else -> {
+                    entryUses = ReferencesSearch.search(param, LocalSearchScope(body)).findAll().map {
+                        val qualified = it.element.parent as? KtDotQualifiedExpression ?: return false
+                        if (qualified.receiverExpression !== it.element) return false
+                        qualified to when ((qualified.selectorExpression as? KtNameReferenceExpression)?.getReferencedName()) {
+                            "key" -> "keyAt"
+                            "value" -> "valueAt"
+                            else -> return false
+                        }
+                    }
+                    emptyList()
+                }
+            }
+            rewrites.add {
+                val loopText = loop.text
+                val i = generateSequence(0) { it + 1 }.map { if (it == 0) "i" else "i$it" }
+                    .first { !Regex("\\b$it\\b").containsMatchIn(loopText) }
+                val declaration = declarations.joinToString("") { (variable, accessor) -> "val $variable = $m.$accessor($i)\n" }
+                val inner = body.textReplacing(entryUses.map { (qualified, accessor) -> qualified to "$m.$accessor($i)" })
+                    .let { if (body is KtBlockExpression) it.substring(1, it.length - 1) else it }
+                loop to "for ($i in 0 until $m.size()) {\n$declaration$inner\n}"
+            }
+            return true
+        }
+
+        private fun kotlinComparison(expr: KtExpression, lhs: String, op: String, negated: String): Pair<PsiElement, String> {
+            val parent = expr.parent
+            val (target, text) =
+                if (negated.isNotEmpty() && parent is KtPrefixExpression && parent.operationToken == KtTokens.EXCL) parent to "$lhs $negated"
+                else expr to "$lhs $op"
+            val outer = target.parent
+            val parens = outer is KtQualifiedExpression || outer is KtUnaryExpression ||
+                outer is KtBinaryExpressionWithTypeRHS || outer is KtIsExpression ||
+                outer is KtBinaryExpression && outer.operationToken !in LOOSE_KT
+            return target to if (parens) "($text)" else text
+        }
+
+        private fun PsiElement.textReplacing(replacements: List<Pair<PsiElement, String>>): String {
+            val start = textRange.startOffset
+            val text = StringBuilder(text)
+            replacements.sortedByDescending { it.first.textRange.startOffset }.forEach { (element, replacement) ->
+                text.replace(element.textRange.startOffset - start, element.textRange.endOffset - start, replacement)
+            }
+            return text.toString()
+        }
+    }
+
+}
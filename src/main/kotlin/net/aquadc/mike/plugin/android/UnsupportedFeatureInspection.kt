@@ -46,7 +46,8 @@ import org.jetbrains.uast.visitor.AbstractUastNonRecursiveVisitor
 class UnsupportedFeatureInspection : UastInspection() {
     override fun uVisitor(
         holder: ProblemsHolder, isOnTheFly: Boolean
-    ): AbstractUastNonRecursiveVisitor = object : FunctionCallVisitor() {
+    ): AbstractUastNonRecursiveVisitor = object : FunctionCallVisitor(names = setOf("setOnClickListener", "obtainStyledAttributes")) {
+        override val callsOnly: Boolean get() = false // also visits declarations and imports
 
         override fun visitDeclaration(node: UDeclaration): Boolean {
             // detect android.app.Activity#onCreate(android.os.Bundle, android.os.PersistableBundle)
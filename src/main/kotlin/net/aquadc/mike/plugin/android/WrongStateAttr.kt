@@ -21,7 +21,7 @@ import kotlin.math.absoluteValue
 class WrongStateAttr : UastInspection() {
     override fun uVisitor(
         holder: ProblemsHolder, isOnTheFly: Boolean
-    ): AbstractUastNonRecursiveVisitor = object : FunctionCallVisitor() {
+    ): AbstractUastNonRecursiveVisitor = object : FunctionCallVisitor(names = setOf("ColorStateList", "addState")) {
         override fun visitCallExpr(
             node: UExpression, src: PsiElement, kind: UastCallKind, operator: String?,
             declaringClassFqn: String, receiver: UExpression?, methodName: String, valueArguments: List<UExpression>,
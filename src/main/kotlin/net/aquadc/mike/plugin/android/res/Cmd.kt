@@ -12,24 +12,52 @@ import java.math.BigDecimal
 import java.math.RoundingMode
 import kotlin.math.atan2
 
-internal class Cmd(
-    val startX: BigDecimal, // We use these values when rewriting,
-    val startY: BigDecimal, // so here's my $0.05000000074505806 to avoid screwing up precision.
+internal class Cmd private constructor(
+    private var _startX: BigDecimal?, private val startXUnscaled: Long, private val startXScale: Int,
+    private var _startY: BigDecimal?, private val startYUnscaled: Long, private val startYScale: Int,
     val cmd: Char,
-    val args: Array<out BigDecimal>,
-    val src: Src? = null, // TODO save punctuation when possible
+    @Volatile private var _args: Array<out BigDecimal>?,
+    val src: Src?, // TODO save punctuation when possible
 ) {
+    constructor(
+        startX: BigDecimal, // We use these values when rewriting,
+        startY: BigDecimal, // so here's my $0.05000000074505806 to avoid screwing up precision.
+        cmd: Char,
+        args: Array<out BigDecimal>,
+        src: Src? = null,
+    ) : this(startX, 0L, 0, startY, 0L, 0, cmd, args, src)
+
+    /** Parsed command. Parser works with unscaled values, [BigDecimal]s are created on demand, e.g. when rewriting. */
+    constructor(
+        startXUnscaled: Long, startXScale: Int,
+        startYUnscaled: Long, startYScale: Int,
+        cmd: Char,
+        src: Src,
+    ) : this(null, startXUnscaled, startXScale, null, startYUnscaled, startYScale, cmd, null, src)
+
     internal class Src(
         val pathData: CharSequence,
         val floatRanges: IntArrayList,
         val rangesOffset: Int
-    )
+    ) {
+        fun args(count: Int): Array<BigDecimal> = Array(count) { i ->
+            BigDecimal(pathData.substring(floatRanges.getInt(rangesOffset + 2 * i), floatRanges.getInt(rangesOffset + 2 * i + 1)))
+        }
+    }
     init {
         require(paramsOf(cmd) != null)
         if (params.isNotEmpty() && src != null) require(src.rangesOffset >= 0)
         // else Zz, no rangesOffset, we're literally nowhere
     }
 
+    // don't mind synchronization, values are immutable and always the same
+    val startX: BigDecimal
+        get() = _startX ?: BigDecimal.valueOf(startXUnscaled, startXScale).also { _startX = it }
+    val startY: BigDecimal
+        get() = _startY ?: BigDecimal.valueOf(startYUnscaled, startYScale).also { _startY = it }
+    val args: Array<out BigDecimal>
+        get() = _args ?: src!!.args(params.size).also { _args = it }
+
     val startXF get() = startX.toFloat()
     val startYF get() = startY.toFloat()
 
@@ -0,0 +1,124 @@
+package net.aquadc.mike.plugin.android.res
+
+import java.awt.Color
+import java.awt.Shape
+import java.awt.image.BufferedImage
+import java.awt.image.DataBufferByte
+import java.nio.ByteBuffer
+import kotlin.math.ceil
+import kotlin.math.floor
+
+/**
+ * Pixels covered by a shape, one bit per pixel, an approximate replacement for [java.awt.geom.Area].
+ * Only the bounding box is stored. Rows are aligned to 64-pixel columns,
+ * so any two coverages can be combined word by word.
+ */
+internal class Coverage private constructor(
+    private var left: Int, // in words
+    private var top: Int, // in pixels
+    private var width: Int, // in words
+    private var height: Int, // in pixels
+    private var bits: LongArray,
+) {
+    constructor() : this(0, 0, 0, 0, EMPTY)
+
+    val isEmpty: Boolean
+        get() = bits.all { it == 0L }
+
+    /** `this |= other` */
+    fun add(other: Coverage) {
+        if (other.width == 0 || other.height == 0) return
+        if (other.left < left || other.top < top ||
+            other.left + other.width > left + width || other.top + other.height > top + height) {
+            val newLeft = if (width == 0) other.left else minOf(left, other.left)
+            val newTop = if (height == 0) other.top else minOf(top, other.top)
+            val newWidth = (if (width == 0) other.left + other.width else maxOf(left + width, other.left + other.width)) - newLeft
+            val newHeight = (if (height == 0) other.top + other.height else maxOf(top + height, other.top + other.height)) - newTop
+            val newBits = LongArray(newWidth * newHeight)
+            for (y in 0 until height)
+                System.arraycopy(bits, y * width, newBits, (top + y - newTop) * newWidth + left - newLeft, width)
+            left = newLeft; top = newTop; width = newWidth; height = newHeight; bits = newBits
+        }
+        forEachOverlapping(other) { mine, its -> bits[mine] = bits[mine] or other.bits[its] }
+    }
+
+    /** `this &= ~other` */
+    fun subtract(other: Coverage) {
+        forEachOverlapping(other) { mine, its -> bits[mine] = bits[mine] and other.bits[its].inv() }
+    }
+
+    /** `this &= other` */
+    fun intersect(other: Coverage) {
+        val bits = bits
+        for (y in 0 until height)
+            for (x in 0 until width)
+                bits[y * width + x] = bits[y * width + x] and other.word(left + x, top + y)
+    }
+
+    /** `other & ~this == 0` */
+    fun covers(other: Coverage): Boolean {
+        val its = other.bits
+        for (y in 0 until other.height)
+            for (x in 0 until other.width)
+                if (its[y * other.width + x] and word(other.left + x, other.top + y).inv() != 0L)
+                    return false
+        return true
+    }
+
+    private fun word(x: Int, y: Int): Long =
+        if (x >= left && x < left + width && y >= top && y < top + height) bits[(y - top) * width + x - left] else 0L
+
+    private inline fun forEachOverlapping(other: Coverage, block: (mine: Int, its: Int) -> Unit) {
+        val fromX = maxOf(left, other.left)
+        val tillX = minOf(left + width, other.left + other.width)
+        val fromY = maxOf(top, other.top)
+        val tillY = minOf(top + height, other.top + other.height)
+        for (y in fromY until tillY)
+            for (x in fromX until tillX)
+                block((y - top) * width + x - left, (y - other.top) * other.width + x - other.left)
+    }
+
+    private companion object {
+        private val EMPTY = LongArray(0)
+    }
+
+    /**
+     * Rasterizes shapes like Java2D does without antialiasing: a pixel is covered if its center is.
+     * Reuses a single image, so it's cheap for many small shapes.
+     * @param scale pixels per unit
+     * @param width, height canvas size in pixels, everything outside is dropped
+     */
+    class Rasterizer(private val scale: Double, width: Int, private val height: Int) {
+        private val stride = (width + 63) / 64
+        private val image = BufferedImage(64 * stride, height, BufferedImage.TYPE_BYTE_BINARY)
+        // bit order doesn't matter as long as it's the same everywhere
+        private val words = ByteBuffer.wrap((image.raster.dataBuffer as DataBufferByte).data).asLongBuffer()
+        private val g = image.createGraphics().also {
+            it.color = Color.WHITE
+            it.scale(scale, scale)
+        }
+
+        fun rasterize(shape: Shape): Coverage {
+            val bounds = shape.bounds2D
+            val x0 = floor(bounds.minX * scale).toInt().coerceIn(0, 64 * stride)
+            val y0 = floor(bounds.minY * scale).toInt().coerceIn(0, height)
+            val x1 = ceil(bounds.maxX * scale).toInt().coerceIn(0, 64 * stride)
+            val y1 = ceil(bounds.maxY * scale).toInt().coerceIn(0, height)
+            if (x1 <= x0 || y1 <= y0)
+                return Coverage()
+
+            g.fill(shape) // touches only pixels within bounds
+            val left = x0 / 64
+            val width = (x1 + 63) / 64 - left
+            val bits = LongArray(width * (y1 - y0))
+            for (y in y0 until y1) {
+                for (x in 0 until width) {
+                    val index = y * stride + left + x
+                    bits[(y - y0) * width + x] = words.get(index)
+                    words.put(index, 0L)
+                }
+            }
+            return Coverage(left, y0, width, y1 - y0, bits)
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package net.aquadc.mike.plugin.android.res
+
+import com.intellij.codeInspection.ProblemsHolder
+import com.intellij.openapi.util.Key
+import com.intellij.psi.PsiFile
+
+/**
+ * Vector drawable geometry computed during the previous inspection pass over the same file.
+ * Typing in a single `<path>` should not make us re-parse and re-build Areas for all the others:
+ * each value is stored under a key which contains every input it was computed from,
+ * so an unchanged path hits the cache while an edited one just misses it.
+ * Values must never be mutated: they are shared between passes, take a copy before altering.
+ */
+internal class GeometryCache private constructor(
+    private val file: PsiFile?,
+    private val previous: Map<Any, Pair<Any, Any>>, // key to (stored key, value)
+) {
+    private val current = HashMap<Any, Pair<Any, Any>>()
+
+    fun <T : Any> getOrPut(key: Any, compute: () -> T): T =
+        getOrPut(key, { it }) { compute() }
+
+    /**
+     * @param freeze makes an equal key which is safe to keep until the next pass.
+     *   Invoked only when the value is computed, otherwise the stored key is reused
+     */
+    @Suppress("UNCHECKED_CAST")
+    fun <K : Any, T : Any> getOrPut(key: K, freeze: (K) -> K, compute: (K) -> T): T {
+        current[key]?.let { return it.second as T }
+        val entry = previous[key] ?: freeze(key).let { it to compute(it) }
+        current[entry.first] = entry
+        return entry.second as T
+    }
+
+    /** Remembers values used during this pass, forgetting stale ones. */
+    fun save() {
+        file?.putUserData(KEY, current)
+    }
+
+    companion object {
+        private val KEY = Key.create<Map<Any, Pair<Any, Any>>>("net.aquadc.mike.plugin.android.res.GeometryCache")
+
+        fun of(holder: ProblemsHolder): GeometryCache =
+            if (holder.isOnTheFly) GeometryCache(holder.file, holder.file.getUserData(KEY) ?: emptyMap())
+            else GeometryCache(null, emptyMap()) // batch inspection visits each file once, don't waste memory
+    }
+}
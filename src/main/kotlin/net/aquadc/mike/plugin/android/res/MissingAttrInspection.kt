@@ -16,6 +16,7 @@ import com.intellij.xml.util.XmlTagUtil
 import net.aquadc.mike.plugin.NamedLocalQuickFix
 import net.aquadc.mike.plugin.SortedArray
 import net.aquadc.mike.plugin.android.resTypeOf
+import net.aquadc.mike.plugin.perf.instrumented
 
 /**
  * @author Mike Gorünóv
@@ -50,7 +51,7 @@ class MissingAttrInspection : LocalInspectionTool() {
         private val XmlTag.isScrollable
             get() = name in scrollableViews ||
                     (name in scrollableTextViews && getAttributeValue("scrollHorizontally", ANDROID_NS) == "true")
-    }
+    }.instrumented(this, holder)
 
     private companion object {
         private val scrollableViews = SortedArray.of(
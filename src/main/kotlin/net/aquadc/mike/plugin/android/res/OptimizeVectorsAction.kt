@@ -0,0 +1,162 @@
+package net.aquadc.mike.plugin.android.res
+
+import android.graphics.PathDelegate
+import com.android.tools.idea.configurations.ConfigurationManager
+import com.intellij.ide.highlighter.XmlFileType
+import com.intellij.notification.NotificationGroupManager
+import com.intellij.notification.NotificationType
+import com.intellij.openapi.actionSystem.ActionUpdateThread
+import com.intellij.openapi.actionSystem.AnAction
+import com.intellij.openapi.actionSystem.AnActionEvent
+import com.intellij.openapi.application.runReadAction
+import com.intellij.openapi.command.WriteCommandAction
+import com.intellij.openapi.diagnostic.logger
+import com.intellij.openapi.module.ModuleUtilCore
+import com.intellij.openapi.progress.ProgressIndicator
+import com.intellij.openapi.progress.Task
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.vfs.VirtualFile
+import com.intellij.psi.PsiManager
+import com.intellij.psi.SmartPointerManager
+import com.intellij.psi.SmartPsiElementPointer
+import com.intellij.psi.search.FileTypeIndex
+import com.intellij.psi.search.GlobalSearchScope
+import com.intellij.psi.util.PsiTreeUtil
+import com.intellij.psi.xml.XmlAttribute
+import com.intellij.psi.xml.XmlFile
+import com.intellij.psi.xml.XmlTag
+import it.unimi.dsi.fastutil.ints.IntArrayList
+import net.aquadc.mike.plugin.android.resourceResolver
+import java.util.concurrent.Callable
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Shortens pathData of all vector drawables in the project,
+ * like “Reduce precision carefully” and “Shorten path” quick-fixes do.
+ * @author Mike Gorünóv
+ */
+class OptimizeVectorsAction : AnAction() {
+
+    override fun getActionUpdateThread(): ActionUpdateThread =
+        ActionUpdateThread.BGT
+
+    override fun update(e: AnActionEvent) {
+        e.presentation.isEnabledAndVisible = e.project != null
+    }
+
+    override fun actionPerformed(e: AnActionEvent) {
+        val project = e.project ?: return
+        object : Task.Backgroundable(project, "Optimizing vector drawables", true) {
+            private var edits: List<PathEdit> = emptyList()
+
+            override fun run(indicator: ProgressIndicator) {
+                indicator.isIndeterminate = false
+                indicator.text = "Looking for vector drawables"
+                val files = runReadAction {
+                    FileTypeIndex.getFiles(XmlFileType.INSTANCE, GlobalSearchScope.projectScope(project))
+                        .filter { it.parent?.name?.startsWith("drawable") == true }
+                }
+                val paths = ArrayList<PathData>()
+                files.forEachIndexed { i, file ->
+                    indicator.checkCanceled()
+                    indicator.fraction = i / (2.0 * files.size)
+                    runReadAction { collectPathData(project, file, paths) }
+                }
+
+                indicator.text = "Optimizing pathData"
+                val done = AtomicInteger()
+                val pool = ForkJoinPool((Runtime.getRuntime().availableProcessors() - 1).coerceIn(1, MAX_THREADS))
+                edits = try {
+                    pool.invokeAll(paths.map { path ->
+                        Callable {
+                            if (indicator.isCanceled) null
+                            else path.optimized().also {
+                                indicator.fraction = .5 + done.incrementAndGet() / (2.0 * paths.size)
+                            }
+                        }
+                    }).mapNotNull { it.get() }
+                } finally {
+                    pool.shutdown()
+                }
+                indicator.checkCanceled()
+            }
+
+            override fun onSuccess() {
+                val savedPerFile = LinkedHashMap<VirtualFile, Int>()
+                WriteCommandAction.writeCommandAction(project).withName("Optimize Vector Drawables").run<Throwable> {
+                    for (edit in edits) {
+                        val attr = edit.path.attr.element ?: continue
+                        if (attr.value != edit.path.pathData) continue // edited in the meantime
+                        attr.setValue(edit.optimized)
+                        savedPerFile.merge(edit.path.file, edit.path.pathData.length - edit.optimized.length, Int::plus)
+                    }
+                }
+                notify(project, savedPerFile)
+            }
+        }.queue()
+    }
+
+    private class PathData(
+        val file: VirtualFile,
+        val attr: SmartPsiElementPointer<XmlAttribute>,
+        val pathData: String,
+        val usefulPrecision: Int,
+    ) {
+        fun optimized(): PathEdit? {
+            val cmds = ArrayList<Cmd>()
+            try {
+                PathDelegate.parse(pathData, ArrayList(), cmds, null, IntArrayList(), null, false)
+            } catch (e: PathDelegate.PathError) {
+                return null
+            }
+            val optimized = StringBuilder().also {
+                cmds.shortened(if (usefulPrecision < 0) Int.MAX_VALUE else usefulPrecision + 1).appendTo(it)
+            }.toString()
+            return if (optimized.length < pathData.length) PathEdit(this, optimized) else null
+        }
+    }
+    private class PathEdit(val path: PathData, val optimized: String)
+
+    private companion object {
+        private const val MAX_THREADS = 8
+        private const val MAX_REPORTED_FILES = 20
+        private const val NOTIFICATION_GROUP = "Mike's IDE Extensions"
+
+        private fun collectPathData(project: Project, file: VirtualFile, dest: MutableList<PathData>) {
+            if (!file.isValid) return
+            val vector = (PsiManager.getInstance(project).findFile(file) as? XmlFile)?.rootTag
+                ?.takeIf { it.name == "vector" } ?: return
+            val rr = ResolverCache(ModuleUtilCore.findModuleForFile(file, project)?.let {
+                ConfigurationManager.getOrCreateInstance(it).resourceResolver(file)
+            })
+            val vWidth = rr.resolve(vector, "viewportWidth", ANDROID_NS)?.toFloatOrNull() ?: Float.NaN
+            val vHeight = rr.resolve(vector, "viewportHeight", ANDROID_NS)?.toFloatOrNull() ?: Float.NaN
+            val usefulPrecision = usefulPrecision(rr.pixelSize(vector, vWidth, vHeight))
+            val pointers = SmartPointerManager.getInstance(project)
+            PsiTreeUtil.findChildrenOfType(vector, XmlTag::class.java).forEach { tag ->
+                if (tag.name == "path" || tag.name == "clip-path") {
+                    val attr = tag.getAttribute("pathData", ANDROID_NS) ?: return@forEach
+                    val pathData = attr.value
+                    if (!pathData.isNullOrBlank() && pathData[0] != '@' && pathData[0] != '?') // resources are out of scope
+                        dest.add(PathData(file, pointers.createSmartPsiElementPointer(attr), pathData, usefulPrecision))
+                }
+            }
+        }
+
+        private fun notify(project: Project, savedPerFile: Map<VirtualFile, Int>) {
+            val total = savedPerFile.values.sum()
+            val sorted = savedPerFile.entries.sortedByDescending { it.value }
+            val log = logger<OptimizeVectorsAction>()
+            sorted.forEach { (file, saved) -> log.info("${file.path}: $saved bytes saved") }
+            val content = if (sorted.isEmpty()) "Nothing to optimize" else buildString {
+                sorted.take(MAX_REPORTED_FILES).forEach { (file, saved) -> append(file.name).append(": ").append(saved).append(" bytes<br>") }
+                if (sorted.size > MAX_REPORTED_FILES) append("…and ").append(sorted.size - MAX_REPORTED_FILES).append(" more files<br>")
+                append("Total: ").append(total).append(" bytes in ").append(sorted.size).append(" files")
+            }
+            NotificationGroupManager.getInstance().getNotificationGroup(NOTIFICATION_GROUP)
+                .createNotification("Vector drawables optimized", content, NotificationType.INFORMATION)
+                .notify(project)
+        }
+    }
+}
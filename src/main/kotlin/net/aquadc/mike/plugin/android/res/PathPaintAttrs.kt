@@ -1,7 +1,6 @@
 package net.aquadc.mike.plugin.android.res
 
 import android.graphics.PixelFormat
-import com.android.ide.common.resources.ResourceResolver
 import com.intellij.codeInspection.ProblemsHolder
 import com.intellij.psi.xml.XmlAttribute
 import com.intellij.psi.xml.XmlElement
@@ -14,7 +13,7 @@ import net.aquadc.mike.plugin.component9
 import net.aquadc.mike.plugin.miserlyMap as map
 import java.awt.BasicStroke
 
-internal class PathPaintAttrs(tag: XmlTag, holder: ProblemsHolder, rr: ResourceResolver?) {
+internal class PathPaintAttrs(tag: XmlTag, holder: ProblemsHolder, rr: ResolverCache) {
     val fillColorEl: XmlElement?
     val fillAlphaEl: XmlAttribute?
     val fillTypeEl: XmlAttribute?
@@ -68,7 +67,7 @@ internal class PathPaintAttrs(tag: XmlTag, holder: ProblemsHolder, rr: ResourceR
         stroke = holder.stroke(rr, strokeWidth, sCap, sJoin, sMiter, strokeOpacity)
     }
 
-    private fun ResourceResolver?.color(el: XmlElement?) =
+    private fun ResolverCache.color(el: XmlElement?) =
         when (el) {
             null -> null to "#0000"
             is XmlAttribute -> resolve(el.value.nullize(true))
@@ -80,7 +79,7 @@ internal class PathPaintAttrs(tag: XmlTag, holder: ProblemsHolder, rr: ResourceR
      * @return stroke and opacity
      */
     private fun ProblemsHolder.stroke(
-        rr: ResourceResolver?,
+        rr: ResolverCache,
         strokeWidth: Float,
         cap: XmlAttribute?, join: XmlAttribute?, miter: XmlAttribute?,
         opacity: Int,
@@ -4,18 +4,21 @@ package net.aquadc.mike.plugin.android.res
 
 import android.graphics.PathDelegate
 import android.graphics.PixelFormat
-import com.android.ide.common.resources.ResourceResolver
 import com.intellij.codeInsight.intention.FileModifier
 import com.intellij.codeInspection.LocalQuickFix
 import com.intellij.codeInspection.ProblemDescriptor
 import com.intellij.codeInspection.ProblemHighlightType
 import com.intellij.codeInspection.ProblemsHolder
+import com.intellij.lang.ASTNode
 import com.intellij.openapi.project.Project
 import com.intellij.openapi.util.TextRange
+import com.intellij.psi.ElementManipulators
+import com.intellij.psi.tree.IElementType
 import com.intellij.psi.util.parentOfType
 import com.intellij.psi.xml.XmlAttribute
 import com.intellij.psi.xml.XmlAttributeValue
 import com.intellij.psi.xml.XmlTag
+import com.intellij.psi.xml.XmlTokenType
 import com.intellij.util.SmartList
 import de.javagl.geom.Shapes
 import it.unimi.dsi.fastutil.floats.FloatArrayList
@@ -25,32 +28,98 @@ import net.aquadc.mike.plugin.NamedLocalQuickFix
 import net.aquadc.mike.plugin.fixes
 import net.aquadc.mike.plugin.indexOfFirst
 import net.aquadc.mike.plugin.toInt
+import java.awt.BasicStroke
 import java.awt.Shape
 import java.awt.geom.AffineTransform
 import java.awt.geom.Area
 import java.awt.geom.Path2D
 import java.awt.geom.PathIterator
+import java.awt.geom.Rectangle2D
 import java.util.*
-import kotlin.math.absoluteValue
 import kotlin.math.max
 import kotlin.math.min
 import kotlin.math.pow
 
 
+/**
+ * Result of parsing and merging pathData. Never mutated after construction, thus can be shared between passes.
+ */
+internal class PathGeometry(
+    val outlines: List<Path2D.Float>,
+    val subPathRanges: List<IntArrayList>?,
+    val startPositions: List<FloatArrayList>?,
+    val endPositions: List<FloatArrayList>?,
+    val floatRanges: IntArrayList,
+    val cmds: List<Cmd>,
+) {
+    val merged: Area? by lazy { // TODO split clip-paths, too
+        outlines.map(::Area).takeIf(List<*>::isNotEmpty)?.reduce { acc, area -> acc.add(area); acc }
+    }
+}
+
+/**
+ * [pathData] may be a view of PSI text, equality is by content.
+ */
+internal data class GeometryKey(
+    val pathData: CharSequence,
+    val trackRanges: Boolean,
+    val evenOdd: Boolean,
+    val mergeSubPaths: Boolean,
+    val matrix: AffineTransform?,
+) {
+    /** Detaches from PSI text to be stored in cache. */
+    fun frozen(): GeometryKey =
+        if (pathData is String) this else copy(pathData = pathData.toString())
+
+    override fun equals(other: Any?): Boolean =
+        other is GeometryKey && pathData.contentEquals(other.pathData) && trackRanges == other.trackRanges &&
+            evenOdd == other.evenOdd && mergeSubPaths == other.mergeSubPaths && matrix == other.matrix
+
+    override fun hashCode(): Int {
+        var hash = 0
+        for (i in pathData.indices) hash = 31 * hash + pathData[i].code // same as String.hashCode()
+        hash = 31 * hash + trackRanges.hashCode()
+        hash = 31 * hash + evenOdd.hashCode()
+        hash = 31 * hash + mergeSubPaths.hashCode()
+        return 31 * hash + matrix.hashCode()
+    }
+}
+
+internal data class PaintKey(
+    val geometry: PathGeometry, // identity
+    val stroke: BasicStroke?,
+    val fillOpacity: Int,
+    val strokeOpacity: Int,
+    val evenOdd: Boolean,
+    val checkCaps: Boolean,
+    val checkJoins: Boolean,
+    val usefulPrecision: Int,
+)
+
+internal class PaintedAreas(
+    val fills: List<Area?>?,
+    val strokes: List<Area?>?,
+    val opaque: Area?,
+    val strokeCaps: BitSet?,
+    val strokeJoins: BitSet?,
+    val reallyEvenOdd: Boolean,
+)
+
 internal class PathTag private constructor(
     private val pathDataAttr: XmlAttributeValue,
-    private val outlines: MutableList<Path2D.Float>,
-    private val subPathRanges: List<IntArrayList>?,
-    private val startPositions: List<FloatArrayList>?,
-    private val endPositions: List<FloatArrayList>?,
-    private val floatRanges: IntArrayList,
+    private val geometry: PathGeometry,
     private val valueShiftInText: Int,
     private val paint: PathPaintAttrs?,
 ) {
+    private val outlines = geometry.outlines
+    private val subPathRanges = geometry.subPathRanges
+    private val startPositions = geometry.startPositions
+    private val endPositions = geometry.endPositions
+    private val floatRanges = geometry.floatRanges
     private val pathTag get() = pathDataAttr.parentOfType<XmlTag>()!!
-    private var fills: MutableList<Area?>? = null
-    private var strokes: MutableList<Area?>? = null
-    private var opaqueArea: Area? = null
+    private var painted: PaintedPath? = null
+    private val fills get() = painted?.fills
+    private val strokes get() = painted?.strokes
 //    private var filledSubPaths: BitSet? = null
 //    private var strokedSubPaths: BitSet? = null
 //    private var clippedAwaySubPaths: BitSet? = null
@@ -63,48 +132,82 @@ internal class PathTag private constructor(
         private val T000 = Triple(null, null, null)
         fun parse(
             holder: ProblemsHolder,
-            rr: ResourceResolver?,
+            rr: ResolverCache,
             pathAttr: XmlAttributeValue,
             matrix: AffineTransform?,
             usefulPrecision: Int,
+            cache: GeometryCache,
         ): PathTag? {
-            val rawPathData = pathAttr.value // FIXME we need value and text, extract them without copying
-            val pathData = rr.resolve(rawPathData).second ?: return null
-
-            val floatRanges = IntArrayList()
-
+            // Read the value token text in place, value and text of XmlAttributeValue are copies.
+            // Entity references split the value into several tokens, just take the unescaped copy then.
+            val valueToken = pathAttr.node.findChildByType(XmlTokenType.XML_ATTRIBUTE_VALUE_TOKEN) ?: return null
+            val plain = valueToken.treePrev.isNullOr(XmlTokenType.XML_ATTRIBUTE_VALUE_START_DELIMITER) &&
+                valueToken.treeNext.isNullOr(XmlTokenType.XML_ATTRIBUTE_VALUE_END_DELIMITER)
+            val rawPathData: CharSequence = if (plain) valueToken.chars else pathAttr.value
+            val valueRange =
+                if (plain) TextRange.from(valueToken.startOffsetInParent, rawPathData.length)
+                else ElementManipulators.getValueTextRange(pathAttr)
+            val pathData: CharSequence =
+                if (rawPathData.startsWith('@') || rawPathData.startsWith('?')) rr.resolve(rawPathData.toString()).second ?: return null
+                else rawPathData
             // can't report on sub-paths somewhere in strings.xml or wherever
-            val pathStarts = if (rawPathData == pathData) IntArrayList() else null
-            val endPositions = if (rawPathData == pathData) FloatArrayList() else null
+            val tracked = plain && pathData === rawPathData
+
             val tag = pathAttr.parentOfType<XmlTag>()!!
 
             val paint = if (tag.name == "path") PathPaintAttrs(tag, holder, rr) else null
-            val evenOdd = paint?.fillTypeEvenOdd == true
+            val key = GeometryKey(
+                pathData,
+                trackRanges = tracked,
+                evenOdd = paint?.fillTypeEvenOdd == true,
+                mergeSubPaths = paint?.fillOpacity != PixelFormat.TRANSPARENT,
+                matrix,
+            )
+            val geometry = cache.getOrPut(key, GeometryKey::frozen, ::parseGeometry)
+            if (geometry is PathDelegate.PathError) {
+                holder.registerProblem(
+                    pathAttr, "Invalid path. ${geometry.message}", ProblemHighlightType.ERROR,
+                    if (tracked) geometry.at.shiftRight(valueRange.startOffset) else null
+                )
+                return null
+            }
+            geometry as PathGeometry
+            if (geometry.outlines.isEmpty())
+                return null
+
+            holder.tryProposeShortening(geometry.cmds, pathData, usefulPrecision, pathAttr, tracked, valueRange)
+
+            return PathTag(pathAttr, geometry, valueRange.startOffset, paint)
+        }
+        private fun ASTNode?.isNullOr(type: IElementType): Boolean =
+            this == null || elementType == type
+
+        /** @return [PathGeometry] or [PathDelegate.PathError] */
+        internal fun parseGeometry(key: GeometryKey): Any {
+            val pathData = key.pathData
+            val floatRanges = IntArrayList()
+            val pathStarts = if (key.trackRanges) IntArrayList() else null
+            val endPositions = if (key.trackRanges) FloatArrayList() else null
             val paths = SmartList<Path2D.Float>()
             val cmds = ArrayList<Cmd>()
-            val beginValueAt = pathAttr.text.indexOf(rawPathData)
             try {
-                PathDelegate.parse(pathData, paths, cmds, pathStarts, floatRanges, endPositions, evenOdd)
+                PathDelegate.parse(pathData, paths, cmds, pathStarts, floatRanges, endPositions, key.evenOdd)
             } catch (e: PathDelegate.PathError) {
-                holder.registerProblem(
-                    pathAttr, "Invalid path. ${e.message}", ProblemHighlightType.ERROR,
-                    if (pathData === rawPathData) e.at.shiftRight(beginValueAt) else null
-                )
-                return null
+                return e
             }
             if (paths.isEmpty())
-                return null
+                return PathGeometry(paths, null, null, null, floatRanges, cmds)
             if (pathStarts != null && paths.size != pathStarts.size - 1 &&
-                pathStarts.getInt(pathStarts.size - 1) != rawPathData.length) {
+                pathStarts.getInt(pathStarts.size - 1) != pathData.length) {
                 // heal ranges for a broken path, may happen when editing path by hand on the fly
-                pathStarts.add(rawPathData.length)
+                pathStarts.add(pathData.length)
             }
             check(pathStarts == null || paths.size == pathStarts.size - 1) {
                 "${paths.size} paths but ${pathStarts!!.size} start indices in path $pathData: $pathStarts"
             }
             val (subPathRanges, startPoss, endPoss) =
-                if (paths.size > 1 && paint?.fillOpacity != PixelFormat.TRANSPARENT) {
-                    merge(paths, pathStarts, endPositions, evenOdd)
+                if (paths.size > 1 && key.mergeSubPaths) {
+                    merge(paths, pathStarts, endPositions, key.evenOdd)
                 } else if (paths.size > 1 && pathStarts != null) {
                     val ends = endPositions?.let {
                         List(it.size / 2) { i ->
@@ -126,17 +229,16 @@ internal class PathTag private constructor(
                     T000
                 }
 
-            holder.tryProposeShortening(cmds, pathData, usefulPrecision, pathAttr, rawPathData, beginValueAt)
-
-            if (matrix != null) paths.forEach { it.transform(matrix) }
-            return PathTag(pathAttr, paths, subPathRanges, startPoss, endPoss, floatRanges, beginValueAt, paint)
+            key.matrix?.let { matrix -> paths.forEach { it.transform(matrix) } }
+            return PathGeometry(paths, subPathRanges, startPoss, endPoss, floatRanges, cmds)
         }
 
         /** Handles intersections which can lead to “donut holes” and invert the whole sub-path meaning. */
         private fun merge(
             paths: SmartList<Path2D.Float>, pathStarts: IntArrayList?, endPositions: FloatArrayList?, /*TODO*/ @Suppress("UNUSED_PARAMETER") evenOdd: Boolean,
         ): Triple<ArrayList<IntArrayList>?, ArrayList<FloatArrayList>?, ArrayList<FloatArrayList>?> {
-            val areas = paths.mapTo(ArrayList(), ::Area)
+            val areas = MutableList<Area?>(paths.size) { null } // lazy, building an Area is not cheap
+            val bounds = paths.mapTo(ArrayList(), Path2D.Float::getBounds2D)
             val ranges: ArrayList<IntArrayList>? = ranges(pathStarts, paths)
             var startPoss: ArrayList<FloatArrayList>? = null
             var endPoss: ArrayList<FloatArrayList>? = null
@@ -152,16 +254,15 @@ internal class PathTag private constructor(
                 val i = paths.size - 1
                 endPoss.add(FloatArrayList(2).apply { add(endPositions.getFloat(2 * i)); add(endPositions.getFloat(2 * i + 1)) })
             }
+            fun area(i: Int) = areas[i] ?: Area(paths[i]).also { areas[i] = it }
             var i = 0
             while (i < paths.size) {
-                var victim: Area? = null
                 var j = i + 1
                 while (j < paths.size) {
-                    if (victim == null) victim = Area(areas[i])
-                    victim.subtract(areas[j])
-                    if (!areas[i].equals(victim)) {
-                        victim = null
-                        merge(paths, areas, ranges, startPoss, endPoss, i, j)
+                    // most sub-paths are disjoint, try cheap checks before building and intersecting Areas
+                    if (bounds[i].intersects(bounds[j]) && paths[i].intersects(bounds[j]) && paths[j].intersects(bounds[i]) &&
+                        !Area(area(i)).also { it.intersect(area(j)) }.isEmpty) {
+                        merge(paths, areas, bounds, ranges, startPoss, endPoss, i, j)
                         j = i
                     }
                     j++
@@ -183,15 +284,17 @@ internal class PathTag private constructor(
         }
 
         private fun merge(
-            paths: SmartList<Path2D.Float>, areas: ArrayList<Area>,
+            paths: SmartList<Path2D.Float>, areas: MutableList<Area?>, bounds: ArrayList<Rectangle2D>,
             ranges: ArrayList<IntArrayList>?,
             startPositions: ArrayList<FloatArrayList>?, endPositions: ArrayList<FloatArrayList>?,
             i: Int, j: Int,
         ) {
             paths[i].append(paths[j], false)
             paths.removeAt(j)
-            areas[i] = Area(paths[i])
+            areas[i] = null
             areas.removeAt(j)
+            bounds[i] = paths[i].bounds2D
+            bounds.removeAt(j)
             if (ranges != null) {
                 val myRanges = ranges[i]
                 val victimRanges = ranges[j]
@@ -216,11 +319,11 @@ internal class PathTag private constructor(
 
         private fun ProblemsHolder.tryProposeShortening(
             cmds: List<Cmd>,
-            pathData: String,
+            pathData: CharSequence,
             usefulPrecision: Int,
             pathAttr: XmlAttributeValue,
-            rawPathData: String,
-            beginValueAt: Int
+            tracked: Boolean,
+            valueRange: TextRange,
         ) {
             val maxPrecision = cmds.maxPrecision()
             val canTrimCarefully = maxPrecision > usefulPrecision
@@ -241,14 +344,14 @@ internal class PathTag private constructor(
                     pathAttr,
                     if (canTrimAggressively) "Subpixel precision" else "Excessive pathData",
                     ProblemHighlightType.WEAK_WARNING,
-                    if (pathData === rawPathData) {
+                    if (tracked) {
                         val highlightStart =
                             min(cmds.firstOrNull { it.maxPrecision() > usefulPrecision }?.firstFloatStart(usefulPrecision) ?: Int.MAX_VALUE, rewriteStart.takeIf { it >= 0 } ?: Int.MAX_VALUE)
                         assert(highlightStart != Int.MAX_VALUE) { "at least one of min() should be valid, got maxPrecision=$maxPrecision, canTrim=$canTrimCarefully || $canTrimAggressively" }
                         val highlightEnd = max(cmds.lastOrNull { it.maxPrecision() > usefulPrecision }?.lastFloatEnd(usefulPrecision) ?: -1, rewriteEnd)
                         assert(highlightEnd != -1) { "at least one of max() should be valid, got maxPrecision=$maxPrecision, canTrim=$canTrimCarefully || $canTrimAggressively" }
-                        TextRange(beginValueAt + highlightStart, beginValueAt + highlightEnd)
-                    } else TextRange.from(beginValueAt, rawPathData.length),
+                        TextRange(valueRange.startOffset + highlightStart, valueRange.startOffset + highlightEnd)
+                    } else valueRange,
                     *fixes(
                         // quickfixes are sorted alphabetically by IntelliJ, mind names so order is preserved
                         if (isOnTheFly && canTrimAggressively) OptimizePathFix(aggressive, "Reduce precision aggressively$andMaybeShorten") else null,
@@ -259,10 +362,75 @@ internal class PathTag private constructor(
             }
         }
 
+        internal fun paintAreas(key: PaintKey): PaintedAreas {
+            val outlines = key.geometry.outlines
+            val stroke = key.stroke
+            val noFill = key.fillOpacity == PixelFormat.TRANSPARENT
+//            var filledSubPaths = if (noFill) null else BitSet(outlines.size)
+//            var strokedSubPaths = if (stroke == null) null else BitSet(outlines.size)
+
+            val strokeCaps = if (key.checkCaps) BitSet(outlines.size) else null
+            val strokeJoins = if (key.checkJoins) BitSet(outlines.size) else null
+
+            var reallyEvenOdd = false
+
+            var opaque: Area? = null
+            val fills = if (noFill) null else ArrayList<Area?>(outlines.size)
+            val strokes = if (stroke == null) null else ArrayList<Area?>(outlines.size)
+            for (index in outlines.indices) {
+                val outline = outlines[index]
+                val strokeArea = stroke?.createStrokedShape(outline)
+                    ?.also {
+                        if (strokeCaps != null || strokeJoins != null)
+                            checkStroke(outline, strokeCaps, strokeJoins, index)
+                    }
+                    ?.toArea()
+                    ?.takeIf { !it.effectivelyEmpty(key.usefulPrecision) }
+//                    ?.also { strokedSubPaths!!.set(index) }
+                val opaqueStrokeArea = strokeArea
+                    ?.takeIf { key.strokeOpacity == PixelFormat.OPAQUE }
+                    ?.also { opaque += it }
+
+                val fillArea = outline.takeIf { !noFill }
+                    ?.toArea()?.without(opaqueStrokeArea) // stroke is drawn on top of fill
+                    ?.takeIf { !it.effectivelyEmpty(key.usefulPrecision) }
+                    ?.also { fillArea ->
+//                        filledSubPaths!!.set(index)
+                        if (key.fillOpacity == PixelFormat.OPAQUE) opaque += fillArea
+                        if (key.evenOdd && !reallyEvenOdd) // outlines are shared, don't touch their winding rule
+                            if (!Path2D.Float(outline).also { it.windingRule = Path2D.WIND_NON_ZERO }.toArea().equals(fillArea))
+                                reallyEvenOdd = true
+                    }
+
+                if (fills == null) check(fillArea == null) else fills.add(fillArea)
+                if (strokes == null) check(strokeArea == null) else strokes.add(strokeArea)
+            }
+            return PaintedAreas(fills, strokes, opaque, strokeCaps, strokeJoins, reallyEvenOdd)
+        }
+
+        private fun checkStroke(outline: Path2D, cap: BitSet?, join: BitSet?, index: Int) {
+            val iter = outline.getPathIterator(null)
+            var prevState: Int
+            var state = PathIterator.SEG_CLOSE
+            var gaps = false
+            var joins = false
+            while (!iter.isDone) {
+                prevState = state
+                state = iter.currentSegment(dummyFloats)
+                gaps = gaps || (prevState != PathIterator.SEG_CLOSE && prevState != PathIterator.SEG_MOVETO && state == PathIterator.SEG_MOVETO)
+                joins = joins || (prevState != PathIterator.SEG_MOVETO && state != PathIterator.SEG_MOVETO)
+                if ((gaps || cap == null) && (joins || join == null)) break
+                iter.next()
+            }
+            gaps = gaps || (state != PathIterator.SEG_CLOSE && state != PathIterator.SEG_MOVETO)
+            if (gaps) cap?.set(index)
+            if (joins) join?.set(index)
+        }
+
         private val dummyFloats = FloatArray(6) // don't mind synchronization, values are never read
     }
 
-    fun toAreas(holder: ProblemsHolder, usefulPrecision: Int) {
+    fun toAreas(holder: ProblemsHolder, usefulPrecision: Int, cache: GeometryCache) {
         val stroke = paint!!.stroke
         val sCap = paint.strokeLineCapEl
         val sJoin = paint.strokeLineJoinEl
@@ -270,48 +438,20 @@ internal class PathTag private constructor(
 
         var noFill = paint.fillOpacity == PixelFormat.TRANSPARENT
         var noStroke = stroke == null
-//        var filledSubPaths = if (noFill) null else BitSet(outlines.size)
-//        var strokedSubPaths = if (noStroke) null else BitSet(outlines.size)
         if (noFill && noStroke) {
             return holder.report(pathTag, "Invisible path: no fill, no stroke", removeTagFix)
         }
 
-        val strokeCaps = if (noStroke || sCap == null) null else BitSet(outlines.size)
-        val strokeJoins = if (noStroke || sJoin == null) null else BitSet(outlines.size)
-
-        var reallyEvenOdd = false
-
-        var opaque: Area? = null
-        var fills = if (noFill) null else ArrayList<Area?>(outlines.size)
-        var strokes = if (noStroke) null else ArrayList<Area?>(outlines.size)
-        for (index in outlines.indices) {
-            val outline = outlines[index]
-            val strokeArea = stroke?.createStrokedShape(outline)
-                ?.also {
-                    if (strokeCaps != null || strokeJoins != null)
-                        checkStroke(outline, strokeCaps, strokeJoins, index)
-                }
-                ?.toArea()
-                ?.takeIf { !it.effectivelyEmpty(usefulPrecision) }
-//                ?.also { strokedSubPaths!!.set(index) }
-            val opaqueStrokeArea = strokeArea
-                ?.takeIf { paint.strokeOpacity == PixelFormat.OPAQUE }
-                ?.also { opaque += it }
-
-            val fillArea = outline.takeIf { !noFill }
-                ?.toArea()?.without(opaqueStrokeArea) // stroke is drawn on top of fill
-                ?.takeIf { !it.effectivelyEmpty(usefulPrecision) }
-                ?.also { fillArea ->
-//                    filledSubPaths!!.set(index)
-                    if (paint.fillOpacity == PixelFormat.OPAQUE) opaque += fillArea
-                    if (paint.fillTypeEvenOdd && !reallyEvenOdd)
-                        if (!outline.also { it.windingRule = Path2D.WIND_NON_ZERO }.toArea().equals(fillArea))
-                            reallyEvenOdd = true
-                }
-
-            if (fills == null) check(fillArea == null) else fills.add(fillArea)
-            if (strokes == null) check(strokeArea == null) else strokes.add(strokeArea)
-        }
+        val key = PaintKey(
+            geometry, stroke, paint.fillOpacity, paint.strokeOpacity, paint.fillTypeEvenOdd,
+            checkCaps = !noStroke && sCap != null, checkJoins = !noStroke && sJoin != null, usefulPrecision,
+        )
+        val areas = cache.getOrPut(key) { paintAreas(key) }
+        // clip and overdraw mutate areas, take copies. Area copy shares curves and is cheap
+        var fills = areas.fills?.mapTo(ArrayList<Area?>(outlines.size)) { it?.let(::Area) }
+        var strokes = areas.strokes?.mapTo(ArrayList<Area?>(outlines.size)) { it?.let(::Area) }
+        val strokeCaps = areas.strokeCaps
+        val strokeJoins = areas.strokeJoins
 
         if (fills != null && fills.all { it == null }) {
             fills = null
@@ -327,7 +467,7 @@ internal class PathTag private constructor(
 
         if (noFill) {
             holder.reportNoFill("attribute has no effect with unfilled path")
-        } else if (paint.fillTypeEvenOdd && !reallyEvenOdd) {
+        } else if (paint.fillTypeEvenOdd && !areas.reallyEvenOdd) {
             holder.report(fType!!, "attribute has no effect", removeAttrFix)
         }
 
@@ -338,15 +478,168 @@ internal class PathTag private constructor(
             if (strokeJoins?.cardinality() == 0) holder.report(sJoin!!, "attribute has no effect", removeAttrFix)
         }
 
-        this.fills = fills
-        this.strokes = strokes
-        opaqueArea = opaque
+        painted = PaintedPath(
+            fills, strokes, areas.opaque?.let(::Area),
+            paint.canonicalFillColor, paint.fillOpacity, paint.canonicalStrokeColor, paint.strokeOpacity,
+        )
 //        this.filledSubPaths = filledSubPaths
 //        this.strokedSubPaths = strokedSubPaths
     }
 
-    fun merged(): Area? = // TODO split clip-paths, too
-        outlines.map(::Area).takeIf(List<*>::isNotEmpty)?.reduce { acc, area -> acc.add(area); acc }
+    fun merged(): Area? =
+        geometry.merged?.let(::Area)
+
+    fun applyClip(clipPath: Area?, clips: List<Area>, usefulClips: IntOpenHashSet, canvas: VectorCanvas) {
+        painted?.let { canvas.clip(it, clipPath, clips, usefulClips) }
+    }
+
+    private fun ProblemsHolder.reportNoFill(complaint: String) {
+        val za = paint!!.fillAlpha == 0f
+        val tc = paint.fillColorOpacity == PixelFormat.TRANSPARENT
+        if (za) paint.fillColorEl?.let { report(it, complaint, removeAttrFix) }
+        if (tc) paint.fillAlphaEl?.let { report(it, complaint, removeAttrFix) }
+        // else fillAlpha=0 solely makes this fill useless.
+        // Removing attribute will change drawable contents making it visible.
+        // We'll revenge after removing fillColor attribute
+
+        paint.fillTypeEl?.let { report(it, complaint, removeAttrFix) }
+    }
+
+    private fun ProblemsHolder.reportNoStroke() {
+        val za = paint!!.strokeAlpha == 0f
+        val tc = paint.strokeColorOpacity == PixelFormat.TRANSPARENT
+        val zw = paint.strokeWidth == 0f
+        if (tc || za) paint.strokeWidthEl?.let { report(it, "attribute has no effect", removeAttrFix) }
+        if (zw || za) paint.strokeColorEl?.let { report(it, "attribute has no effect", removeAttrFix) }
+        paint.strokeLineCapEl?.let { report(it, "attribute has no effect", removeAttrFix) }
+        paint.strokeLineJoinEl?.let { report(it, "attribute has no effect", removeAttrFix) }
+        paint.strokeMiterEl?.let { report(it, "attribute has no effect", removeAttrFix) }
+        if (tc || zw) paint.strokeAlphaEl?.let { report(it, "attribute has no effect", removeAttrFix) }
+    }
+
+    fun overdraw(canvas: VectorCanvas) {
+        painted?.let(canvas::paint)
+    }
+
+    fun report(holder: ProblemsHolder) {
+        val subAreas = fills?.size ?: strokes?.size
+            ?: return // nothing to do here, the path is crippled from the very beginning
+
+        tryProposeSplit(holder)
+
+        val deadCount =
+            (0 until subAreas).count { fills?.get(it) == null && strokes?.get(it) == null }
+
+        when (deadCount) {
+            0 -> return // everything is perfect
+            subAreas -> {
+                /*val what = invisiblePathDiagnosis(
+                    (overdrawnSubPaths?.cardinality() ?: 0) > 0,
+                    (clippedAwaySubPaths?.cardinality() ?: 0) > 0,
+                )*/
+                return holder.report(pathTag, "The path is fully invisible"/* TODO due to under-, overdraw, clip*/, removeTagFix)
+            }
+        }
+
+        // some areas are dead, some others are not. Analyze!
+        for (i in 0 until subAreas) {
+            // TODO glue sibling paths together
+            if (fills?.get(i) == null && strokes?.get(i) == null) {
+                if (!holder.reportSubPath(i, "invisible sub-path"))
+                    break
+            }
+        }
+    }
+    private fun tryProposeSplit(holder: ProblemsHolder) {
+        if (holder.isOnTheFly && startPositions != null &&
+            subPathRanges != null && subPathRanges.size > 1 &&
+            pathTag.name == "path" && pathTag.subTags.isEmpty()) {
+            holder.registerProblem(
+                pathTag, "", ProblemHighlightType.INFORMATION,
+                splitPathFix(subPathRanges, startPositions)
+            )
+        }
+    }
+    private fun splitPathFix(
+        subPathRanges: List<IntArrayList>, startPositions: List<FloatArrayList>,
+    ) = object : NamedLocalQuickFix("Split path") {
+        override fun applyFix(project: Project, descriptor: ProblemDescriptor) {
+            val tag = descriptor.psiElement as? XmlTag
+            val parent = tag?.parentOfType<XmlTag>() ?: return
+            val pathData = tag.getAttributeValue("pathData", ANDROID_NS) ?: return
+            val splits = subPathRanges.mapIndexed { i, ranges ->
+                buildString(pathData.length / subPathRanges.size) {
+                    repeat(ranges.size / 2) {
+                        val viLen = pathStartReplacement(pathData, floatRanges, ranges.getInt(2 * it), startPositions[i], it)
+                        if (viLen < 0) return
+                        append(pathData, ranges.getInt(2 * it) + viLen, ranges.getInt(2 * it + 1))
+                    }
+                }
+            }
+            tag.setAttribute("pathData", ANDROID_NS, splits.first())
+
+            splits.drop(1).asReversed().forEach { split ->
+                val child = parent.createChildTag("path", null, null, false)
+                tag.attributes.forEach {
+                    child.setAttribute(it.name, it.value)
+                }
+                child.setAttribute(parent.getPrefixByNamespace(ANDROID_NS) + ":pathData", split)
+                parent.addAfter(child, tag)
+            }
+        }
+    }
+
+    /*private fun invisiblePathDiagnosis(overdrawn: Boolean, clippedAway: Boolean): String = when {
+        overdrawn && clippedAway -> "overdrawn and clipped away"
+        overdrawn -> "overdrawn"
+        clippedAway -> "clipped away"
+        else -> logger<PathTag>().error("invalid invisiblePathMessage(false, false)").let { "" }
+    }*/
+
+    private fun ProblemsHolder.reportSubPath(at: Int, complaint: String): Boolean =
+        if (subPathRanges == null) {
+            registerProblem(
+                pathDataAttr, "pathData contains $complaint", ProblemHighlightType.WEAK_WARNING,
+            )
+            false
+        } else {
+            val myRanges = subPathRanges[at]
+            val deadRange =
+                TextRange.create(valueShiftInText + myRanges.getInt(0), valueShiftInText + myRanges.getInt(myRanges.size - 1))
+            registerProblem(
+                pathDataAttr, complaint,
+                if (myRanges.size == 2) ProblemHighlightType.LIKE_UNUSED_SYMBOL else ProblemHighlightType.WEAK_WARNING,
+                deadRange,
+                *fixes(removeSubPathFix(pathDataAttr.value, at, subPathRanges, endPositions, floatRanges)),
+            )
+            true
+        }
+
+    fun isBoundedBy(clip: Area): Boolean {
+        if (paint!!.strokeOpacity != PixelFormat.TRANSPARENT)
+            return false // stroke geometry is different from pathData itself
+        return merged()?.also { it.intersect(clip) }?.equals(clip) == true
+    }
+}
+
+/**
+ * What a path really paints, in viewport coordinates. Mutated by clipping and overdraw of subsequent paths.
+ */
+internal class PaintedPath(
+    var fills: MutableList<Area?>?,
+    var strokes: MutableList<Area?>?,
+    var opaqueArea: Area?,
+    private val fillColor: String?,
+    private val fillOpacity: Int,
+    private val strokeColor: String?,
+    private val strokeOpacity: Int,
+) {
+    // Approximate geometry, see VectorCanvas. null means too thin to be rasterized: we don't know, it's visible.
+    private var fillCoverage: Array<Coverage?>? = null
+    private var strokeCoverage: Array<Coverage?>? = null
+    private var opaqueCoverage: Coverage? = null
+    var rasterized: Boolean = false
+        private set
 
     fun applyClip(
         clipPath: Area?, clips: List<Area>, usefulClips: IntOpenHashSet,
@@ -393,133 +686,93 @@ internal class PathTag private constructor(
         }
     }
 
-    private fun ProblemsHolder.reportNoFill(complaint: String) {
-        val za = paint!!.fillAlpha == 0f
-        val tc = paint.fillColorOpacity == PixelFormat.TRANSPARENT
-        if (za) paint.fillColorEl?.let { report(it, complaint, removeAttrFix) }
-        if (tc) paint.fillAlphaEl?.let { report(it, complaint, removeAttrFix) }
-        // else fillAlpha=0 solely makes this fill useless.
-        // Removing attribute will change drawable contents making it visible.
-        // We'll revenge after removing fillColor attribute
-
-        paint.fillTypeEl?.let { report(it, complaint, removeAttrFix) }
-    }
-
-    private fun ProblemsHolder.reportNoStroke() {
-        val za = paint!!.strokeAlpha == 0f
-        val tc = paint.strokeColorOpacity == PixelFormat.TRANSPARENT
-        val zw = paint.strokeWidth == 0f
-        if (tc || za) paint.strokeWidthEl?.let { report(it, "attribute has no effect", removeAttrFix) }
-        if (zw || za) paint.strokeColorEl?.let { report(it, "attribute has no effect", removeAttrFix) }
-        paint.strokeLineCapEl?.let { report(it, "attribute has no effect", removeAttrFix) }
-        paint.strokeLineJoinEl?.let { report(it, "attribute has no effect", removeAttrFix) }
-        paint.strokeMiterEl?.let { report(it, "attribute has no effect", removeAttrFix) }
-        if (tc || zw) paint.strokeAlphaEl?.let { report(it, "attribute has no effect", removeAttrFix) }
-    }
-
-    private fun checkStroke(outline: Path2D, cap: BitSet?, join: BitSet?, index: Int) {
-        val iter = outline.getPathIterator(null)
-        var prevState: Int
-        var state = PathIterator.SEG_CLOSE
-        var gaps = false
-        var joins = false
-        while (!iter.isDone) {
-            prevState = state
-            state = iter.currentSegment(dummyFloats)
-            gaps = gaps || (prevState != PathIterator.SEG_CLOSE && prevState != PathIterator.SEG_MOVETO && state == PathIterator.SEG_MOVETO)
-            joins = joins || (prevState != PathIterator.SEG_MOVETO && state != PathIterator.SEG_MOVETO)
-            if ((gaps || cap == null) && (joins || join == null)) break
-            iter.next()
-        }
-        gaps = gaps || (state != PathIterator.SEG_CLOSE && state != PathIterator.SEG_MOVETO)
-        if (gaps) cap?.set(index)
-        if (joins) join?.set(index)
-    }
-
-    fun overdraw(paths: List<PathTag>, usefulPrecision: Int, colorToArea: HashMap<String, Area>) {
+    fun overdraw(paths: List<PaintedPath>, usefulPrecision: Int, colorToArea: HashMap<String, PaintedRegion>) {
 
         // check for underdraw first
         if (fills != null || strokes != null) {
             var fillVisited = false
             var strokeVisited = false
-            val tmpArea = Area()
             @Suppress("JavaMapForEach") // come on, original HashMap::forEach is more efficient
-            colorToArea.forEach { color, area ->
+            colorToArea.forEach { color, region ->
                 fills?.let { fills ->
-                    if (colorsEq(color, paint!!.canonicalFillColor)) {
+                    if (colorsEq(color, fillColor)) {
                         fillVisited = true
                         for (i in fills.indices) {
                             val fill = fills[i] ?: continue
-                            if (area.equals(tmpArea.with(area).with(fill))) {
+                            if (region.covers(fill)) {
                                 fills[i] = null
 //                                filledSubPaths?.clear(i)
 //                                (underdrawnFills ?: BitSet().also { underdrawnFills = it }).set(i)
-                            } else if (paint.fillOpacity == PixelFormat.OPAQUE) {
-                                area.add(fill)
+                            } else if (fillOpacity == PixelFormat.OPAQUE) {
+                                region.add(fill)
                             }
-                            tmpArea.reset()
                         }
                     } else {
                         for (i in fills.indices) {
                             val fill = fills[i] ?: continue
-                            area.subtract(fill)
+                            region.subtract(fill)
                         }
                     }
                 }
                 strokes?.let { strokes ->
-                    if (colorsEq(color, paint!!.canonicalStrokeColor)) {
+                    if (colorsEq(color, strokeColor)) {
                         strokeVisited = true
                         for (i in strokes.indices) {
                             val stroke = strokes[i] ?: continue
-                            if (area.equals(tmpArea.with(area).with(stroke))) {
+                            if (region.covers(stroke)) {
                                 strokes[i] = null
 //                                strokedSubPaths?.clear(i)
 //                                (underdrawnStrokes ?: BitSet().also { underdrawnStrokes = it }).set(i)
-                            } else if (paint.strokeOpacity == PixelFormat.OPAQUE) {
-                                area.add(stroke)
+                            } else if (strokeOpacity == PixelFormat.OPAQUE) {
+                                region.add(stroke)
                             }
-                            tmpArea.reset()
                         }
                     } else {
                         for (i in strokes.indices) {
                             val stroke = strokes[i] ?: continue
-                            area.subtract(stroke)
+                            region.subtract(stroke)
                         }
                     }
                 }
             }
-            fills?.takeIf { !fillVisited && paint!!.canonicalFillColor != null && paint.fillOpacity == PixelFormat.OPAQUE }?.let { fills ->
-                fills.forEach { tmpArea.with(it) }
-                if (!tmpArea.isEmpty)
-                    colorToArea[paint!!.canonicalFillColor!!] = tmpArea
+            fills?.takeIf { !fillVisited && fillColor != null && fillOpacity == PixelFormat.OPAQUE }?.let { fills ->
+                val region = PaintedRegion()
+                fills.forEach { it?.let(region::add) }
+                if (!region.isEmpty)
+                    colorToArea[fillColor!!] = region
             }
-            strokes?.takeIf { !strokeVisited && paint!!.canonicalStrokeColor != null && paint.strokeOpacity == PixelFormat.OPAQUE }?.let { strokes ->
-                val area = tmpArea.takeIf { it.isEmpty || paint!!.canonicalStrokeColor == paint.canonicalFillColor } ?: Area()
-                strokes.forEach { area.with(it) }
-                if (!area.isEmpty)
-                    colorToArea[paint!!.canonicalStrokeColor!!] = area
+            strokes?.takeIf { !strokeVisited && strokeColor != null && strokeOpacity == PixelFormat.OPAQUE }?.let { strokes ->
+                val region = colorToArea[strokeColor!!] ?: PaintedRegion() // just filled with the same color
+                strokes.forEach { it?.let(region::add) }
+                if (!region.isEmpty)
+                    colorToArea[strokeColor] = region
             }
         }
 
 
-        if (opaqueArea != null) {
+        val opaqueArea = opaqueArea
+        if (opaqueArea != null && !opaqueArea.isEmpty) {
+            val opaqueBounds = opaqueArea.bounds2D
             for (path in paths) {
                 val fills = path.fills
                 val strokes = path.strokes
                 if (fills == null && strokes == null)
                     continue
 
+                // Sub-paths are never effectively empty here, thus untouched ones are not overdrawn
                 val count = fills?.size ?: strokes!!.size
                 for (i in 0 until count) {
                     val fill = fills?.getOrNull(i)
                     val stroke = strokes?.getOrNull(i)
 
-                    if (fill != null && fill.without(opaqueArea).effectivelyEmpty(usefulPrecision)) {
+                    if (fill != null && fill.bounds2D.intersects(opaqueBounds) &&
+                        fill.without(opaqueArea).effectivelyEmpty(usefulPrecision)) {
                         fills[i] = null
 //                        path.filledSubPaths?.clear(i)
 //                        (path.overdrawnFills ?: BitSet().also { path.overdrawnFills = it }).set(i)
                     }
-                    if (stroke != null && stroke.without(opaqueArea).effectivelyEmpty(usefulPrecision)) {
+                    if (stroke != null && stroke.bounds2D.intersects(opaqueBounds) &&
+                        stroke.without(opaqueArea).effectivelyEmpty(usefulPrecision)) {
                         strokes[i] = null
 //                        path.strokedSubPaths?.clear(i)
 //                        (path.overdrawnStrokes ?: BitSet().also { path.overdrawnStrokes = it }).set(i)
@@ -528,123 +781,186 @@ internal class PathTag private constructor(
             }
         }
     }
-    private fun colorsEq(c1: String, c2: String?): Boolean =
-        c1 == c2 || // check for #??RRGGBB equality
-                (c1.length == 9 && c2?.length == 9 && c1[0] == '#' && c2[0] == '#' && c1.regionMatches(3, c2, 3, 6))
-
-    fun report(holder: ProblemsHolder) {
-        val subAreas = fills?.size ?: strokes?.size
-            ?: return // nothing to do here, the path is crippled from the very beginning
-
-        tryProposeSplit(holder)
+    /** Switches to approximate analysis. Areas are kept as is, only their nullability is updated afterwards. */
+    fun rasterize(cover: (Area) -> Coverage, withOpaque: Boolean) {
+        fillCoverage = fills?.let { fills -> Array(fills.size) { i -> fills[i]?.let(cover)?.takeIf { !it.isEmpty } } }
+        strokeCoverage = strokes?.let { strokes -> Array(strokes.size) { i -> strokes[i]?.let(cover)?.takeIf { !it.isEmpty } } }
+        opaqueCoverage = if (withOpaque) opaqueArea?.let(cover) else null
+        rasterized = true
+    }
 
-        val deadCount =
-            (0 until subAreas).count { fills?.get(it) == null && strokes?.get(it) == null }
+    fun applyClip(clip: Coverage?, clips: List<Coverage>, usefulClips: IntOpenHashSet) {
+        val fills = fillCoverage
+        val strokes = strokeCoverage
+        if (fills == null && strokes == null)
+            return
 
-        when (deadCount) {
-            0 -> return // everything is perfect
-            subAreas -> {
-                /*val what = invisiblePathDiagnosis(
-                    (overdrawnSubPaths?.cardinality() ?: 0) > 0,
-                    (clippedAwaySubPaths?.cardinality() ?: 0) > 0,
-                )*/
-                return holder.report(pathTag, "The path is fully invisible"/* TODO due to under-, overdraw, clip*/, removeTagFix)
+        val subCount = fills?.size ?: strokes!!.size
+        if (usefulClips.size < clips.size) {
+            for (index in clips.indices) {
+                if (index in usefulClips) continue
+                val c = clips[index]
+                for (i in 0 until subCount) {
+                    if (fills?.get(i)?.let(c::covers) == false || strokes?.get(i)?.let(c::covers) == false) {
+                        usefulClips.add(index)
+                        break
+                    }
+                }
+                if (usefulClips.size == clips.size)
+                    break
             }
         }
 
-        // some areas are dead, some others are not. Analyze!
-        for (i in 0 until subAreas) {
-            // TODO glue sibling paths together
-            if (fills?.get(i) == null && strokes?.get(i) == null) {
-                if (!holder.reportSubPath(i, "invisible sub-path"))
-                    break
+        if (clip != null) {
+            for (i in 0 until subCount) {
+                if (fills?.get(i)?.also { it.intersect(clip) }?.isEmpty == true)
+                    clearFill(i)
+                if (strokes?.get(i)?.also { it.intersect(clip) }?.isEmpty == true)
+                    clearStroke(i)
             }
+            opaqueCoverage?.intersect(clip)
         }
     }
-    private fun tryProposeSplit(holder: ProblemsHolder) {
-        if (holder.isOnTheFly && startPositions != null &&
-            subPathRanges != null && subPathRanges.size > 1 &&
-            pathTag.name == "path" && pathTag.subTags.isEmpty()) {
-            holder.registerProblem(
-                pathTag, "", ProblemHighlightType.INFORMATION,
-                splitPathFix(subPathRanges, startPositions)
-            )
-        }
-    }
-    private fun splitPathFix(
-        subPathRanges: List<IntArrayList>, startPositions: List<FloatArrayList>,
-    ) = object : NamedLocalQuickFix("Split path") {
-        override fun applyFix(project: Project, descriptor: ProblemDescriptor) {
-            val tag = descriptor.psiElement as? XmlTag
-            val parent = tag?.parentOfType<XmlTag>() ?: return
-            val pathData = tag.getAttributeValue("pathData", ANDROID_NS) ?: return
-            val splits = subPathRanges.mapIndexed { i, ranges ->
-                buildString(pathData.length / subPathRanges.size) {
-                    repeat(ranges.size / 2) {
-                        val viLen = pathStartReplacement(pathData, floatRanges, ranges.getInt(2 * it), startPositions[i], it)
-                        if (viLen < 0) return
-                        append(pathData, ranges.getInt(2 * it) + viLen, ranges.getInt(2 * it + 1))
+
+    /** Same as exact [overdraw] but with [Coverage]s. */
+    fun overdraw(paths: List<PaintedPath>, colorToCoverage: HashMap<String, Coverage>) {
+        val fills = fillCoverage
+        val strokes = strokeCoverage
+        if (fills != null || strokes != null) {
+            var fillVisited = false
+            var strokeVisited = false
+            @Suppress("JavaMapForEach")
+            colorToCoverage.forEach { color, region ->
+                if (fills != null) {
+                    if (colorsEq(color, fillColor)) {
+                        fillVisited = true
+                        for (i in fills.indices) {
+                            val fill = fills[i] ?: continue
+                            if (region.covers(fill)) clearFill(i)
+                            else if (fillOpacity == PixelFormat.OPAQUE) region.add(fill)
+                        }
+                    } else {
+                        fills.forEach { it?.let(region::subtract) }
+                    }
+                }
+                if (strokes != null) {
+                    if (colorsEq(color, strokeColor)) {
+                        strokeVisited = true
+                        for (i in strokes.indices) {
+                            val stroke = strokes[i] ?: continue
+                            if (region.covers(stroke)) clearStroke(i)
+                            else if (strokeOpacity == PixelFormat.OPAQUE) region.add(stroke)
+                        }
+                    } else {
+                        strokes.forEach { it?.let(region::subtract) }
                     }
                 }
             }
-            tag.setAttribute("pathData", ANDROID_NS, splits.first())
+            if (fills != null && !fillVisited && fillColor != null && fillOpacity == PixelFormat.OPAQUE) {
+                val region = Coverage()
+                fills.forEach { it?.let(region::add) }
+                if (!region.isEmpty)
+                    colorToCoverage[fillColor] = region
+            }
+            if (strokes != null && !strokeVisited && strokeColor != null && strokeOpacity == PixelFormat.OPAQUE) {
+                val region = colorToCoverage[strokeColor] ?: Coverage() // just filled with the same color
+                strokes.forEach { it?.let(region::add) }
+                if (!region.isEmpty)
+                    colorToCoverage[strokeColor] = region
+            }
+        }
 
-            splits.drop(1).asReversed().forEach { split ->
-                val child = parent.createChildTag("path", null, null, false)
-                tag.attributes.forEach {
-                    child.setAttribute(it.name, it.value)
+        val opaque = opaqueCoverage
+        if (opaque != null && !opaque.isEmpty) {
+            for (path in paths) {
+                path.fillCoverage?.forEachIndexed { i, fill ->
+                    if (fill != null && fill.also { it.subtract(opaque) }.isEmpty) path.clearFill(i)
+                }
+                path.strokeCoverage?.forEachIndexed { i, stroke ->
+                    if (stroke != null && stroke.also { it.subtract(opaque) }.isEmpty) path.clearStroke(i)
                 }
-                child.setAttribute(parent.getPrefixByNamespace(ANDROID_NS) + ":pathData", split)
-                parent.addAfter(child, tag)
             }
         }
     }
+    private fun clearFill(i: Int) {
+        fills!![i] = null
+        fillCoverage!![i] = null
+    }
+    private fun clearStroke(i: Int) {
+        strokes!![i] = null
+        strokeCoverage!![i] = null
+    }
 
-    /*private fun invisiblePathDiagnosis(overdrawn: Boolean, clippedAway: Boolean): String = when {
-        overdrawn && clippedAway -> "overdrawn and clipped away"
-        overdrawn -> "overdrawn"
-        clippedAway -> "clipped away"
-        else -> logger<PathTag>().error("invalid invisiblePathMessage(false, false)").let { "" }
-    }*/
+    private fun colorsEq(c1: String, c2: String?): Boolean =
+        c1 == c2 || // check for #??RRGGBB equality
+                (c1.length == 9 && c2?.length == 9 && c1[0] == '#' && c2[0] == '#' && c1.regionMatches(3, c2, 3, 6))
+}
 
-    private fun ProblemsHolder.reportSubPath(at: Int, complaint: String): Boolean =
-        if (subPathRanges == null) {
-            registerProblem(
-                pathDataAttr, "pathData contains $complaint", ProblemHighlightType.WEAK_WARNING,
-            )
-            false
-        } else {
-            val myRanges = subPathRanges[at]
-            val deadRange =
-                TextRange.create(valueShiftInText + myRanges.getInt(0), valueShiftInText + myRanges.getInt(myRanges.size - 1))
-            registerProblem(
-                pathDataAttr, complaint,
-                if (myRanges.size == 2) ProblemHighlightType.LIKE_UNUSED_SYMBOL else ProblemHighlightType.WEAK_WARNING,
-                deadRange,
-                *fixes(removeSubPathFix(pathDataAttr.value, at, subPathRanges, endPositions, floatRanges)),
-            )
-            true
+/**
+ * Area painted with a single color, kept as separate pieces with their bounding boxes
+ * instead of a single [Area] which becomes huge and slow on large drawables.
+ * Operations touch only pieces whose bounds overlap the operand's ones.
+ */
+internal class PaintedRegion {
+    private val pieces = ArrayList<Area>()
+    private val bounds = ArrayList<Rectangle2D>()
+
+    val isEmpty: Boolean
+        get() = pieces.isEmpty()
+
+    fun add(area: Area) {
+        if (!area.isEmpty) {
+            pieces.add(Area(area))
+            bounds.add(area.bounds2D)
         }
+    }
 
-    fun isBoundedBy(clip: Area): Boolean {
-        if (paint!!.strokeOpacity != PixelFormat.TRANSPARENT)
-            return false // stroke geometry is different from pathData itself
-        return merged()?.also { it.intersect(clip) }?.equals(clip) == true
+    fun subtract(area: Area) {
+        val areaBounds = area.bounds2D
+        var i = 0
+        while (i < pieces.size) {
+            if (bounds[i].intersects(areaBounds)) {
+                val piece = pieces[i]
+                piece.subtract(area)
+                if (piece.isEmpty) {
+                    pieces.removeAt(i)
+                    bounds.removeAt(i)
+                    continue
+                }
+                bounds[i] = piece.bounds2D
+            }
+            i++
+        }
     }
 
-    private inline fun Area.with(a: Area?) =
-        apply { a?.let(this::add) }
+    fun toCoverage(cover: (Area) -> Coverage): Coverage =
+        Coverage().also { coverage -> pieces.forEach { coverage.add(cover(it)) } }
+
+    fun covers(area: Area): Boolean {
+        if (area.isEmpty) return true
+        val areaBounds = area.bounds2D
+        var rest: Area? = null
+        for (i in pieces.indices) {
+            if (bounds[i].intersects(areaBounds)) {
+                (rest ?: Area(area).also { rest = it }).subtract(pieces[i])
+                if (rest!!.isEmpty) return true
+            }
+        }
+        return false
+    }
+}
 
-    private inline fun Area.without(a: Area?) =
-        apply { a?.let(this::subtract) }
+private inline fun Area.with(a: Area?) =
+    apply { a?.let(this::add) }
 
-    private inline operator fun Area?.plus(other: Area): Area =
-        (this ?: Area()).also { it.add(other) }
+private inline fun Area.without(a: Area?) =
+    apply { a?.let(this::subtract) }
 
-    private inline fun Shape.toArea(): Area =
-        Area(this)
+private inline operator fun Area?.plus(other: Area): Area =
+    (this ?: Area()).also { it.add(other) }
 
-}
+private inline fun Shape.toArea(): Area =
+    Area(this)
 
 private class OptimizePathFix(
     @FileModifier.SafeFieldForPreview private val cmds: List<Cmd>,
@@ -755,6 +1071,5 @@ internal fun Area.effectivelyEmpty(usefulPrecision: Int): Boolean {
     val px = 1 / 10f.pow(usefulPrecision)
     val minArea = 3 * px * px // at least 3 square pixels on xxxxxxxhhhhdpi, maybe?
     return bounds2D.let { it.width < px || it.height < px || it.width * it.height < minArea } ||
-            Shapes.computeSubShapes(this).all { Shapes.computeSignedArea(it, 0.0).absoluteValue < minArea }
-//  FIXME   ^^^^^^^^^^^^^^^^ this step can be skipped safely under certain conditions
+            Shapes.computeMaxSubShapeArea(this) < minArea
 }
@@ -63,3 +63,20 @@ fun ResourceResolver?.resolve(raw: String?): Pair<String?, String?> {
     val resourceReference = ResourceReference(resNs, resType, resName)
     return canonical to getResolvedResource(resourceReference)?.value
 }
+
+/**
+ * Remembers what [ResourceResolver] resolved: the same colors, dimensions, and attributes are referenced many times.
+ * Resources may change between inspection passes, so the cache should not outlive one.
+ */
+internal class ResolverCache(private val rr: ResourceResolver?) {
+    private val resolved = HashMap<String, Pair<String?, String?>>()
+
+    fun resolve(tag: XmlTag, name: String, namespace: String): String? =
+        resolve(tag.getAttributeValue(name, namespace)).second
+
+    fun resolve(attr: XmlAttribute): String? =
+        resolve(attr.value).second
+
+    fun resolve(raw: String?): Pair<String?, String?> =
+        if (raw == null) nullToNull else resolved.getOrPut(raw) { rr.resolve(raw) }
+}
@@ -13,6 +13,7 @@ import com.intellij.psi.xml.XmlFile
 import net.aquadc.mike.plugin.SortedArray
 import net.aquadc.mike.plugin.android.androidMinSdk
 import net.aquadc.mike.plugin.android.resTypeOf
+import net.aquadc.mike.plugin.perf.instrumented
 import java.text.MessageFormat
 import java.util.*
 import java.lang.Character.MIN_VALUE as nullChar
@@ -45,7 +46,7 @@ class UnsupportedAttrInspection : LocalInspectionTool() {
             })
         }
 
-    }
+    }.instrumented(this, holder)
 }
 
 private class Crap(
@@ -9,26 +9,26 @@ import com.intellij.psi.xml.XmlAttribute
 import com.intellij.psi.xml.XmlTag
 import net.aquadc.mike.plugin.NamedLocalQuickFix
 
-internal fun ProblemsHolder.checkDrawableTag(tag: XmlTag) {
+internal fun ProblemsHolder.checkDrawableTag(tag: XmlTag, approximateVectors: Boolean, cache: GeometryCache) {
     when (tag.name) {
-        "layer-list" -> checkLayerList(tag)
-        "transition", "ripple", "level-list", "animation-list" -> checkItems(tag)
-        "inset" -> checkInset(tag)
+        "layer-list" -> checkLayerList(tag, approximateVectors, cache)
+        "transition", "ripple", "level-list", "animation-list" -> checkItems(tag, approximateVectors, cache)
+        "inset" -> checkInset(tag, approximateVectors, cache)
         "shape" -> checkShape(tag)
-        "vector" -> checkVector(tag)
+        "vector" -> checkVector(tag, approximateVectors, cache)
         "animated-vector" -> // TODO propose inlining vector and animator if never used elsewhere
-            tag.findAaptAttrTag("drawable")?.let(this::checkWrapper) // <aapt:attr name="android:drawable">
-        "clip", "scale", "rotate" -> checkWrapper(tag)
-        "selector", "animated-selector" -> checkSelector(tag)
+            tag.findAaptAttrTag("drawable")?.let { checkWrapper(it, approximateVectors, cache) } // <aapt:attr name="android:drawable">
+        "clip", "scale", "rotate" -> checkWrapper(tag, approximateVectors, cache)
+        "selector", "animated-selector" -> checkSelector(tag, approximateVectors, cache)
         "adaptive-icon" ->
             tag.subTags.forEach {
                 if (it.name == "background" || it.name == "foreground")
-                    checkWrapper(it)
+                    checkWrapper(it, approximateVectors, cache)
             }
     }
 }
 
-private fun ProblemsHolder.checkLayerList(tag: XmlTag) {
+private fun ProblemsHolder.checkLayerList(tag: XmlTag, approximateVectors: Boolean, cache: GeometryCache) {
     tag.subTags.singleOrNull()?.let { item ->
         // assume you know what you're doing if a layer has ID
         if (item.getAttributeValue("id", ANDROID_NS) == null &&
@@ -88,17 +88,17 @@ private fun ProblemsHolder.checkLayerList(tag: XmlTag) {
             )
         }
     }
-    checkItems(tag)
+    checkItems(tag, approximateVectors, cache)
 }
 
-private fun ProblemsHolder.checkInset(tag: XmlTag) {
+private fun ProblemsHolder.checkInset(tag: XmlTag, approximateVectors: Boolean, cache: GeometryCache) {
     if (insetInsets.all { inset -> tag.getAttribute(inset, ANDROID_NS) == null })
         report(
             tag, "The inset with no insets is useless",
             tag.subTags.singleOrNull()
                 ?.takeIf { tag.getAttribute("drawable", ANDROID_NS) == null }?.let { inlineContentsFix }
         )
-    checkWrapper(tag)
+    checkWrapper(tag, approximateVectors, cache)
 }
 
 private fun ProblemsHolder.checkShape(tag: XmlTag) {
@@ -113,7 +113,7 @@ private fun ProblemsHolder.checkShape(tag: XmlTag) {
         )
 }
 
-private fun ProblemsHolder.checkSelector(tag: XmlTag) {
+private fun ProblemsHolder.checkSelector(tag: XmlTag, approximateVectors: Boolean, cache: GeometryCache) {
     tag.subTags.singleOrNull()?.let { item ->
         val onlyDrawableRef =
             item.attributes.singleOrNull()
@@ -128,18 +128,18 @@ private fun ProblemsHolder.checkSelector(tag: XmlTag) {
     val animated = tag.name == "animated-selector"
     tag.subTags.forEach {
         if (it.name == "item" || (animated && it.name == "transition"))
-            checkWrapper(it)
+            checkWrapper(it, approximateVectors, cache)
     }
 }
 
-private fun ProblemsHolder.checkItems(drawableTag: XmlTag) {
+private fun ProblemsHolder.checkItems(drawableTag: XmlTag, approximateVectors: Boolean, cache: GeometryCache) {
     drawableTag.subTags.forEach {
         if (it.name == "item")
-            checkWrapper(it)
+            checkWrapper(it, approximateVectors, cache)
     }
 }
-private fun ProblemsHolder.checkWrapper(itemTag: XmlTag) {
-    itemTag.subTags.singleOrNull()?.let(this::checkDrawableTag)
+private fun ProblemsHolder.checkWrapper(itemTag: XmlTag, approximateVectors: Boolean, cache: GeometryCache) {
+    itemTag.subTags.singleOrNull()?.let { checkDrawableTag(it, approximateVectors, cache) }
 }
 
 private val undocumentedLayerProps = arrayOf("start", "end", "width", "height", "gravity")
@@ -8,6 +8,7 @@ import com.intellij.codeInspection.LocalQuickFix
 import com.intellij.codeInspection.ProblemDescriptor
 import com.intellij.codeInspection.ProblemHighlightType
 import com.intellij.codeInspection.ProblemsHolder
+import com.intellij.codeInspection.ui.MultipleCheckboxOptionsPanel
 import com.intellij.openapi.project.Project
 import com.intellij.psi.PsiElementVisitor
 import com.intellij.psi.PsiFile
@@ -21,18 +22,31 @@ import net.aquadc.mike.plugin.NamedLocalQuickFix
 import net.aquadc.mike.plugin.android.androidMinSdk
 import net.aquadc.mike.plugin.android.resTypeOf
 import net.aquadc.mike.plugin.fixes
+import net.aquadc.mike.plugin.perf.instrumented
+import javax.swing.JComponent
 
 /**
  * @author Mike Gorünóv
  */
 class UselessResElement : LocalInspectionTool(), CleanupLocalInspectionTool {
+    @JvmField var approximateVectors: Boolean = false
+
+    override fun createOptionsPanel(): JComponent =
+        MultipleCheckboxOptionsPanel(this).apply {
+            addCheckbox("Analyze vector overdraw and clipping on a pixel grid (faster, less precise)", "approximateVectors")
+        }
+
     override fun buildVisitor(
         holder: ProblemsHolder, isOnTheFly: Boolean,
     ): PsiElementVisitor = object : PsiElementVisitor() {
         override fun visitFile(file: PsiFile) {
             val af = (file as? XmlFile)?.androidFacet
             when (af?.resTypeOf(file)) {
-                DRAWABLE -> file.rootTag?.let(holder::checkDrawableTag)
+                DRAWABLE -> file.rootTag?.let {
+                    val cache = GeometryCache.of(holder)
+                    holder.checkDrawableTag(it, approximateVectors, cache)
+                    cache.save()
+                }
                 ANIM, ANIMATOR -> file.rootTag?.let(::checkAnim)
                 XML -> file.rootTag?.let(::checkXml)
                 LAYOUT -> file.rootTag?.let {
@@ -54,7 +68,7 @@ class UselessResElement : LocalInspectionTool(), CleanupLocalInspectionTool {
                     item.takeIf { it.name == "item" }?.subTags?.single()?.let(::checkAnim)
                 }
         }
-    }
+    }.instrumented(this, holder)
 }
 
 internal fun XmlTag.findAaptAttrTag(name: String) =
@@ -1,6 +1,5 @@
 package net.aquadc.mike.plugin.android.res
 
-import com.android.ide.common.resources.ResourceResolver
 import com.android.tools.idea.configurations.ConfigurationManager
 import com.intellij.codeInspection.ProblemDescriptor
 import com.intellij.codeInspection.ProblemHighlightType
@@ -39,36 +38,22 @@ private val inlineGroupFix = object : NamedLocalQuickFix("Inline contents") {
     }
 }
 
-internal fun ProblemsHolder.checkVector(tag: XmlTag) { // TODO check for broken isStateful
-    val rr = tag.module?.let {
+internal fun ProblemsHolder.checkVector(tag: XmlTag, approximate: Boolean, cache: GeometryCache) { // TODO check for broken isStateful
+    val rr = ResolverCache(tag.module?.let {
         ConfigurationManager.getOrCreateInstance(it).resourceResolver(file.virtualFile)
-    }
+    })
 
-    val maxIntrinsicWidthPx = rr.resolve(tag, "width", ANDROID_NS).toPixels()
-    val maxIntrinsicHeightPx = rr.resolve(tag, "height", ANDROID_NS).toPixels()
     val vWidth = rr.resolve(tag, "viewportWidth", ANDROID_NS)?.toFloatOrNull() ?: Float.NaN
     val vHeight = rr.resolve(tag, "viewportHeight", ANDROID_NS)?.toFloatOrNull() ?: Float.NaN
-
-    val xDensity = maxIntrinsicWidthPx / vWidth
-    val yDensity = maxIntrinsicHeightPx / vHeight
-    var px =
-        1 / (if (xDensity.isFinite()) (if (yDensity.isFinite()) max(xDensity, yDensity) else xDensity) else yDensity)
-    var usefulPrecision = -1
-    if (px > 0) { // and implicit NaN-check
-        usefulPrecision = 0
-        while (px < 1) {
-            usefulPrecision++
-            px *= 10
-        }
-    }
-
+    val pixelSize = rr.pixelSize(tag, vWidth, vHeight)
+    val usefulPrecision = usefulPrecision(pixelSize)
 
     val viewport = if (vWidth.isNaN() || vHeight.isNaN()) null else Area(Rectangle2D.Float(0f, 0f, vWidth, vHeight))
     val paths = SmartList<PathTag>()
     checkVectorGroup(
-        rr, tag, null, viewport, usefulPrecision,
+        rr, tag, null, viewport, usefulPrecision, cache,
         paths, SmartList(), SmartList(), IntOpenHashSet(),
-        HashMap(),
+        VectorCanvas(usefulPrecision, vWidth, vHeight, pixelSize, approximate),
     )
 
     for (i in paths.indices) {
@@ -76,6 +61,33 @@ internal fun ProblemsHolder.checkVector(tag: XmlTag) { // TODO check for broken
     }
 }
 
+/**
+ * Size of a pixel at the highest density in viewport units.
+ * @return NaN if unknown
+ */
+internal fun ResolverCache.pixelSize(vectorTag: XmlTag, vWidth: Float, vHeight: Float): Float {
+    val xDensity = resolve(vectorTag, "width", ANDROID_NS).toPixels() / vWidth
+    val yDensity = resolve(vectorTag, "height", ANDROID_NS).toPixels() / vHeight
+    return 1 / (if (xDensity.isFinite()) (if (yDensity.isFinite()) max(xDensity, yDensity) else xDensity) else yDensity)
+}
+
+/**
+ * Number of decimal places which make visible difference.
+ * @return -1 if unknown
+ */
+internal fun usefulPrecision(pixelSize: Float): Int {
+    var px = pixelSize
+    var usefulPrecision = -1
+    if (px > 0) { // and implicit NaN-check
+        usefulPrecision = 0
+        while (px < 1) {
+            usefulPrecision++
+            px *= 10
+        }
+    }
+    return usefulPrecision
+}
+
 private const val MAX_DP = 4f // xxxhdpi
 private const val MAX_SCALE = 1.5f // https://android.googlesource.com/platform/frameworks/base/+/fcad09a/packages/SettingsLib/src/com/android/settingslib/display/DisplayDensityUtils.java#47
 private const val MAX_TEXT_SCALE = 1.35f // https://github.com/aosp-mirror/platform_packages_apps_settings/blob/c5a500bf07f33e02ff3d315d0ceddf9c2d31d000/res/values/arrays.xml#L156-L161
@@ -97,13 +109,14 @@ private fun String.scaled(skip: Int, factor: Float) =
     (substring(0, length - skip).toFloatOrNull() ?: Float.NaN) * factor
 
 private fun ProblemsHolder.checkVectorGroup(
-    rr: ResourceResolver?,
+    rr: ResolverCache,
     tag: XmlTag,
     parentMatrix: AffineTransform?, parentClip: Area?,
     usefulPrecision: Int,
+    cache: GeometryCache,
     paths: SmartList<PathTag>,
     clipTags: SmartList<XmlTag>, clips: SmartList<Area>, usefulClips: IntOpenHashSet,
-    colorToArea: HashMap<String, Area>,
+    canvas: VectorCanvas,
 ) {
     val isRoot = tag.name == "vector"
 
@@ -124,19 +137,19 @@ private fun ProblemsHolder.checkVectorGroup(
     subTags.forEachIndexed { index, subTag ->
         when (subTag.name) {
             "clip-path" ->
-                checkClip(subTag, isRoot, rr, matrix, usefulPrecision, localClip)?.let { clip ->
+                checkClip(subTag, isRoot, rr, matrix, usefulPrecision, cache, localClip)?.let { clip ->
                     clipTags.add(subTag)
                     clips.add(clip)
                     localClip = clip
                 }
             "group" ->
                 checkVectorGroup(
-                    rr, subTag, matrix, localClip, usefulPrecision, paths, clipTags, clips, usefulClips, colorToArea,
+                    rr, subTag, matrix, localClip, usefulPrecision, cache, paths, clipTags, clips, usefulClips, canvas,
                 )
             "path" -> { // TODO propose merging pathDatas of sibling paths with same attrs
                 subTag.getAttribute("pathData", ANDROID_NS)?.valueElement?.let { pathData ->
-                    PathTag.parse(this, rr, pathData, matrix, usefulPrecision)?.also { pathTag ->
-                        pathTag.toAreas(this, usefulPrecision)
+                    PathTag.parse(this, rr, pathData, matrix, usefulPrecision, cache)?.also { pathTag ->
+                        pathTag.toAreas(this, usefulPrecision, cache)
 
                         // Propose transferring clip-path's pathData to the only clipped path.
                         // Do this before applying clip which mutates geometry.
@@ -162,8 +175,8 @@ private fun ProblemsHolder.checkVectorGroup(
                             )
                         }
 
-                        pathTag.applyClip(localClip, clips, usefulClips, usefulPrecision)
-                        pathTag.overdraw(paths, usefulPrecision, colorToArea)
+                        pathTag.applyClip(localClip, clips, usefulClips, canvas)
+                        pathTag.overdraw(canvas)
                         paths.add(pathTag)
                     }
                 } ?: run {
@@ -228,15 +241,15 @@ private fun localMatrix(transforms: FloatArray, px: Float, py: Float, outerMatri
     }
 }
 
-private fun ProblemsHolder.getFloat(rr: ResourceResolver?, tag: XmlTag, name: String, default: Float): Float =
+private fun ProblemsHolder.getFloat(rr: ResolverCache, tag: XmlTag, name: String, default: Float): Float =
     toFloat(rr, tag.getAttribute(name, ANDROID_NS), default)
 
-internal fun ProblemsHolder.toFloat(rr: ResourceResolver?, attr: XmlAttribute?, default: Float): Float {
+internal fun ProblemsHolder.toFloat(rr: ResolverCache, attr: XmlAttribute?, default: Float): Float {
     val value = attr?.let(rr::resolve)?.toFloatOrNull()
     if (value == default) report(attr, "Attribute has default value", removeAttrFix)
     return value ?: default
 }
-internal fun ProblemsHolder.toString(rr: ResourceResolver?, attr: XmlAttribute?, default: String?): String? {
+internal fun ProblemsHolder.toString(rr: ResolverCache, attr: XmlAttribute?, default: String?): String? {
     val value = attr?.let(rr::resolve)
     if (default != null && value == default) report(attr, "Attribute has default value", removeAttrFix)
     return value ?: default
@@ -245,9 +258,10 @@ internal fun ProblemsHolder.toString(rr: ResourceResolver?, attr: XmlAttribute?,
 private fun ProblemsHolder.checkClip(
     clipTag: XmlTag,
     isRoot: Boolean,
-    rr: ResourceResolver?,
+    rr: ResolverCache,
     matrix: AffineTransform?,
     usefulPrecision: Int,
+    cache: GeometryCache,
     parentClip: Area?
 ): Area? {
     val parent = if (isRoot) "vector" else "group"
@@ -261,7 +275,7 @@ private fun ProblemsHolder.checkClip(
         )
         null
     } else {
-        val clipArea = PathTag.parse(this, rr, pathData, matrix, usefulPrecision)?.merged()
+        val clipArea = PathTag.parse(this, rr, pathData, matrix, usefulPrecision, cache)?.merged()
         if (clipArea == null) {
             null // bad path, ignore
         } else if (clipArea.effectivelyEmpty(usefulPrecision)) {
@@ -0,0 +1,86 @@
+package net.aquadc.mike.plugin.android.res
+
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet
+import java.awt.geom.Area
+import java.util.IdentityHashMap
+import kotlin.math.ceil
+import kotlin.math.min
+
+/**
+ * Clipping and overdraw state of a single vector.
+ * Starts with exact [Area]s and switches to [Coverage] on a pixel grid when [EXACT_BUDGET_NS] is exceeded
+ * or immediately if [approximate].
+ * @param pixelSize size of a pixel at the highest density in viewport units, NaN if unknown
+ */
+internal class VectorCanvas(
+    private val usefulPrecision: Int,
+    viewportWidth: Float,
+    viewportHeight: Float,
+    pixelSize: Float,
+    approximate: Boolean,
+) {
+    private val scale: Double
+    private val width: Int
+    private val height: Int
+    init {
+        val scale = (1.0 / pixelSize).let { s ->
+            min(s, min(MAX_SIDE / viewportWidth.toDouble(), MAX_SIDE / viewportHeight.toDouble()))
+        }
+        if (scale > 0 && scale.isFinite()) { // and implicit NaN-check
+            this.scale = scale
+            width = ceil(viewportWidth * scale).toInt()
+            height = ceil(viewportHeight * scale).toInt()
+        } else {
+            this.scale = Double.NaN
+            width = 0
+            height = 0
+        }
+    }
+    private val deadline = System.nanoTime() + if (approximate) 0L else EXACT_BUDGET_NS
+
+    private val paths = ArrayList<PaintedPath>()
+    private val colorToArea = HashMap<String, PaintedRegion>()
+    private var colorToCoverage: HashMap<String, Coverage>? = null
+    private val clipCoverage = IdentityHashMap<Area, Coverage>()
+
+    private var rasterizer: Coverage.Rasterizer? = null
+    private val cover: (Area) -> Coverage = { rasterizer!!.rasterize(it) }
+
+    fun clip(path: PaintedPath, clipPath: Area?, clips: List<Area>, usefulClips: IntOpenHashSet) {
+        if (colorToCoverage == null && width > 0 && System.nanoTime() > deadline)
+            raster()
+
+        if (colorToCoverage == null) {
+            path.applyClip(clipPath, clips, usefulClips, usefulPrecision)
+        } else {
+            path.rasterize(cover, withOpaque = true)
+            path.applyClip(clipPath?.let(::clipCoverage), clips.map(::clipCoverage), usefulClips)
+        }
+    }
+
+    fun paint(path: PaintedPath) {
+        val colorToCoverage = colorToCoverage
+        if (colorToCoverage == null) {
+            path.overdraw(paths, usefulPrecision, colorToArea)
+        } else {
+            if (!path.rasterized) path.rasterize(cover, withOpaque = true)
+            path.overdraw(paths, colorToCoverage)
+        }
+        paths.add(path)
+    }
+
+    private fun raster() {
+        rasterizer = Coverage.Rasterizer(scale, width, height)
+        paths.forEach { it.rasterize(cover, withOpaque = false) } // nobody will erode them
+        colorToCoverage = colorToArea.mapValuesTo(HashMap()) { (_, region) -> region.toCoverage(cover) }
+        colorToArea.clear()
+    }
+
+    private fun clipCoverage(clip: Area): Coverage =
+        clipCoverage.getOrPut(clip) { cover(clip) }
+
+    private companion object {
+        private const val EXACT_BUDGET_NS = 300_000_000L
+        private const val MAX_SIDE = 2048.0
+    }
+}
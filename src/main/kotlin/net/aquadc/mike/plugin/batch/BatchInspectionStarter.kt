@@ -0,0 +1,324 @@
+package net.aquadc.mike.plugin.batch
+
+import com.google.gson.stream.JsonWriter
+import com.intellij.codeInspection.InspectionManager
+import com.intellij.codeInspection.LocalInspectionEP
+import com.intellij.codeInspection.LocalInspectionToolSession
+import com.intellij.codeInspection.ProblemDescriptor
+import com.intellij.codeInspection.ProblemDescriptorBase
+import com.intellij.codeInspection.ProblemDescriptorUtil
+import com.intellij.codeInspection.ProblemsHolder
+import com.intellij.codeInspection.ex.LocalInspectionToolWrapper
+import com.intellij.ide.impl.ProjectUtil
+import com.intellij.openapi.application.ApplicationManager
+import com.intellij.openapi.application.ApplicationStarter
+import com.intellij.openapi.application.ex.ApplicationManagerEx
+import com.intellij.openapi.application.runReadAction
+import com.intellij.openapi.project.DumbService
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.project.ex.ProjectManagerEx
+import com.intellij.openapi.roots.ProjectFileIndex
+import com.intellij.openapi.vfs.VirtualFile
+import com.intellij.psi.PsiDocumentManager
+import com.intellij.psi.PsiElement
+import com.intellij.psi.PsiFile
+import com.intellij.psi.PsiManager
+import com.intellij.psi.PsiRecursiveElementWalkingVisitor
+import com.intellij.util.concurrency.AppExecutorUtil
+import java.io.File
+import java.io.OutputStreamWriter
+import java.io.Writer
+import java.util.concurrent.Callable
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.LongAdder
+import kotlin.system.exitProcess
+
+/**
+ * Runs this plugin's local inspections over a project without UI:
+ * `idea mikeInspect <project> [--inspections=shortName,...] [--threads=N] [--format=sarif|json] [--output=file]`.
+ * Without `--inspections`, runs the ones enabled by default.
+ * Problems are written as they are found, as SARIF 2.1.0 or JSON Lines; a summary goes last.
+ * @author Mike Gorünóv
+ */
+class BatchInspectionStarter : ApplicationStarter {
+
+    @Deprecated("Specify it as `id` for extension definition in a plugin descriptor")
+    override val commandName: String
+        get() = "mikeInspect"
+
+    override fun main(args: List<String>) {
+        val options = try {
+            Options.parse(args.drop(1))
+        } catch (e: IllegalArgumentException) {
+            System.err.println(e.message)
+            System.err.println(USAGE)
+            exitProcess(1)
+        }
+        // opening a project and waiting for indices must not block EDT
+        AppExecutorUtil.getAppExecutorService().execute {
+            try {
+                run(options)
+            } catch (e: Throwable) {
+                e.printStackTrace()
+                exitProcess(1)
+            }
+            ApplicationManager.getApplication().invokeLater { ApplicationManagerEx.getApplicationEx().exit(true, true) }
+        }
+    }
+
+    private fun run(options: Options) {
+        val project = ProjectUtil.openOrImport(options.project, null, false)
+            ?: throw IllegalArgumentException("Unable to open project ${options.project}")
+        try {
+            DumbService.getInstance(project).waitForSmartMode()
+            val tools = tools(options.inspections)
+            val files = runReadAction {
+                ArrayList<VirtualFile>().also { files ->
+                    ProjectFileIndex.getInstance(project).iterateContent { if (!it.isDirectory) files.add(it); true }
+                }
+            }
+            val write = { out: Writer ->
+                val report = if (options.sarif) SarifReport(out, tools) else JsonLinesReport(out)
+                inspect(project, files, tools, options.threads, report)
+            }
+            val output = options.output
+            if (output != null) File(output).bufferedWriter().use(write)
+            else OutputStreamWriter(System.out).let { write(it); it.flush() } // don't close stdout
+        } finally {
+            ApplicationManager.getApplication().invokeAndWait { ProjectManagerEx.getInstanceEx().forceCloseProject(project) }
+        }
+    }
+
+    private fun tools(names: Set<String>?): List<LocalInspectionToolWrapper> {
+        val ours = LocalInspectionEP.LOCAL_INSPECTION.extensionList
+            .filter { it.pluginDescriptor?.pluginId?.idString == PLUGIN_ID }
+        if (names != null) {
+            val unknown = names - ours.mapTo(HashSet()) { it.shortName }
+            require(unknown.isEmpty()) {
+                "Unknown inspections: ${unknown.joinToString()}. Available: ${ours.joinToString { it.shortName }}"
+            }
+        }
+        return ours
+            .filter { if (names == null) it.enabledByDefault else it.shortName in names }
+            .map(::LocalInspectionToolWrapper)
+    }
+
+    private fun inspect(
+        project: Project, files: List<VirtualFile>, tools: List<LocalInspectionToolWrapper>, threads: Int, report: Report,
+    ) {
+        val base = project.basePath?.let { "$it/" }
+        val nanos = ConcurrentHashMap<String, LongAdder>()
+        val problems = AtomicInteger()
+        val started = System.nanoTime()
+        val pool = Executors.newFixedThreadPool(threads)
+        try {
+            pool.invokeAll(files.map { file ->
+                Callable {
+                    val found = runReadAction {
+                        PsiManager.getInstance(project).findFile(file)?.let { psi -> inspect(psi, tools, nanos) }
+                    } ?: return@Callable
+                    val path = base?.let { file.path.removePrefix(it) } ?: file.path
+                    found.forEach { (tool, problem) ->
+                        runReadAction { Problem.of(path, tool, problem) }?.let {
+                            problems.incrementAndGet()
+                            report.problem(it)
+                        }
+                    }
+                }
+            }).forEach { it.get() }
+        } finally {
+            pool.shutdown()
+        }
+        val seconds = (System.nanoTime() - started) / 1e9
+        report.summary(files.size, problems.get(), seconds, nanos.mapValues { (_, v) -> v.sum() / 1_000_000 })
+    }
+
+    private fun inspect(
+        psi: PsiFile, tools: List<LocalInspectionToolWrapper>, nanos: ConcurrentHashMap<String, LongAdder>,
+    ): List<Pair<LocalInspectionToolWrapper, ProblemDescriptor>> {
+        val elements = ArrayList<PsiElement>()
+        psi.accept(object : PsiRecursiveElementWalkingVisitor() {
+            override fun visitElement(element: PsiElement) {
+                elements.add(element)
+                super.visitElement(element)
+            }
+        })
+        val manager = InspectionManager.getInstance(psi.project)
+        val found = ArrayList<Pair<LocalInspectionToolWrapper, ProblemDescriptor>>()
+        for (wrapper in tools) {
+            if (!wrapper.isApplicable(psi.language)) continue
+            val start = System.nanoTime()
+            val tool = wrapper.tool
+            val holder = ProblemsHolder(manager, psi, false)
+            val session = LocalInspectionToolSession(psi, 0, psi.textLength)
+            tool.inspectionStarted(session, false)
+            val visitor = tool.buildVisitor(holder, false, session)
+            elements.forEach { it.accept(visitor) }
+            tool.inspectionFinished(session, holder)
+            for (problem in holder.results) // drop @Suppress'ed, //noinspection'ed, etc. like InspectionEngine does
+                if (problem.psiElement?.let(tool::isSuppressedFor) != true) found.add(wrapper to problem)
+            nanos.computeIfAbsent(wrapper.shortName) { LongAdder() }.add(System.nanoTime() - start)
+        }
+        return found
+    }
+
+    private class Options(
+        val project: String,
+        val inspections: Set<String>?,
+        val threads: Int,
+        val sarif: Boolean,
+        val output: String?,
+    ) {
+        companion object {
+            fun parse(args: List<String>): Options {
+                var project: String? = null
+                var inspections: Set<String>? = null
+                var threads = Runtime.getRuntime().availableProcessors()
+                var sarif = true
+                var output: String? = null
+                for (arg in args) {
+                    val value = arg.substringAfter('=')
+                    when {
+                        arg.startsWith("--inspections=") -> inspections = value.split(',').filterTo(HashSet(), String::isNotBlank)
+                        arg.startsWith("--threads=") -> threads = requireNotNull(value.toIntOrNull()?.takeIf { it > 0 }) { "Bad thread count: $value" }
+                        arg.startsWith("--format=") -> sarif = when (value) {
+                            "sarif" -> true
+                            "json" -> false
+                            else -> throw IllegalArgumentException("Unknown format: $value")
+                        }
+                        arg.startsWith("--output=") -> output = value
+                        arg.startsWith("--") -> throw IllegalArgumentException("Unknown option: $arg")
+                        project == null -> project = arg
+                        else -> throw IllegalArgumentException("Unexpected argument: $arg")
+                    }
+                }
+                return Options(requireNotNull(project) { "No project path" }, inspections, threads, sarif, output)
+            }
+        }
+    }
+
+    private class Problem(
+        val inspection: String, val level: String, val file: String, val line: Int, val column: Int, val message: String,
+    ) {
+        companion object {
+            fun of(path: String, tool: LocalInspectionToolWrapper, problem: ProblemDescriptor): Problem? {
+                val element = problem.psiElement ?: return null
+                val document = PsiDocumentManager.getInstance(element.project).getDocument(element.containingFile) ?: return null
+                val offset = ((problem as? ProblemDescriptorBase)?.textRange ?: element.textRange)?.startOffset ?: return null
+                val line = document.getLineNumber(offset)
+                return Problem(
+                    tool.shortName, sarifLevel(tool.defaultLevel.name), path,
+                    line + 1, offset - document.getLineStartOffset(line) + 1,
+                    ProblemDescriptorUtil.renderDescriptionMessage(problem, element),
+                )
+            }
+            private fun sarifLevel(level: String): String = when (level) {
+                "ERROR" -> "error"
+                "WARNING" -> "warning"
+                else -> "note"
+            }
+        }
+    }
+
+    private abstract class Report(out: Writer) {
+        protected val json: JsonWriter = JsonWriter(out)
+
+        abstract fun problem(problem: Problem)
+        abstract fun summary(files: Int, problems: Int, seconds: Double, millisByInspection: Map<String, Long>)
+
+        protected fun JsonWriter.writeSummary(files: Int, problems: Int, seconds: Double, millisByInspection: Map<String, Long>) {
+            beginObject()
+            name("files").value(files)
+            name("problems").value(problems)
+            name("seconds").value(seconds)
+            name("filesPerSecond").value(if (seconds > 0) files / seconds else 0.0)
+            name("millisByInspection").beginObject()
+            millisByInspection.entries.sortedByDescending { it.value }.forEach { (k, v) -> name(k).value(v) }
+            endObject()
+            endObject()
+        }
+    }
+
+    /** One JSON object per line, the last one is `{"summary":…}`. */
+    private class JsonLinesReport(private val out: Writer) : Report(out) {
+        init {
+            json.isLenient = true // allows many top-level values
+        }
+        override fun problem(problem: Problem): Unit = synchronized(this) {
+            json.beginObject()
+            json.name("inspection").value(problem.inspection)
+            json.name("level").value(problem.level)
+            json.name("file").value(problem.file)
+            json.name("line").value(problem.line)
+            json.name("column").value(problem.column)
+            json.name("message").value(problem.message)
+            json.endObject()
+            json.flush()
+            out.write("\n")
+        }
+        override fun summary(files: Int, problems: Int, seconds: Double, millisByInspection: Map<String, Long>) {
+            json.beginObject()
+            json.name("summary").writeSummary(files, problems, seconds, millisByInspection)
+            json.endObject()
+            json.flush()
+            out.write("\n")
+        }
+    }
+
+    /** The document is written by parts: header with rules, results as found, and the summary as run properties. */
+    private class SarifReport(out: Writer, tools: List<LocalInspectionToolWrapper>) : Report(out) {
+        init {
+            json.beginObject()
+            json.name("version").value("2.1.0")
+            json.name("\$schema").value("https://json.schemastore.org/sarif-2.1.0.json")
+            json.name("runs").beginArray().beginObject()
+            json.name("tool").beginObject().name("driver").beginObject()
+            json.name("name").value("Mike's IDEA Extensions")
+            json.name("informationUri").value("https://github.com/Miha-x64/Mikes_IDEA_extensions")
+            json.name("rules").beginArray()
+            tools.forEach { tool ->
+                json.beginObject()
+                json.name("id").value(tool.shortName)
+                json.name("shortDescription").beginObject().name("text").value(tool.displayName).endObject()
+                json.endObject()
+            }
+            json.endArray()
+            json.endObject().endObject()
+            json.name("results").beginArray()
+        }
+        override fun problem(problem: Problem): Unit = synchronized(this) {
+            json.beginObject()
+            json.name("ruleId").value(problem.inspection)
+            json.name("level").value(problem.level)
+            json.name("message").beginObject().name("text").value(problem.message).endObject()
+            json.name("locations").beginArray().beginObject()
+            json.name("physicalLocation").beginObject()
+            json.name("artifactLocation").beginObject().name("uri").value(problem.file).endObject()
+            json.name("region").beginObject()
+            json.name("startLine").value(problem.line)
+            json.name("startColumn").value(problem.column)
+            json.endObject()
+            json.endObject()
+            json.endObject().endArray()
+            json.endObject()
+            json.flush()
+        }
+        override fun summary(files: Int, problems: Int, seconds: Double, millisByInspection: Map<String, Long>) {
+            json.endArray()
+            json.name("properties").beginObject()
+            json.name("summary").writeSummary(files, problems, seconds, millisByInspection)
+            json.endObject()
+            json.endObject().endArray()
+            json.endObject()
+            json.flush()
+        }
+    }
+
+    private companion object {
+        private const val PLUGIN_ID = "net.aquadc.mike.plugin"
+        private const val USAGE =
+            "Usage: mikeInspect <project> [--inspections=shortName,...] [--threads=N] [--format=sarif|json] [--output=file]"
+    }
+}
@@ -34,7 +34,7 @@ class BigDecimalConstantInspection : UastInspection(), CleanupLocalInspectionToo
 
     override fun uVisitor(
         holder: ProblemsHolder, isOnTheFly: Boolean,
-    ): AbstractUastNonRecursiveVisitor = object : FunctionCallVisitor() {
+    ): AbstractUastNonRecursiveVisitor = object : FunctionCallVisitor(names = setOf("valueOf", "BigDecimal", "BigInteger")) {
 
         override fun visitCallExpr(
             node: UExpression, src: PsiElement, kind: UastCallKind, operator: String?,
@@ -31,7 +31,7 @@ class BigDecimalSignumInspection : UastInspection(), CleanupLocalInspectionTool
 
     override fun uVisitor(
         holder: ProblemsHolder, isOnTheFly: Boolean,
-    ): AbstractUastNonRecursiveVisitor = object : FunctionCallVisitor(comparison = true) {
+    ): AbstractUastNonRecursiveVisitor = object : FunctionCallVisitor(comparison = true, names = setOf("compareTo")) {
 
         override fun visitCallExpr(
             node: UExpression, src: PsiElement, kind: UastCallKind, operator: String?,
@@ -17,6 +17,9 @@ import com.intellij.psi.search.GlobalSearchScope.allScope
 import net.aquadc.mike.plugin.DumbHintsConfigurable
 import net.aquadc.mike.plugin.hint
 import net.aquadc.mike.plugin.maxByIf
+import net.aquadc.mike.plugin.perf.Instrumentation
+import net.aquadc.mike.plugin.perf.Sample
+import net.aquadc.mike.plugin.perf.measure
 import net.aquadc.mike.plugin.referencedName
 import org.jetbrains.kotlin.idea.references.mainReference
 import org.jetbrains.kotlin.j2k.getContainingClass
@@ -87,9 +90,10 @@ private class InterfaceHintsCollector(
     private val file: PsiFile,
     private val settings: HintsSettings
 ) : FactoryInlayHintsCollector(editor) {
+    private val sample = Instrumentation.sample("InterfaceHints", Sample.Kind.HINTS, file)
     override fun collect(element: PsiElement, editor: Editor, sink: InlayHintsSink): Boolean =
         if (file.project.let { DumbService.isDumb(it) || it.isDefault }) false
-        else true.also { doCollect(element, sink) }
+        else true.also { sample.measure { doCollect(element, sink) } }
 
     private fun doCollect(element: PsiElement, sink: InlayHintsSink): Unit = when {
         settings.upcast && element is PsiMethodCallExpression -> {
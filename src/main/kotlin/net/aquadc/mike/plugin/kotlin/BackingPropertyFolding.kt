@@ -14,11 +14,15 @@ import com.intellij.refactoring.suggested.startOffset
 import com.intellij.util.SmartList
 import it.unimi.dsi.fastutil.ints.IntArrayList
 import net.aquadc.mike.plugin.not
+import net.aquadc.mike.plugin.perf.Instrumentation
+import net.aquadc.mike.plugin.perf.Sample
+import net.aquadc.mike.plugin.perf.measure
 import org.jetbrains.kotlin.idea.KotlinFileType
 import org.jetbrains.kotlin.idea.references.mainReference
 import org.jetbrains.kotlin.idea.structuralsearch.visitor.KotlinRecursiveElementWalkingVisitor
 import org.jetbrains.kotlin.lexer.KtTokens
 import org.jetbrains.kotlin.psi.psiUtil.siblings
+import org.jetbrains.kotlin.psi.KtBinaryExpression
 import org.jetbrains.kotlin.psi.KtFile
 import org.jetbrains.kotlin.psi.KtProperty
 import org.jetbrains.kotlin.psi.KtPropertyAccessor
@@ -29,15 +33,19 @@ import kotlin.math.min
 
 class BackingPropertyFolding : FoldingBuilderEx() {
 
-    override fun buildFoldRegions(root: PsiElement, document: Document, quick: Boolean): Array<FoldingDescriptor> {
-        if (quick || root !is KtFile) return FoldingDescriptor.EMPTY
+    override fun buildFoldRegions(root: PsiElement, document: Document, quick: Boolean): Array<FoldingDescriptor> =
+        if (quick || root !is KtFile) FoldingDescriptor.EMPTY
+        else Instrumentation.sample("BackingPropertyFolding", Sample.Kind.FOLDING, root.containingFile).measure { buildFoldRegions(root) }
 
+    private fun buildFoldRegions(root: KtFile): Array<FoldingDescriptor> {
         val regions = SmartList<FoldingDescriptor>()
         root.accept(object : KotlinRecursiveElementWalkingVisitor() {
             override fun visitProperty(property: KtProperty) {
                 val propName = property.takeIf { !it.isLocal && it.isPublic && it.initializer == null }?.name ?: return
+                val getterBody = property.getter?.bodyExpression
+                val lazyInit = (getterBody as? KtBinaryExpression)?.takeIf { it.operationToken == KtTokens.ELVIS } // _x ?: init
                 val backing =
-                    ((property.getter?.bodyExpression as? KtReferenceExpression)?.mainReference?.resolve() as? KtProperty)
+                    (((lazyInit?.left ?: getterBody) as? KtReferenceExpression)?.mainReference?.resolve() as? KtProperty)
                         ?.takeIf { it.hasModifier(KtTokens.PRIVATE_KEYWORD) && it.parent == property.parent }
                         ?: return
                 val backingName = backing.name?.takeIf { it.contains(propName, ignoreCase = true) } ?: return
@@ -58,7 +66,8 @@ class BackingPropertyFolding : FoldingBuilderEx() {
                         append(property.valOrVarKeyword.text).append(' ').append(propName).append(colonPrivateType)
                         backing.initializer?.let { append(" = ").append(it.text) }
                     },
-                    "get: " + publicType.text, // getter body is known to be a reference to backing property
+                    "get: " + publicType.text + // getter body is known to be a reference to backing property…
+                        (lazyInit?.right?.let { " ?: " + LINE_BREAK.matcher(it.text).replaceAll(" ↵ ") } ?: ""), // …or initialize it
                     property.takeIf { it.isVar }?.let { "${propSetterVisibility}set${property.setterParam(true)}${property.setter.bodyAsSingleLine()}" },
                     "private $backingName.get${backing.getter.bodyAsSingleLine().let { if (it.isBlank()) "" else "()$it" }}",
                     backing.takeIf { it.isVar }?.let { "private $backingName.set${backing.setterParam(false)}${backing.setter.bodyAsSingleLine()}" },
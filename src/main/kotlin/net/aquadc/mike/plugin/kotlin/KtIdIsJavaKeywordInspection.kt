@@ -7,6 +7,7 @@ import com.intellij.psi.PsiElementVisitor
 import com.intellij.psi.PsiNameIdentifierOwner
 import com.siyeh.ig.fixes.RenameFix
 import net.aquadc.mike.plugin.SortedArray
+import net.aquadc.mike.plugin.perf.instrumented
 import org.jetbrains.kotlin.lexer.KtTokens
 import org.jetbrains.kotlin.psi.*
 import org.jetbrains.kotlin.psi.psiUtil.containingClassOrObject
@@ -92,6 +93,6 @@ class KtIdIsJavaKeywordInspection : LocalInspectionTool() {
                 holder.registerProblem(highlight, "Identifier \"$id\" is a Java keyword", RenameFix())
             }
         }
-    }
+    }.instrumented(this, holder)
 
 }
@@ -7,6 +7,7 @@ import net.aquadc.mike.plugin.KtFunctionObjectVisitor
 import net.aquadc.mike.plugin.containingFunction
 import net.aquadc.mike.plugin.isInline
 import net.aquadc.mike.plugin.noinlineMessage
+import net.aquadc.mike.plugin.perf.instrumented
 import org.jetbrains.kotlin.lexer.KtTokens
 import org.jetbrains.kotlin.psi.KtExpression
 import org.jetbrains.kotlin.psi.KtFunction
@@ -40,5 +41,5 @@ class KtInlineFunctionLeaksAnonymousDeclaration : LocalInspectionTool() {
 
             return true
         }
-    }
+    }.instrumented(this, holder)
 }
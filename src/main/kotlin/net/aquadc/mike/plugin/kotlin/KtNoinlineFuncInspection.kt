@@ -6,6 +6,7 @@ import com.intellij.codeInspection.ProblemsHolder
 import com.intellij.psi.PsiElementVisitor
 import net.aquadc.mike.plugin.isInline
 import net.aquadc.mike.plugin.noinlineMessage
+import net.aquadc.mike.plugin.perf.instrumented
 import org.jetbrains.kotlin.psi.*
 
 /**
@@ -57,6 +58,6 @@ class KtNoinlineFuncInspection : LocalInspectionTool() {
                     )
                 }
         }
-    }
+    }.instrumented(this, holder)
 
 }
@@ -5,6 +5,7 @@ import com.intellij.codeInspection.ProblemsHolder
 import com.intellij.openapi.util.TextRange
 import com.intellij.psi.PsiElement
 import com.intellij.psi.PsiElementVisitor
+import net.aquadc.mike.plugin.perf.instrumented
 import org.jetbrains.kotlin.descriptors.DeclarationDescriptor
 import org.jetbrains.kotlin.descriptors.FunctionDescriptor
 import org.jetbrains.kotlin.descriptors.VariableDescriptorWithAccessors
@@ -76,6 +77,6 @@ class KtPropByInspection : LocalInspectionTool() {
                 if (!OperatorConventions.isConventionName(Name.identifier(name))) return false
                 return true
             }
-    }
+    }.instrumented(this, holder)
 
 }
@@ -1,4 +1,287 @@
 package net.aquadc.mike.plugin.kotlin
 
-//class UselessDelegate { TODO report useless lazy {} and maybe something more
-//}
\ No newline at end of file
+import com.intellij.codeInspection.LocalInspectionTool
+import com.intellij.codeInspection.ProblemDescriptor
+import com.intellij.codeInspection.ProblemHighlightType
+import com.intellij.codeInspection.ProblemsHolder
+import com.intellij.openapi.project.Project
+import com.intellij.psi.PsiClass
+import com.intellij.psi.PsiElementVisitor
+import com.intellij.psi.codeStyle.CodeStyleManager
+import com.intellij.psi.search.LocalSearchScope
+import com.intellij.psi.search.searches.ReferencesSearch
+import com.intellij.psi.util.InheritanceUtil
+import com.intellij.psi.util.PsiTreeUtil
+import net.aquadc.mike.plugin.NamedLocalQuickFix
+import net.aquadc.mike.plugin.fixes
+import net.aquadc.mike.plugin.perf.instrumented
+import org.jetbrains.kotlin.asJava.toLightClass
+import org.jetbrains.kotlin.descriptors.VariableDescriptor
+import org.jetbrains.kotlin.idea.caches.resolve.analyze
+import org.jetbrains.kotlin.idea.core.ShortenReferences
+import org.jetbrains.kotlin.idea.references.mainReference
+import org.jetbrains.kotlin.psi.KtCallExpression
+import org.jetbrains.kotlin.psi.KtClass
+import org.jetbrains.kotlin.psi.KtClassOrObject
+import org.jetbrains.kotlin.psi.KtConstantExpression
+import org.jetbrains.kotlin.psi.KtDotQualifiedExpression
+import org.jetbrains.kotlin.psi.KtExpression
+import org.jetbrains.kotlin.psi.KtLambdaExpression
+import org.jetbrains.kotlin.psi.KtNameReferenceExpression
+import org.jetbrains.kotlin.psi.KtNamedFunction
+import org.jetbrains.kotlin.psi.KtParameter
+import org.jetbrains.kotlin.psi.KtPrimaryConstructor
+import org.jetbrains.kotlin.psi.KtProperty
+import org.jetbrains.kotlin.psi.KtPsiFactory
+import org.jetbrains.kotlin.psi.KtReturnExpression
+import org.jetbrains.kotlin.psi.KtStringTemplateExpression
+import org.jetbrains.kotlin.psi.KtVisitorVoid
+import org.jetbrains.kotlin.psi.psiUtil.containingClassOrObject
+import org.jetbrains.kotlin.psi.psiUtil.referenceExpression
+import org.jetbrains.kotlin.renderer.DescriptorRenderer
+import org.jetbrains.kotlin.resolve.BindingContext
+import org.jetbrains.kotlin.types.checker.SimpleClassicTypeSystemContext.getClassFqNameUnsafe
+import org.jetbrains.kotlin.types.typeUtil.isNullable
+
+/**
+ * Reports property delegates which cost more than they give:
+ * synchronized `lazy` in main-thread classes, `lazy` for cheap values,
+ * `Delegates.observable()` and `by map` in classes having lots of instances.
+ * @author Mike Gorünóv
+ */
+class UselessDelegate : LocalInspectionTool() {
+
+    override fun buildVisitor(
+        holder: ProblemsHolder, isOnTheFly: Boolean,
+    ): PsiElementVisitor = object : KtVisitorVoid() {
+        override fun visitProperty(property: KtProperty) {
+            val delegate = property.delegate ?: return
+            val expression = delegate.expression ?: return
+            val call = expression as? KtCallExpression
+                ?: (expression as? KtDotQualifiedExpression)?.selectorExpression as? KtCallExpression
+            when (call?.functionFqn) {
+                "kotlin.lazy" -> checkLazy(property, call)
+                "kotlin.properties.Delegates.observable" -> checkObservable(property, call)
+                else -> checkMap(property, expression)
+            }
+        }
+
+        private fun checkLazy(property: KtProperty, call: KtCallExpression) {
+            val lambda = call.lambda ?: return
+            val delegate = property.delegate!!
+            cheapValue(lambda)?.let { value ->
+                // a member may be not initialized yet, read it lazily, too
+                val getter = !property.isLocal && (value as? KtNameReferenceExpression)?.mainReference?.resolve() is KtProperty
+                holder.registerProblem(
+                    delegate, "lazy holding a cheap value: Lazy and the lambda cost more than computing it",
+                    ProblemHighlightType.WEAK_WARNING, InlineLazyFix(getter),
+                )
+                return
+            }
+            if (call.valueArguments.size != 1) return // explicit mode or lock
+            val cls = property.containingClassOrObject?.mainThreadClass() ?: return
+            holder.registerProblem(
+                delegate, "Synchronized lazy in $cls which is used from the main thread only",
+                *fixes(LazyThreadSafetyNoneFix, if (property.canHaveBackingField(nullable = false)) BackingFieldFix else null),
+            )
+        }
+
+        private fun checkObservable(property: KtProperty, call: KtCallExpression) {
+            val cls = property.containingClassOrObject?.perItemClass() ?: return
+            holder.registerProblem(
+                property.delegate!!,
+                "Delegates.observable() in $cls allocates a delegate and a lambda per instance",
+                *fixes(if (call.observer() != null && property.canHaveBackingField(nullable = true)) BackingFieldFix else null),
+            )
+        }
+
+        private fun checkMap(property: KtProperty, expression: KtExpression) {
+            val cls = property.containingClassOrObject?.perItemClass() ?: return
+            val type = expression.analyze().getType(expression) ?: return
+            if (type.constructor.getClassFqNameUnsafe().asString() !in MAPS) return
+            holder.registerProblem(
+                property.delegate!!,
+                "Map delegate in $cls: every access is a hash lookup and a cast",
+                *fixes(if (!property.isVar && expression.isPrimaryConstructorParameter()) ReadMapOnceFix else null),
+            )
+        }
+    }.instrumented(this, holder)
+
+    /** Replaces `by lazy { value }` with `= value`, or `get() = value` for properties which may be not initialized yet. */
+    private class InlineLazyFix(private val getter: Boolean) : NamedLocalQuickFix(
+        if (getter) "Replace with getter" else "Replace with initializer"
+    ) {
+        override fun applyFix(project: Project, descriptor: ProblemDescriptor) {
+            val property = descriptor.psiElement.parent as? KtProperty ?: return
+            val value = (property.delegate?.expression as? KtCallExpression)?.lambda?.let(::cheapValue) ?: return
+            val factory = KtPsiFactory(project)
+            property.replace(factory.createProperty(
+                property.head() + if (getter) "\nget() = ${value.text}" else " = ${value.text}"
+            ))
+        }
+    }
+
+    private object LazyThreadSafetyNoneFix : NamedLocalQuickFix("Use LazyThreadSafetyMode.NONE") {
+        override fun applyFix(project: Project, descriptor: ProblemDescriptor) {
+            val property = descriptor.psiElement.parent as? KtProperty ?: return
+            val call = property.delegate?.expression as? KtCallExpression ?: return
+            val lambda = call.lambda ?: return
+            val factory = KtPsiFactory(project)
+            val replaced = call.replace(factory.createExpression("lazy(kotlin.LazyThreadSafetyMode.NONE) ${lambda.text}"))
+            ShortenReferences.DEFAULT.process(replaced as KtExpression)
+        }
+    }
+
+    /**
+     * Turns a delegated property into a private backing field and accessors doing the same thing,
+     * i.e. a nullable field and an elvis getter for `lazy`, and a setter calling the observer for `observable`.
+     * [BackingPropertyFolding] folds the result back to one line.
+     */
+    private object BackingFieldFix : NamedLocalQuickFix("Replace with backing field") {
+        override fun applyFix(project: Project, descriptor: ProblemDescriptor) {
+            val property = descriptor.psiElement.parent as? KtProperty ?: return
+            val expression = property.delegate?.expression ?: return
+            val call = expression as? KtCallExpression
+                ?: (expression as? KtDotQualifiedExpression)?.selectorExpression as? KtCallExpression ?: return
+            val type = property.typeText() ?: return
+            val name = property.name ?: return
+            val backing = "_$name"
+            val typed = property.head() + if (property.typeReference == null) ": $type" else ""
+
+            val (field, accessors) = when (call.functionFqn) {
+                "kotlin.lazy" -> {
+                    val lambda = call.lambda ?: return
+                    val run = if (lambda.returnsTo("lazy")) "run lazy@" else "run "
+                    "private var $backing: $type? = null" to
+                        "$typed\nget() = $backing ?: $run${lambda.text}.also { $backing = it }"
+                }
+                "kotlin.properties.Delegates.observable" -> {
+                    val initial = call.valueArguments.firstOrNull()?.getArgumentExpression()?.takeIf { it !is KtLambdaExpression } ?: return
+                    val (old, new, body) = call.observer() ?: return
+                    val value = new ?: "value"
+                    "private var $backing: $type = ${initial.text}" to
+                        "$typed\nget() = $backing\nset($value) {\n" +
+                        (old?.let { "val $it = $backing\n" } ?: "") +
+                        "$backing = $value\n" +
+                        (if (call.lambda!!.returnsTo("observable")) "run observable@{\n$body\n}" else body) + "\n}"
+                }
+                else -> return
+            }
+
+            val factory = KtPsiFactory(project)
+            val parent = property.parent
+            val newField = parent.addBefore(factory.createProperty(field), property) as KtProperty
+            parent.addBefore(factory.createNewLine(), property)
+            val newProperty = property.replace(factory.createProperty(accessors)) as KtProperty
+            ShortenReferences.DEFAULT.process(newField)
+            CodeStyleManager.getInstance(project).reformat(ShortenReferences.DEFAULT.process(newProperty))
+        }
+    }
+
+    /** Reads the value from the map in constructor, like a regular property does. */
+    private object ReadMapOnceFix : NamedLocalQuickFix("Read once into field") {
+        override fun applyFix(project: Project, descriptor: ProblemDescriptor) {
+            val property = descriptor.psiElement.parent as? KtProperty ?: return
+            val map = property.delegate?.expression ?: return
+            val type = property.typeText() ?: return
+            val typed = property.head() + if (property.typeReference == null) ": $type" else ""
+            val cast = if (type == "kotlin.Any?") "" else " as $type"
+            val replaced = property.replace(KtPsiFactory(project).createProperty(
+                "$typed = ${map.text}.getValue(\"${property.name}\")$cast"
+            )) as KtProperty
+            ShortenReferences.DEFAULT.process(replaced)
+        }
+    }
+
+    private companion object {
+        private val MAPS = setOf(
+            "kotlin.collections.Map", "kotlin.collections.MutableMap",
+            "java.util.HashMap", "java.util.LinkedHashMap", "kotlin.collections.HashMap", "kotlin.collections.LinkedHashMap",
+        )
+        private val MAIN_THREAD_CLASSES = arrayOf(
+            "android.app.Activity", "android.app.Fragment", "androidx.fragment.app.Fragment", "android.app.Dialog",
+            "android.view.View", "androidx.recyclerview.widget.RecyclerView.ViewHolder",
+            "androidx.recyclerview.widget.RecyclerView.Adapter",
+        )
+        private val MAIN_THREAD_ANNOTATIONS = setOf("MainThread", "UiThread")
+        private val PER_ITEM_CLASSES = arrayOf(
+            "androidx.recyclerview.widget.RecyclerView.ViewHolder", "android.support.v7.widget.RecyclerView.ViewHolder",
+        )
+
+        private val KtCallExpression.functionFqn: String?
+            get() = (referenceExpression()?.mainReference?.resolve() as? KtNamedFunction)?.fqName?.asString()
+
+        private val KtCallExpression.lambda: KtLambdaExpression?
+            get() = lambdaArguments.singleOrNull()?.getLambdaExpression()
+                ?: valueArguments.lastOrNull()?.getArgumentExpression() as? KtLambdaExpression
+
+        /** Whether the lambda has `return@label`s which need the label to survive moving its body. */
+        private fun KtLambdaExpression.returnsTo(label: String): Boolean =
+            PsiTreeUtil.findChildrenOfType(bodyExpression, KtReturnExpression::class.java).any { it.getLabelName() == label }
+
+        /** A constant, a string without templates, or a `val` whose value is already computed. */
+        private fun cheapValue(lambda: KtLambdaExpression): KtExpression? {
+            val value = lambda.bodyExpression?.statements?.singleOrNull() ?: return null
+            return when (value) {
+                is KtConstantExpression -> value
+                is KtStringTemplateExpression -> value.takeIf { !it.hasInterpolation() }
+                is KtNameReferenceExpression -> value.takeIf {
+                    when (val target = it.mainReference.resolve()) {
+                        is KtParameter -> !target.isMutable
+                        is KtProperty -> !target.isVar && target.getter == null && !target.hasDelegate()
+                        else -> false
+                    }
+                }
+                else -> null
+            }
+        }
+
+        /** @return simple name of the class or its main-thread superclass */
+        private fun KtClassOrObject.mainThreadClass(): String? {
+            if (annotationEntries.any { it.shortName?.asString() in MAIN_THREAD_ANNOTATIONS }) return name
+            return toLightClass()?.superClassNamed(MAIN_THREAD_CLASSES)
+        }
+
+        private fun KtClassOrObject.perItemClass(): String? {
+            if (this is KtClass && isData()) return "data class $name"
+            return toLightClass()?.superClassNamed(PER_ITEM_CLASSES)
+        }
+
+        private fun PsiClass.superClassNamed(classes: Array<String>): String? =
+            classes.firstOrNull { InheritanceUtil.isInheritor(this, it) }?.let { "${it.substring(it.lastIndexOf('.') + 1)} subclass" }
+
+        /** @return (old value name or `null`, new value name or `null`, body) if the property parameter is unused */
+        private fun KtCallExpression.observer(): Triple<String?, String?, String>? {
+            val lambda = lambda ?: return null
+            val params = lambda.valueParameters.takeIf { it.size == 3 } ?: return null
+            if (params.any { it.destructuringDeclaration != null }) return null
+            val (prop, old, new) = params.map { it.name?.takeIf { n -> n != "_" } }
+            if (prop != null && ReferencesSearch.search(params[0], LocalSearchScope(lambda)).findFirst() != null) return null
+            val body = lambda.bodyExpression?.text ?: return null
+            return Triple(old, new, body)
+        }
+
+        private fun KtProperty.canHaveBackingField(nullable: Boolean): Boolean {
+            if (isLocal || containingClassOrObject == null) return false
+            val name = name ?: return false
+            if (containingClassOrObject!!.declarations.any { it.name == "_$name" }) return false
+            val type = typeDescriptor() ?: return false
+            return nullable || !type.type.isNullable()
+        }
+
+        private fun KtProperty.typeDescriptor(): VariableDescriptor? =
+            analyze()[BindingContext.DECLARATION_TO_DESCRIPTOR, this] as? VariableDescriptor
+
+        private fun KtProperty.typeText(): String? =
+            typeReference?.text ?: typeDescriptor()?.type?.let(DescriptorRenderer.FQ_NAMES_IN_TYPES::renderType)
+
+        /** Property text before `by`, with KDoc, annotations, modifiers, name, and type. */
+        private fun KtProperty.head(): String =
+            text.substring(0, delegate!!.startOffsetInParent).trimEnd()
+
+        private fun KtExpression.isPrimaryConstructorParameter(): Boolean =
+            ((this as? KtNameReferenceExpression)?.mainReference?.resolve() as? KtParameter)
+                ?.parent?.parent is KtPrimaryConstructor
+    }
+
+}
@@ -0,0 +1,198 @@
+package net.aquadc.mike.plugin.memory
+
+import com.intellij.openapi.roots.ProjectFileIndex
+import com.intellij.openapi.util.RecursionManager
+import com.intellij.psi.PsiArrayType
+import com.intellij.psi.PsiCompiledElement
+import com.intellij.psi.PsiElement
+import com.intellij.psi.PsiEllipsisType
+import com.intellij.psi.PsiMethod
+import com.intellij.psi.PsiPrimitiveType
+import com.intellij.psi.PsiType
+import com.intellij.psi.util.CachedValueProvider
+import com.intellij.psi.util.CachedValuesManager
+import com.intellij.psi.util.PsiModificationTracker
+import org.jetbrains.uast.UBinaryExpression
+import org.jetbrains.uast.UCallExpression
+import org.jetbrains.uast.UClass
+import org.jetbrains.uast.UDoWhileExpression
+import org.jetbrains.uast.UExpression
+import org.jetbrains.uast.UExpressionList
+import org.jetbrains.uast.UForEachExpression
+import org.jetbrains.uast.UForExpression
+import org.jetbrains.uast.ULambdaExpression
+import org.jetbrains.uast.UMethod
+import org.jetbrains.uast.UPolyadicExpression
+import org.jetbrains.uast.UThrowExpression
+import org.jetbrains.uast.UWhileExpression
+import org.jetbrains.uast.UastBinaryOperator
+import org.jetbrains.uast.UastCallKind
+import org.jetbrains.uast.kotlin.KotlinReceiverUParameter
+import org.jetbrains.uast.toUElementOfType
+import org.jetbrains.uast.visitor.AbstractUastVisitor
+
+/**
+ * Estimated number of allocations.
+ * @param repeated some of them happen in loops, so [count] is a lower bound
+ */
+internal class AllocationCost(val count: Int, val repeated: Boolean) {
+    override fun toString(): String =
+        "$count${if (repeated) "+" else ""} alloc${if (count == 1 && !repeated) "" else "s"}"
+}
+
+/**
+ * Allocations made by this method and methods it calls, including hidden ones,
+ * or `null` if the method is not in project sources.
+ * Cached until any PSI change.
+ */
+internal fun PsiMethod.allocationCost(): AllocationCost? {
+    val source = navigationElement
+    if (source is PsiCompiledElement) return null
+    val file = source.containingFile?.virtualFile ?: return null
+    if (!ProjectFileIndex.getInstance(project).isInSourceContent(file)) return null
+    return CachedValuesManager.getCachedValue(source) {
+        CachedValueProvider.Result.create(
+            RecursionManager.doPreventingRecursion(source, false) { CostCounter.count(source) }, // null if recursive
+            PsiModificationTracker.MODIFICATION_COUNT,
+        )
+    }
+}
+
+/**
+ * Allocations hidden at the call site, i.e. the vararg array, boxed arguments, and capturing lambdas,
+ * plus the ones in the callee if it is in project sources.
+ */
+internal fun UCallExpression.hiddenAllocationCost(): AllocationCost? {
+    val method = resolve() ?: return null
+    val lambdas = valueArguments.count { it is ULambdaExpression && !it.isInlined && it.captures().isNotEmpty() }
+    val own = argumentsCost(method) + lambdas
+    val callee = method.allocationCost()
+    return if (own == 0 && (callee == null || callee.count == 0)) null
+    else AllocationCost(own + (callee?.count ?: 0), callee?.repeated == true)
+}
+
+private fun UCallExpression.argumentsCost(method: PsiMethod): Int {
+    val params = method.parameterList.parameters
+    val receiver = if (method.toUElementOfType<UMethod>()?.uastParameters?.firstOrNull() is KotlinReceiverUParameter) 1 else 0
+    var cost = 0
+    for (i in receiver until params.size) {
+        val param = params[i]
+        val arg = getArgumentForParameter(i - receiver) ?: continue
+        val type = param.type
+        cost += if (type is PsiEllipsisType) {
+            val elements = (arg as? UExpressionList)?.expressions
+            if (elements == null && arg.getExpressionType() is PsiArrayType) 0 // passed as is
+            else 1 + (elements ?: listOf(arg)).count { it.isBoxedInto(type.componentType) }
+        } else {
+            if (arg.isBoxedInto(type)) 1 else 0
+        }
+    }
+    return cost
+}
+
+private fun UExpression.isBoxedInto(type: PsiType): Boolean =
+    type !is PsiPrimitiveType && isBoxed()
+
+/** Whether this primitive is boxed when passed as an object, i.e. it is not a cached small value. */
+private fun UExpression.isBoxed(): Boolean {
+    val primitive = getExpressionType() as? PsiPrimitiveType ?: return false
+    if (primitive == PsiType.VOID || primitive == PsiType.BOOLEAN) return false // Boolean.valueOf() is cached
+    val value = evaluate()
+    return !((value is Int || value is Long || value is Short || value is Byte) && (value as Number).toLong() in -128L..127L)
+}
+
+/** Whether the loop creates an Iterator, i.e. it iterates over neither an array nor a range. */
+internal val UForEachExpression.allocatesIterator: Boolean
+    get() {
+        val iterated = iteratedValue.getExpressionType()
+        return iterated !is PsiArrayType && iterated?.canonicalText !in RANGES
+    }
+
+private val RANGES = setOf(
+    "kotlin.ranges.IntRange", "kotlin.ranges.IntProgression",
+    "kotlin.ranges.LongRange", "kotlin.ranges.LongProgression",
+    "kotlin.ranges.CharRange", "kotlin.ranges.CharProgression",
+) // these are compiled to counting loops
+
+private class CostCounter : AbstractUastVisitor() {
+    private var count = 0
+    private var repeated = false
+    private var loops = 0
+    private val repeatingLambdas = ArrayList<Boolean>()
+
+    private fun alloc(n: Int) {
+        count += n
+        if (n > 0 && loops > 0) repeated = true
+    }
+
+    override fun visitCallExpression(node: UCallExpression): Boolean {
+        val kind = node.kind
+        if (kind == UastCallKind.CONSTRUCTOR_CALL ||
+            kind == UastCallKind.NEW_ARRAY_WITH_DIMENSIONS || kind == UastCallKind.NEW_ARRAY_WITH_INITIALIZER)
+            alloc(1)
+        node.resolve()?.let { method ->
+            alloc(node.argumentsCost(method)) // lambdas will be visited separately
+            method.allocationCost()?.let {
+                alloc(it.count)
+                repeated = repeated || it.repeated
+            }
+        }
+        return false
+    }
+
+    override fun visitLambdaExpression(node: ULambdaExpression): Boolean {
+        if (!node.isInlined) {
+            if (node.captures().isNotEmpty()) alloc(1)
+            return true // runs later, not a part of this method
+        }
+        val perElement = (node.uastParent as? UCallExpression)?.methodName in PER_ELEMENT_LAMBDAS
+        repeatingLambdas.add(perElement)
+        if (perElement) loops++
+        return false
+    }
+    override fun afterVisitLambdaExpression(node: ULambdaExpression) {
+        if (repeatingLambdas.removeLast()) loops--
+    }
+
+    override fun visitForEachExpression(node: UForEachExpression): Boolean {
+        if (node.allocatesIterator) alloc(1)
+        loops++
+        return false
+    }
+    override fun afterVisitForEachExpression(node: UForEachExpression) { loops-- }
+    override fun visitForExpression(node: UForExpression): Boolean { loops++; return false }
+    override fun afterVisitForExpression(node: UForExpression) { loops-- }
+    override fun visitWhileExpression(node: UWhileExpression): Boolean { loops++; return false }
+    override fun afterVisitWhileExpression(node: UWhileExpression) { loops-- }
+    override fun visitDoWhileExpression(node: UDoWhileExpression): Boolean { loops++; return false }
+    override fun afterVisitDoWhileExpression(node: UDoWhileExpression) { loops-- }
+
+    override fun visitBinaryExpression(node: UBinaryExpression): Boolean {
+        if (node.operatorIdentifier?.name == "to") alloc(1 + node.operands.count { it.isBoxed() }) // Pair and boxes
+        else countConcatenation(node)
+        return false
+    }
+    override fun visitPolyadicExpression(node: UPolyadicExpression): Boolean {
+        countConcatenation(node)
+        return false
+    }
+    private fun countConcatenation(node: UPolyadicExpression) {
+        if (node.operator == UastBinaryOperator.PLUS && node.isString &&
+            (node.uastParent as? UPolyadicExpression)?.let { it.operator == UastBinaryOperator.PLUS && it.isString } != true &&
+            node.evaluate() == null)
+            alloc(1) // ignoring StringBuilder and its buffers
+    }
+    private val UPolyadicExpression.isString: Boolean
+        get() = getExpressionType()?.equalsToText("java.lang.String") == true
+
+    override fun visitClass(node: UClass): Boolean = true // runs later
+    override fun visitThrowExpression(node: UThrowExpression): Boolean = true // not a normal path
+
+    companion object {
+        fun count(method: PsiElement): AllocationCost {
+            val counter = CostCounter()
+            method.toUElementOfType<UMethod>()?.uastBody?.accept(counter)
+            return AllocationCost(counter.count, counter.repeated)
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package net.aquadc.mike.plugin.memory
+
+import com.intellij.codeInsight.hints.FactoryInlayHintsCollector
+import com.intellij.codeInsight.hints.ImmediateConfigurable
+import com.intellij.codeInsight.hints.InlayGroup
+import com.intellij.codeInsight.hints.InlayHintsCollector
+import com.intellij.codeInsight.hints.InlayHintsProvider
+import com.intellij.codeInsight.hints.InlayHintsSink
+import com.intellij.codeInsight.hints.SettingsKey
+import com.intellij.openapi.editor.Editor
+import com.intellij.openapi.project.DumbService
+import com.intellij.psi.PsiCallExpression
+import com.intellij.psi.PsiElement
+import com.intellij.psi.PsiFile
+import com.intellij.psi.PsiForeachStatement
+import com.intellij.refactoring.suggested.endOffset
+import net.aquadc.mike.plugin.DumbHintsConfigurable
+import net.aquadc.mike.plugin.hint
+import net.aquadc.mike.plugin.perf.Instrumentation
+import net.aquadc.mike.plugin.perf.Sample
+import net.aquadc.mike.plugin.perf.measure
+import org.jetbrains.kotlin.psi.KtCallExpression
+import org.jetbrains.kotlin.psi.KtForExpression
+import org.jetbrains.uast.UCallExpression
+import org.jetbrains.uast.UForEachExpression
+import org.jetbrains.uast.toUElementOfType
+
+class AllocationCostHintsJava : AllocationCostHintsProvider(settingsKey) {
+    private companion object {
+        private val settingsKey = SettingsKey<AllocationCostHintsSettings>("net.aquadc.mike.plugin.memory.allocationCostHints.java")
+    }
+}
+class AllocationCostHintsKotlin : AllocationCostHintsProvider(settingsKey) {
+    private companion object {
+        private val settingsKey = SettingsKey<AllocationCostHintsSettings>("net.aquadc.mike.plugin.memory.allocationCostHints.kotlin")
+    }
+}
+
+abstract class AllocationCostHintsProvider(
+    override val key: SettingsKey<AllocationCostHintsSettings>,
+) : InlayHintsProvider<AllocationCostHintsSettings> {
+
+    override fun getCollectorFor(
+        file: PsiFile,
+        editor: Editor,
+        settings: AllocationCostHintsSettings,
+        sink: InlayHintsSink
+    ): InlayHintsCollector? =
+        if (settings.enabled) AllocationCostHintsCollector(file, editor) else null
+
+    override fun createSettings(): AllocationCostHintsSettings =
+        AllocationCostHintsSettings()
+
+    override val name: String
+        get() = "Allocation cost hints"
+    override val group: InlayGroup
+        get() = InlayGroup.OTHER_GROUP
+    override val description: String?
+        get() = "Hints estimating allocations hidden behind method calls"
+    override val previewText: String?
+        get() = null
+    override fun getCaseDescription(case: ImmediateConfigurable.Case): String? =
+        "<p>Estimates allocations made by a call: vararg arrays, boxing, capturing lambdas, " +
+            "and everything allocated by the called method and methods it calls in the project, " +
+            "including iterators, <code>to</code> pairs, and string concatenation. " +
+            "Loops over collections get a hint for their iterator. " +
+            "<code>+</code> means that some allocations happen in loops.</p><br/>" +
+            "<p><small>The feature is provided by " +
+            "<a href=\"https://github.com/Miha-x64/Mikes_IDEA_extensions\">Mike's IDEA Extensions</a>." +
+            "</small></p>"
+    override fun createConfigurable(settings: AllocationCostHintsSettings): ImmediateConfigurable = object : DumbHintsConfigurable() {
+        override val cases: List<ImmediateConfigurable.Case> get() = listOf(
+            Case("Allocation cost hints", settings::enabled),
+        )
+    }
+
+}
+
+private class AllocationCostHintsCollector(
+    private val file: PsiFile,
+    editor: Editor,
+) : FactoryInlayHintsCollector(editor) {
+
+    private val sample = Instrumentation.sample("AllocationCostHints", Sample.Kind.HINTS, file)
+
+    override fun collect(element: PsiElement, editor: Editor, sink: InlayHintsSink): Boolean {
+        if (file.project.let { DumbService.isDumb(it) || it.isDefault }) return false
+        if (element is PsiCallExpression || element is KtCallExpression) sample.measure {
+            element.toUElementOfType<UCallExpression>()?.hiddenAllocationCost()?.let { cost ->
+                sink.addInlineElement(element.endOffset, true, factory.hint(cost.toString()), false)
+            }
+        } else if (element is PsiForeachStatement || element is KtForExpression) sample.measure {
+            element.toUElementOfType<UForEachExpression>()?.takeIf { it.allocatesIterator }?.let { loop ->
+                loop.iteratedValue.sourcePsi?.let { // `for (x in list ⟨1 alloc⟩)`
+                    sink.addInlineElement(it.endOffset, true, factory.hint(AllocationCost(1, false).toString()), false)
+                }
+            }
+        }
+        return true // `false` would skip the whole pass, not only children
+    }
+
+}
+
+data class AllocationCostHintsSettings(var enabled: Boolean = false)
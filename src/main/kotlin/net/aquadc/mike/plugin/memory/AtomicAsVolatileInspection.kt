@@ -1,17 +1,28 @@
 package net.aquadc.mike.plugin.memory
 
+import com.intellij.analysis.AnalysisScope
 import com.intellij.codeInspection.*
+import com.intellij.openapi.application.runReadAction
 import com.intellij.psi.*
+import com.intellij.psi.search.LocalSearchScope
 import com.intellij.psi.search.searches.ReferencesSearch
+import com.intellij.psi.util.CachedValueProvider
+import com.intellij.psi.util.CachedValuesManager
+import com.intellij.psi.util.PsiModificationTracker
 import com.intellij.psi.util.PsiTreeUtil
 import com.intellij.psi.util.PsiUtil
 import com.intellij.util.Processor
 import net.aquadc.mike.plugin.SortedArray
 import net.aquadc.mike.plugin.UastInspection
+import org.jetbrains.kotlin.asJava.unwrapped
+import org.jetbrains.kotlin.idea.references.mainReference
+import org.jetbrains.kotlin.load.java.JvmAbi
 import org.jetbrains.kotlin.psi.KtCallExpression
 import org.jetbrains.kotlin.psi.KtDotQualifiedExpression
 import org.jetbrains.kotlin.psi.KtProperty
+import org.jetbrains.kotlin.psi.KtSimpleNameExpression
 import org.jetbrains.uast.UField
+import org.jetbrains.uast.toUElementOfType
 import org.jetbrains.uast.visitor.AbstractUastNonRecursiveVisitor
 import java.util.concurrent.atomic.*
 
@@ -20,18 +31,9 @@ import java.util.concurrent.atomic.*
  */
 class AtomicAsVolatileInspection : UastInspection() {
 
-    private val atomics = SortedArray.of(
-        // boxes
-        AtomicBoolean::class.java.name, AtomicInteger::class.java.name,
-        AtomicLong::class.java.name, AtomicReference::class.java.name,
-        // updaters
-        AtomicIntegerFieldUpdater::class.java.name,
-        AtomicLongFieldUpdater::class.java.name,
-        AtomicReferenceFieldUpdater::class.java.name,
-    )
-    private val volatileActions = arrayOf(
-        "get", "set"
-    )
+    // not registered itself, shared by AtomicAsVolatileGlobalInspection
+    override fun getShortName(): String =
+        "atomicAsVolatile"
 
     override fun uVisitor(holder: ProblemsHolder, isOnTheFly: Boolean): AbstractUastNonRecursiveVisitor =
         object : AbstractUastNonRecursiveVisitor() {
@@ -43,53 +45,146 @@ class AtomicAsVolatileInspection : UastInspection() {
 
     private fun checkField(holder: ProblemsHolder, field: UField) {
         val src = field.sourceElement ?: return
-        val qualifiedName = PsiUtil.resolveClassInType(field.type)?.qualifiedName ?: return
-
-        if (qualifiedName in atomics && isAtomicAbused(src)) {
-            holder.registerProblem(
-                field.uTypeElement,
-                "${field.type.presentableText} can be replaced with volatile"
-            )
+        if (field.isAtomic && src.isAtomicAbused) {
+            holder.registerProblem(field.uTypeElement, field.complaint)
         }
     }
+}
+
+/**
+ * Batch mode of [AtomicAsVolatileInspection].
+ * Walks the scope once collecting usages of all atomic fields instead of searching references of each one.
+ * @author Mike Gorünóv
+ */
+class AtomicAsVolatileGlobalInspection : GlobalInspectionTool() {
+
+    override fun getSharedLocalInspectionTool(): LocalInspectionTool =
+        AtomicAsVolatileInspection()
 
-    private fun isAtomicAbused(src: PsiElement): Boolean {
-        var volatile = false
-        val complete = ReferencesSearch.search(src).forEach(Processor { usage: PsiReference ->
-            when (usage.outerMethodName) {
-                null -> false // unknown, fail conservatively
-                in volatileActions -> {
-                    volatile = true
-                    true
+    override fun isGraphNeeded(): Boolean =
+        false
+
+    override fun runInspection(
+        scope: AnalysisScope,
+        manager: InspectionManager,
+        globalContext: GlobalInspectionContext,
+        problemDescriptionsProcessor: ProblemDescriptionsProcessor,
+    ) {
+        // declarations, and names they can be referenced by
+        val fields = HashMap<PsiElement, UField>()
+        val names = HashSet<String>()
+        scope.accept(object : PsiRecursiveElementWalkingVisitor() {
+            override fun visitElement(element: PsiElement) {
+                if (element is PsiField || element is KtProperty) {
+                    element.toUElementOfType<UField>()?.takeIf { it.isAtomic }?.let { field ->
+                        fields[element] = field
+                        names.add(field.name)
+                        if (element is KtProperty) names.add(JvmAbi.getterName(field.name)) // from Java
+                    }
                 }
-                else -> false // stop execution, non-volatile action found
+                super.visitElement(element)
             }
         })
-        return complete && volatile
+        if (fields.isEmpty()) return
+
+        // field to whether only volatile actions were seen
+        val volatile = HashMap<PsiElement, Boolean>()
+        scope.accept(object : PsiRecursiveElementWalkingVisitor() {
+            override fun visitElement(element: PsiElement) {
+                val ref = when (element) {
+                    is PsiReferenceExpression -> element.takeIf { it.referenceName in names }
+                    is KtSimpleNameExpression -> element.takeIf { it.getReferencedName() in names }?.mainReference
+                    else -> null
+                }
+                ref?.resolve()?.unwrapped?.takeIf(fields::containsKey)?.let { field ->
+                    volatile[field] = volatile[field] != false && ref.outerMethodName in volatileActions
+                }
+                super.visitElement(element)
+            }
+        })
+
+        runReadAction {
+            fields.forEach { (element, field) ->
+                // usages outside of scope, including skipped tests, are unknown unless the field is private
+                if (volatile[element] == true && element.isValid &&
+                    (scope.scopeType == AnalysisScope.PROJECT && scope.isIncludeTestSource || element.useScope is LocalSearchScope)) {
+                    problemDescriptionsProcessor.addProblemElement(
+                        // no graph, thus no RefField for a KtProperty, but a file is always there
+                        globalContext.refManager.getReference(element) ?: globalContext.refManager.getReference(element.containingFile),
+                        manager.createProblemDescriptor(
+                            field.uTypeElement, field.complaint, false, LocalQuickFix.EMPTY_ARRAY,
+                            ProblemHighlightType.GENERIC_ERROR_OR_WARNING,
+                        ),
+                    )
+                }
+            }
+        }
     }
+}
 
-    private val UField.uTypeElement: PsiElement get() =
-        ((this as? UField)?.sourcePsi as? KtProperty)?.typeReference?.typeElement ?: // Kotlin explicit type, or
-        typeReference?.sourcePsi ?: // Java type, or
-        uastInitializer?.sourcePsi ?: // initializer expression (let's think that type is inferred), or
-        this // the whole field declaration, if something went wrong
+private val atomics = SortedArray.of(
+    // boxes
+    AtomicBoolean::class.java.name, AtomicInteger::class.java.name,
+    AtomicLong::class.java.name, AtomicReference::class.java.name,
+    // updaters
+    AtomicIntegerFieldUpdater::class.java.name,
+    AtomicLongFieldUpdater::class.java.name,
+    AtomicReferenceFieldUpdater::class.java.name,
+)
+private val volatileActions = arrayOf(
+    "get", "set", "lazySet"
+)
 
-    private val PsiReference.outerMethodName: String? get() {
-        val el = element
+private val UField.isAtomic: Boolean
+    get() = PsiUtil.resolveClassInType(type)?.qualifiedName?.let { it in atomics } == true
 
-        // Java
-        PsiTreeUtil.getParentOfType(el, PsiMethodCallExpression::class.java)?.methodExpression
-            ?.takeIf { it.qualifierExpression === this }
-            ?.let { (it.reference?.resolve() as PsiMethod?)?.name }
-            ?.let { return it }
+private val UField.complaint: String
+    get() = "${type.presentableText} can be replaced with volatile"
 
-        // Kotlin
-        PsiTreeUtil.getParentOfType(el, KtDotQualifiedExpression::class.java)
-            ?.takeIf { it.receiverExpression.references.any { it.element == el } }
-            ?.let { (it.selectorExpression as? KtCallExpression)?.calleeExpression?.references }
-            ?.forEach { (it.resolve() as? PsiMethod)?.name?.let { return it } }
+private val UField.uTypeElement: PsiElement get() =
+    (sourcePsi as? KtProperty)?.typeReference?.typeElement ?: // Kotlin explicit type, or
+    typeReference?.sourcePsi ?: // Java type, or
+    uastInitializer?.sourcePsi ?: // initializer expression (let's think that type is inferred), or
+    this // the whole field declaration, if something went wrong
 
-        return null
+/**
+ * Whether only get() and set() are called on this atomic.
+ * Usages may be anywhere, so the answer is valid until any PSI change.
+ */
+private val PsiElement.isAtomicAbused: Boolean
+    get() = CachedValuesManager.getCachedValue(this) {
+        CachedValueProvider.Result.create(searchAtomicAbuse(this), PsiModificationTracker.getInstance(project))
     }
 
+private fun searchAtomicAbuse(src: PsiElement): Boolean {
+    var volatile = false
+    val complete = ReferencesSearch.search(src).forEach(Processor { usage: PsiReference ->
+        when (usage.outerMethodName) {
+            null -> false // unknown, fail conservatively
+            in volatileActions -> {
+                volatile = true
+                true
+            }
+            else -> false // stop execution, non-volatile action found
+        }
+    })
+    return complete && volatile
+}
+
+private val PsiReference.outerMethodName: String? get() {
+    val el = element
+
+    // Java
+    PsiTreeUtil.getParentOfType(el, PsiMethodCallExpression::class.java)?.methodExpression
+        ?.takeIf { it.qualifierExpression === this }
+        ?.let { (it.reference?.resolve() as PsiMethod?)?.name }
+        ?.let { return it }
+
+    // Kotlin
+    PsiTreeUtil.getParentOfType(el, KtDotQualifiedExpression::class.java)
+        ?.takeIf { it.receiverExpression.references.any { it.element == el } }
+        ?.let { (it.selectorExpression as? KtCallExpression)?.calleeExpression?.references }
+        ?.forEach { (it.resolve() as? PsiMethod)?.name?.let { return it } }
+
+    return null
 }
@@ -5,6 +5,7 @@ import com.intellij.codeInspection.ProblemHighlightType
 import com.intellij.codeInspection.ProblemsHolder
 import com.intellij.psi.PsiElementVisitor
 import net.aquadc.mike.plugin.NamedReplacementFix
+import net.aquadc.mike.plugin.perf.instrumented
 import org.jetbrains.kotlin.asJava.namedUnwrappedElement
 import org.jetbrains.kotlin.idea.caches.resolve.analyze
 import org.jetbrains.kotlin.idea.references.mainReference
@@ -47,7 +48,7 @@ class BoxArray : LocalInspectionTool() {
                 ),
             )
         }
-    }
+    }.instrumented(this, holder)
 
     private companion object {
         private val typeNames = arrayOf("Boolean", "Byte", "Short", "Char", "Int", "Long", "Float", "Double")
@@ -0,0 +1,251 @@
+package net.aquadc.mike.plugin.memory
+
+import com.intellij.codeInspection.LocalInspectionTool
+import com.intellij.codeInspection.ProblemDescriptor
+import com.intellij.codeInspection.ProblemHighlightType
+import com.intellij.codeInspection.ProblemsHolder
+import com.intellij.codeInspection.ui.MultipleCheckboxOptionsPanel
+import com.intellij.openapi.project.Project
+import com.intellij.psi.JavaPsiFacade
+import com.intellij.psi.PsiElementVisitor
+import com.intellij.psi.search.LocalSearchScope
+import com.intellij.psi.search.searches.ReferencesSearch
+import net.aquadc.mike.plugin.NamedLocalQuickFix
+import net.aquadc.mike.plugin.fixes
+import net.aquadc.mike.plugin.perf.instrumented
+import org.jetbrains.kotlin.idea.caches.resolve.analyze
+import org.jetbrains.kotlin.idea.core.ShortenReferences
+import org.jetbrains.kotlin.js.descriptorUtils.nameIfStandardType
+import org.jetbrains.kotlin.lexer.KtTokens
+import org.jetbrains.kotlin.psi.KtArrayAccessExpression
+import org.jetbrains.kotlin.psi.KtBinaryExpression
+import org.jetbrains.kotlin.psi.KtBlockExpression
+import org.jetbrains.kotlin.psi.KtCallExpression
+import org.jetbrains.kotlin.psi.KtDotQualifiedExpression
+import org.jetbrains.kotlin.psi.KtElement
+import org.jetbrains.kotlin.psi.KtExpression
+import org.jetbrains.kotlin.psi.KtForExpression
+import org.jetbrains.kotlin.psi.KtPostfixExpression
+import org.jetbrains.kotlin.psi.KtProperty
+import org.jetbrains.kotlin.psi.KtPsiFactory
+import org.jetbrains.kotlin.psi.KtVisitorVoid
+import org.jetbrains.kotlin.psi.psiUtil.isPrivate
+import org.jetbrains.kotlin.psi.psiUtil.referenceExpression
+import org.jetbrains.kotlin.renderer.DescriptorRenderer
+import org.jetbrains.kotlin.types.KotlinType
+import org.jetbrains.kotlin.types.checker.SimpleClassicTypeSystemContext.getClassFqNameUnsafe
+import org.jetbrains.kotlin.types.typeUtil.TypeNullability
+import org.jetbrains.kotlin.types.typeUtil.nullability
+import org.jetbrains.uast.toUElement
+import java.util.Locale
+import javax.swing.JComponent
+
+/**
+ * @author Mike Gorünóv
+ */
+class BoxCollection : LocalInspectionTool() {
+    @JvmField var preferAndroidx: Boolean = false
+
+    override fun createOptionsPanel(): JComponent =
+        MultipleCheckboxOptionsPanel(this).apply {
+            addCheckbox("Suggest androidx.collection instead of fastutil", "preferAndroidx")
+        }
+
+    override fun buildVisitor(holder: ProblemsHolder, isOnTheFly: Boolean): PsiElementVisitor = object : KtVisitorVoid() {
+        override fun visitProperty(property: KtProperty) {
+            // only locals and private properties can be tracked and changed safely
+            if (!property.isLocal && !property.isPrivate()) return
+            val initializer = property.initializer ?: return
+            val call = initializer as? KtCallExpression
+                ?: (initializer as? KtDotQualifiedExpression)?.selectorExpression as? KtCallExpression ?: return
+
+            val type = initializer.analyze().getType(initializer) ?: return
+            val fqn = type.constructor.getClassFqNameUnsafe().asString()
+            val kind = KINDS[fqn] ?: return
+            val typeArgs = type.arguments.map { it.type }
+            val elements = typeArgs.map(::primitiveName)
+            if (elements.all { it == null }) return
+
+            val uses = Uses(property, kind == Kind.MAP || kind == Kind.LINKED_MAP)
+            val subject = when (kind) {
+                Kind.MAP -> "Map with boxed " + listOfNotNull(elements[0]?.let { "$it keys" }, elements[1]?.let { "$it values" }).joinToString(" and ")
+                else -> "${kind.title} of boxed ${elements[0]}s"
+            }
+            val traffic = when {
+                uses.count == 0 -> ""
+                uses.hot == 0 -> ", ${uses.count} element accesses"
+                else -> ", ${uses.count} element accesses, ${uses.hot} in hot code"
+            }
+
+            val replacement = if (call.valueArguments.isNotEmpty() || call.lambdaArguments.isNotEmpty()) null // keep it simple
+            else if (fqn in READ_ONLY) null // replacing listOf<Int>() with a mutable one changes semantics
+            else if (preferAndroidx) androidxReplacement(kind, elements, typeArgs, uses.nullableReads == 0)?.takeIf { uses.androidxCompatible }
+            else fastutilReplacement(kind, elements, typeArgs, uses.nullableReads == 0)
+            holder.registerProblem(
+                initializer,
+                subject + traffic,
+                if (uses.hot > 0) ProblemHighlightType.GENERIC_ERROR_OR_WARNING else ProblemHighlightType.WEAK_WARNING,
+                *fixes(replacement
+                    ?.takeIf { JavaPsiFacade.getInstance(property.project).findClass(it.first, property.resolveScope) != null }
+                    ?.let { (cls, generics) -> ReplaceCollectionFix(cls, generics) })
+            )
+        }
+    }.instrumented(this, holder)
+
+    /** Reads, writes, and iterations of a collection property. */
+    private class Uses(property: KtProperty, map: Boolean) {
+        var count = 0
+        var hot = 0
+        var androidxCompatible = true
+        /**
+         * `map[k]` and `map.get(k)` not asserted with `!!`, and `put()` or `remove()` results being used:
+         * primitive maps return 0 or throw instead of `null`
+         */
+        var nullableReads = 0
+
+        init {
+            val scope = if (property.isLocal) property.parent else property.containingKtFile
+            ReferencesSearch.search(property, LocalSearchScope(scope)).forEach { ref ->
+                val expr = ref.element as? KtExpression ?: return@forEach
+                val parent = expr.parent
+                val (transfer, compatible) = when {
+                    parent is KtDotQualifiedExpression && parent.receiverExpression == expr -> {
+                        val name = (parent.selectorExpression as? KtCallExpression)?.referenceExpression()?.text
+                        if (name == "get" && !parent.isAsserted) nullableReads++
+                        // androidx maps return Unit from put() and remove()
+                        val previousUsed = map && (name == "put" || name == "remove") && parent.parent !is KtBlockExpression
+                        if (previousUsed) nullableReads++
+                        (name in TRANSFERRING) to (!previousUsed && name != null && name in ANDROIDX_COMPATIBLE ||
+                            parent.selectorExpression?.text in ANDROIDX_COMPATIBLE_PROPERTIES)
+                    }
+                    parent is KtArrayAccessExpression && parent.arrayExpression == expr -> {
+                        val assigned = (parent.parent as? KtBinaryExpression)
+                            ?.let { it.left == parent && it.operationToken == KtTokens.EQ } == true
+                        if (!assigned && !parent.isAsserted) nullableReads++
+                        true to true
+                    }
+                    parent is KtBinaryExpression && (
+                        parent.right == expr && (parent.operationToken == KtTokens.IN_KEYWORD || parent.operationToken == KtTokens.NOT_IN) ||
+                            parent.left == expr && (parent.operationToken == KtTokens.PLUSEQ || parent.operationToken == KtTokens.MINUSEQ)) ->
+                        true to true
+                    parent is KtForExpression && parent.loopRange == expr ->
+                        true to false
+                    else ->
+                        false to false // escapes
+                }
+                if (transfer) {
+                    count++
+                    if (parent is KtForExpression || expr.toUElement()?.codeSite()?.hotness == Hotness.HOT) hot++
+                }
+                androidxCompatible = androidxCompatible && compatible
+            }
+        }
+
+        private val KtExpression.isAsserted: Boolean
+            get() = (parent as? KtPostfixExpression)?.operationToken == KtTokens.EXCLEXCL
+    }
+
+    /** Replaces the initializer and the explicit type, if any. */
+    private class ReplaceCollectionFix(
+        private val cls: String,
+        private val generics: String,
+    ) : NamedLocalQuickFix("Replace with ${cls.substring(cls.lastIndexOf('.') + 1)}") {
+        override fun applyFix(project: Project, descriptor: ProblemDescriptor) {
+            val initializer = descriptor.psiElement as? KtExpression ?: return
+            val property = initializer.parent as? KtProperty ?: return
+            val factory = KtPsiFactory(project)
+            property.typeReference?.let {
+                ShortenReferences.DEFAULT.process(it.replace(factory.createType("$cls$generics")) as KtElement)
+            }
+            ShortenReferences.DEFAULT.process(initializer.replace(factory.createExpression("$cls$generics()")) as KtElement)
+        }
+    }
+
+    private enum class Kind(val title: String) { LIST("List"), SET("Set"), LINKED_SET("Set"), MAP("Map"), LINKED_MAP("Map"), SEQUENCE("Sequence") }
+
+    private companion object {
+        private val KINDS = mapOf(
+            "kotlin.collections.List" to Kind.LIST, "kotlin.collections.MutableList" to Kind.LIST,
+            "java.util.ArrayList" to Kind.LIST, "kotlin.collections.ArrayList" to Kind.LIST,
+            "kotlin.collections.Set" to Kind.LINKED_SET, "kotlin.collections.MutableSet" to Kind.LINKED_SET,
+            "java.util.LinkedHashSet" to Kind.LINKED_SET, "kotlin.collections.LinkedHashSet" to Kind.LINKED_SET,
+            "java.util.HashSet" to Kind.SET, "kotlin.collections.HashSet" to Kind.SET,
+            "kotlin.collections.Map" to Kind.LINKED_MAP, "kotlin.collections.MutableMap" to Kind.LINKED_MAP,
+            "java.util.LinkedHashMap" to Kind.LINKED_MAP, "kotlin.collections.LinkedHashMap" to Kind.LINKED_MAP,
+            "java.util.HashMap" to Kind.MAP, "kotlin.collections.HashMap" to Kind.MAP,
+            "kotlin.sequences.Sequence" to Kind.SEQUENCE,
+        )
+        private val READ_ONLY = setOf("kotlin.collections.List", "kotlin.collections.Set", "kotlin.collections.Map")
+        private val PRIMITIVES = setOf("Boolean", "Byte", "Short", "Char", "Int", "Long", "Float", "Double")
+
+        private val TRANSFERRING = setOf(
+            "add", "get", "set", "put", "remove", "removeAt", "contains", "containsKey", "containsValue",
+            "indexOf", "lastIndexOf", "getOrPut", "getOrDefault", "getOrElse", "getValue", "first", "last",
+            "forEach", "forEachIndexed", "map", "filter", "sum", "sumOf", "maxOrNull", "minOrNull", "any", "all",
+        )
+        // members of androidx.collection primitive lists, sets, and maps
+        private val ANDROIDX_COMPATIBLE = setOf(
+            "add", "get", "set", "put", "remove", "removeAt", "contains", "containsKey", "containsValue",
+            "indexOf", "lastIndexOf", "getOrPut", "getOrDefault", "getOrElse", "first", "last",
+            "forEach", "forEachIndexed", "any", "all", "count", "isEmpty", "isNotEmpty", "clear", "sort",
+        )
+        private val ANDROIDX_COMPATIBLE_PROPERTIES = setOf("size", "lastIndex", "indices")
+
+        private fun primitiveName(type: KotlinType?): String? =
+            type?.takeIf { it.nullability() == TypeNullability.NOT_NULL }
+                ?.nameIfStandardType?.asString()?.takeIf { it in PRIMITIVES }
+
+        private fun render(type: KotlinType): String =
+            DescriptorRenderer.FQ_NAMES_IN_TYPES.renderType(type)
+
+        /**
+         * @param primitiveValues whether map values may be unboxed, i.e. missing ones are never read as `null`
+         * @return class name to type arguments, if any
+         */
+        private fun fastutilReplacement(
+            kind: Kind, elements: List<String?>, typeArgs: List<KotlinType?>, primitiveValues: Boolean,
+        ): Pair<String, String>? {
+            fun pkg(primitive: String?) = "it.unimi.dsi.fastutil." +
+                (primitive?.lowercase(Locale.ROOT) ?: "object") + "s."
+            val el = elements[0]
+            return when (kind) {
+                Kind.LIST -> "${pkg(el)}${el}ArrayList" to ""
+                Kind.SET -> if (el == "Boolean") null else "${pkg(el)}${el}OpenHashSet" to ""
+                Kind.LINKED_SET -> if (el == "Boolean") null else "${pkg(el)}${el}LinkedOpenHashSet" to ""
+                Kind.MAP, Kind.LINKED_MAP -> {
+                    val k = elements[0]
+                    val v = elements[1]?.takeIf { primitiveValues } // Int2ObjectOpenHashMap<Int> otherwise
+                    if (k == "Boolean" || k == null && v == null) return null
+                    val generics = listOfNotNull(
+                        typeArgs[0]?.takeIf { k == null }?.let(::render),
+                        typeArgs[1]?.takeIf { v == null }?.let(::render),
+                    )
+                    val linked = if (kind == Kind.LINKED_MAP) "Linked" else ""
+                    "${pkg(k)}${k ?: "Object"}2${v ?: "Object"}${linked}OpenHashMap" to
+                        (if (generics.isEmpty()) "" else generics.joinToString(prefix = "<", postfix = ">"))
+                }
+                Kind.SEQUENCE -> null
+            }
+        }
+
+        private fun androidxReplacement(
+            kind: Kind, elements: List<String?>, typeArgs: List<KotlinType?>, primitiveValues: Boolean,
+        ): Pair<String, String>? {
+            fun supported(el: String?) = el == null || el == "Int" || el == "Long" || el == "Float"
+            val el = elements[0]
+            return when (kind) {
+                Kind.LIST -> if (el != null && supported(el)) "androidx.collection.Mutable${el}List" to "" else null
+                Kind.SET -> if (el != null && supported(el)) "androidx.collection.Mutable${el}Set" to "" else null
+                Kind.MAP -> {
+                    val k = elements[0]
+                    val v = elements[1]?.takeIf { primitiveValues } // get() throws for missing keys
+                    if (!supported(k) || !supported(v) || k == null && v == null) return null
+                    val generic = (if (k == null) typeArgs[0] else if (v == null) typeArgs[1] else null)?.let { "<${render(it)}>" }
+                    "androidx.collection.Mutable${k ?: "Object"}${v ?: "Object"}Map" to generic.orEmpty()
+                }
+                Kind.LINKED_SET, Kind.LINKED_MAP, Kind.SEQUENCE -> null // androidx ones don't keep insertion order
+            }
+        }
+    }
+
+}
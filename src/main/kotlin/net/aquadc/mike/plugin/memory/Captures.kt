@@ -0,0 +1,77 @@
+package net.aquadc.mike.plugin.memory
+
+import com.intellij.psi.PsiElement
+import com.intellij.psi.util.PsiTreeUtil
+import net.aquadc.mike.plugin.isInline
+import net.aquadc.mike.plugin.noinlineMessage
+import org.jetbrains.kotlin.idea.references.mainReference
+import org.jetbrains.kotlin.psi.KtCallExpression
+import org.jetbrains.kotlin.psi.KtLambdaExpression
+import org.jetbrains.kotlin.psi.KtNamedFunction
+import org.jetbrains.kotlin.psi.KtObjectDeclaration
+import org.jetbrains.kotlin.psi.KtValueArgument
+import org.jetbrains.kotlin.psi.psiUtil.referenceExpression
+import org.jetbrains.uast.UCallExpression
+import org.jetbrains.uast.UDeclaration
+import org.jetbrains.uast.UElement
+import org.jetbrains.uast.ULambdaExpression
+import org.jetbrains.uast.ULocalVariable
+import org.jetbrains.uast.UParameter
+import org.jetbrains.uast.UQualifiedReferenceExpression
+import org.jetbrains.uast.USimpleNameReferenceExpression
+import org.jetbrains.uast.UThisExpression
+import org.jetbrains.uast.UastCallKind
+import org.jetbrains.uast.getContainingUClass
+import org.jetbrains.uast.toUElement
+import org.jetbrains.uast.visitor.AbstractUastVisitor
+
+/**
+ * Names of local variables and parameters declared outside of this lambda and used inside it,
+ * and `this` if outer class members are used.
+ * A non-capturing lambda is a singleton while a capturing one is allocated on every evaluation.
+ */
+internal fun ULambdaExpression.captures(): Set<String> {
+    val lambda = sourcePsi ?: return emptySet()
+    val captured = LinkedHashSet<String>()
+    body.accept(object : AbstractUastVisitor() {
+        override fun visitSimpleNameReferenceExpression(node: USimpleNameReferenceExpression): Boolean {
+            val qualified = (node.uastParent as? UQualifiedReferenceExpression)?.selector?.sourcePsi == node.sourcePsi
+            if (!qualified) node.resolve()?.let { capture(node.identifier, it) } // `other.field` is not captured
+            return false
+        }
+        override fun visitCallExpression(node: UCallExpression): Boolean {
+            if (node.kind == UastCallKind.METHOD_CALL && node.receiver == null)
+                node.resolve()?.let { capture("this", it) }
+            return false
+        }
+        override fun visitThisExpression(node: UThisExpression): Boolean {
+            // `this` of a lambda with receiver resolves to anything but an outer class
+            node.resolve()?.takeIf { PsiTreeUtil.isAncestor(it, lambda, true) }?.let { captured.add("this") }
+            return false
+        }
+
+        private fun capture(name: String, target: PsiElement) {
+            when (val declaration = target.toUElement()) {
+                is ULocalVariable, is UParameter ->
+                    if (!PsiTreeUtil.isAncestor(lambda, declaration.sourcePsi ?: return, false)) captured.add(name)
+                is UDeclaration ->
+                    if (!declaration.isStatic && declaration.isMemberOfOuter()) captured.add("this")
+            }
+        }
+        private fun UElement.isMemberOfOuter(): Boolean {
+            val cls = getContainingUClass()?.sourcePsi ?: return false
+            return cls !is KtObjectDeclaration && PsiTreeUtil.isAncestor(cls, lambda, true)
+        }
+    })
+    return captured
+}
+
+/** Passed to an inline function as an inline parameter, i.e. not an object at all. */
+internal val ULambdaExpression.isInlined: Boolean
+    get() {
+        val lambda = sourcePsi as? KtLambdaExpression ?: return false
+        val argument = lambda.parent as? KtValueArgument ?: return false
+        val call = argument.parent as? KtCallExpression ?: argument.parent?.parent as? KtCallExpression ?: return false
+        val callee = call.referenceExpression()?.mainReference?.resolve() as? KtNamedFunction ?: return false
+        return callee.isInline && noinlineMessage(lambda) == null
+    }
@@ -0,0 +1,97 @@
+package net.aquadc.mike.plugin.memory
+
+import com.intellij.codeInspection.LocalInspectionTool
+import com.intellij.codeInspection.ProblemDescriptor
+import com.intellij.codeInspection.ProblemsHolder
+import com.intellij.openapi.project.Project
+import com.intellij.psi.PsiElementVisitor
+import net.aquadc.mike.plugin.NamedLocalQuickFix
+import net.aquadc.mike.plugin.fixes
+import net.aquadc.mike.plugin.perf.instrumented
+import org.jetbrains.kotlin.builtins.isFunctionType
+import org.jetbrains.kotlin.idea.caches.resolve.analyze
+import org.jetbrains.kotlin.idea.core.ShortenReferences
+import org.jetbrains.kotlin.psi.KtCallExpression
+import org.jetbrains.kotlin.psi.KtClassOrObject
+import org.jetbrains.kotlin.psi.KtLambdaArgument
+import org.jetbrains.kotlin.psi.KtLambdaExpression
+import org.jetbrains.kotlin.psi.KtProperty
+import org.jetbrains.kotlin.psi.KtPsiFactory
+import org.jetbrains.kotlin.psi.KtValueArgument
+import org.jetbrains.kotlin.psi.KtVisitorVoid
+import org.jetbrains.kotlin.psi.psiUtil.getParentOfType
+import org.jetbrains.kotlin.psi.psiUtil.getStrictParentOfType
+import org.jetbrains.kotlin.renderer.DescriptorRenderer
+import org.jetbrains.kotlin.resolve.calls.util.getParameterForArgument
+import org.jetbrains.kotlin.resolve.calls.util.getResolvedCall
+import org.jetbrains.uast.ULambdaExpression
+import org.jetbrains.uast.UMethod
+import org.jetbrains.uast.getParentOfType
+import org.jetbrains.uast.toUElementOfType
+
+/**
+ * Capturing lambdas are allocated on every evaluation, non-capturing ones are singletons.
+ * @author Mike Gorünóv
+ */
+class CapturingLambdaInspection : LocalInspectionTool() {
+
+    override fun buildVisitor(holder: ProblemsHolder, isOnTheFly: Boolean): PsiElementVisitor = object : KtVisitorVoid() {
+        override fun visitLambdaExpression(lambdaExpression: KtLambdaExpression) {
+            val argument = lambdaExpression.parent as? KtValueArgument ?: return
+            val lambda = lambdaExpression.toUElementOfType<ULambdaExpression>() ?: return
+            if (lambda.isInlined) return
+            val captures = lambda.captures().takeIf { it.isNotEmpty() } ?: return
+            val site = lambda.codeSite().takeIf { it.hotness == Hotness.HOT } ?: return
+            if (lambda.getParentOfType<UMethod>(true)?.overriddenCallback(DRAWING_METHODS) != null)
+                return // reported by DrawAllocationInspection
+            holder.registerProblem(
+                lambdaExpression.functionLiteral.lBrace,
+                "Lambda capturing ${captures.joinToString()} is allocated on every call in ${site.where}",
+                *fixes(if (captures.singleOrNull() == "this") hoistFix(lambdaExpression, argument) else null),
+            )
+        }
+
+        /** A lambda capturing only `this` can be created once per instance, unless it's SAM-converted. */
+        private fun hoistFix(lambda: KtLambdaExpression, argument: KtValueArgument): HoistLambdaFix? {
+            val cls = lambda.getParentOfType<KtClassOrObject>(true)?.body ?: return null
+            val call = argument.getStrictParentOfType<KtCallExpression>() ?: return null
+            val param = call.getResolvedCall(lambda.analyze())?.getParameterForArgument(argument) ?: return null
+            if (!param.type.isFunctionType) return null // a Java or fun interface would be wrapped on every call anyway
+            val base = param.name.asString()
+            val taken = cls.declarations.mapNotNullTo(HashSet()) { it.name }
+            val name = generateSequence(1) { it + 1 }.map { if (it == 1) base else "$base$it" }.first { it !in taken }
+            return HoistLambdaFix(name)
+        }
+    }.instrumented(this, holder)
+
+    private class HoistLambdaFix(private val name: String) : NamedLocalQuickFix("Hoist to property '$name'") {
+        override fun applyFix(project: Project, descriptor: ProblemDescriptor) {
+            val lambda = descriptor.psiElement.getParentOfType<KtLambdaExpression>(true) ?: return
+            val argument = lambda.parent as? KtValueArgument ?: return
+            val call = argument.getStrictParentOfType<KtCallExpression>() ?: return
+            val body = lambda.getParentOfType<KtClassOrObject>(true)?.body ?: return
+            val type = lambda.analyze().getType(lambda)?.let(DescriptorRenderer.FQ_NAMES_IN_TYPES::renderType) ?: return
+            val named = argument is KtLambdaArgument && call.valueArguments.any { it !== argument && it.isNamed() }
+            val paramName = if (named) call.getResolvedCall(call.analyze())?.getParameterForArgument(argument)?.name else null
+            val factory = KtPsiFactory(project)
+
+            // return@callee would lose its target
+            val callee = call.calleeExpression?.text
+            val label = if (callee != null && lambda.text.contains("@$callee")) "$callee@" else ""
+            val property = body.addAfter(factory.createProperty("private val $name: $type = $label${lambda.text}"), body.lBrace)
+            body.addAfter(factory.createNewLine(), body.lBrace)
+            ShortenReferences.DEFAULT.process(property as KtProperty)
+
+            if (argument is KtLambdaArgument) {
+                val args = call.valueArguments.filter { it !== argument }.map { it.text }
+                call.replace(factory.createExpression(
+                    call.calleeExpression!!.text + (call.typeArgumentList?.text ?: "") +
+                        (args + (if (paramName != null) "$paramName = $name" else name)).joinToString(prefix = "(", postfix = ")")
+                ))
+            } else {
+                lambda.replace(factory.createExpression(name))
+            }
+        }
+    }
+
+}
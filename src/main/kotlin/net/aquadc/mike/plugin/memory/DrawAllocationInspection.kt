@@ -0,0 +1,231 @@
+package net.aquadc.mike.plugin.memory
+
+import com.intellij.codeInspection.LocalQuickFix
+import com.intellij.codeInspection.ProblemDescriptor
+import com.intellij.codeInspection.ProblemsHolder
+import com.intellij.codeInspection.ui.SingleIntegerFieldOptionsPanel
+import com.intellij.openapi.project.Project
+import com.intellij.psi.JavaPsiFacade
+import com.intellij.psi.PsiClass
+import com.intellij.psi.PsiDeclarationStatement
+import com.intellij.psi.PsiElement
+import com.intellij.psi.PsiExpression
+import com.intellij.psi.PsiLiteralExpression
+import com.intellij.psi.PsiLocalVariable
+import com.intellij.psi.PsiMethod
+import com.intellij.psi.PsiParenthesizedExpression
+import com.intellij.psi.PsiPrimitiveType
+import com.intellij.psi.PsiType
+import com.intellij.psi.codeStyle.JavaCodeStyleManager
+import com.intellij.psi.util.PsiTreeUtil
+import com.siyeh.ig.psiutils.ExpectedTypeUtils
+import com.siyeh.ig.psiutils.VariableAccessUtils
+import net.aquadc.mike.plugin.NamedLocalQuickFix
+import net.aquadc.mike.plugin.UastInspection
+import net.aquadc.mike.plugin.fixes
+import org.jetbrains.kotlin.psi.KtCallExpression
+import org.jetbrains.kotlin.psi.KtClassOrObject
+import org.jetbrains.kotlin.psi.KtProperty
+import org.jetbrains.kotlin.psi.KtPsiFactory
+import org.jetbrains.kotlin.psi.psiUtil.getParentOfType
+import org.jetbrains.uast.UBinaryExpression
+import org.jetbrains.uast.UCallExpression
+import org.jetbrains.uast.UClass
+import org.jetbrains.uast.UElement
+import org.jetbrains.uast.UExpression
+import org.jetbrains.uast.UField
+import org.jetbrains.uast.ULambdaExpression
+import org.jetbrains.uast.UMethod
+import org.jetbrains.uast.UPolyadicExpression
+import org.jetbrains.uast.UQualifiedReferenceExpression
+import org.jetbrains.uast.UResolvable
+import org.jetbrains.uast.UThisExpression
+import org.jetbrains.uast.UThrowExpression
+import org.jetbrains.uast.UastBinaryOperator
+import org.jetbrains.uast.UastCallKind
+import org.jetbrains.uast.toUElementOfType
+import org.jetbrains.uast.visitor.AbstractUastNonRecursiveVisitor
+import org.jetbrains.uast.visitor.AbstractUastVisitor
+import javax.swing.JComponent
+
+/** Methods [DrawAllocationInspection] looks into, and thus reports capturing lambdas in. */
+internal val DRAWING_METHODS = callbacks(
+    "android.view.View#onDraw", "android.view.View#dispatchDraw", "android.view.View#draw",
+    "android.view.View#onMeasure", "android.view.View#onLayout",
+    "android.graphics.drawable.Drawable#draw",
+)
+
+/**
+ * @author Mike Gorünóv
+ */
+class DrawAllocationInspection : UastInspection() {
+
+    @JvmField var calleeDepth: Int = 2
+
+    override fun createOptionsPanel(): JComponent =
+        SingleIntegerFieldOptionsPanel("Same-class methods called from drawing code to analyze, levels deep", this, "calleeDepth")
+
+    override fun uVisitor(
+        holder: ProblemsHolder, isOnTheFly: Boolean,
+    ): AbstractUastNonRecursiveVisitor = object : AbstractUastNonRecursiveVisitor() {
+        private val reported = HashSet<PsiElement>() // a callee may be reachable from several drawing methods
+
+        override fun visitMethod(node: UMethod): Boolean {
+            if (node.overriddenCallback(DRAWING_METHODS) != null) {
+                val visited = hashSetOf<PsiMethod>(node.javaPsi)
+                node.uastBody?.accept(AllocationFinder(node.javaPsi.containingClass, "${node.name}()", calleeDepth, visited))
+            }
+            return true
+        }
+
+        private inner class AllocationFinder(
+            private val owner: PsiClass?,
+            private val path: String,
+            private val depth: Int,
+            private val visited: MutableSet<PsiMethod>,
+        ) : AbstractUastVisitor() {
+
+            override fun visitCallExpression(node: UCallExpression): Boolean {
+                checkBoxing(node)
+                when (node.kind) {
+                    UastCallKind.CONSTRUCTOR_CALL -> if (!node.isCached)
+                        report(node, "Allocation of ${node.classReference?.resolvedName ?: node.methodName} in $path", node.resetFix())
+                    UastCallKind.NEW_ARRAY_WITH_DIMENSIONS, UastCallKind.NEW_ARRAY_WITH_INITIALIZER ->
+                        if (!node.isCached) report(node, "Array allocation in $path")
+                    UastCallKind.METHOD_CALL -> {
+                        val name = node.methodName
+                        if (name in ALLOCATING_FUNCTIONS && node.valueArgumentCount > 0) {
+                            if (!node.isCached) report(node, "Allocation by $name() in $path")
+                        } else if (depth > 0 && (node.receiver == null || node.receiver is UThisExpression)) {
+                            node.resolve()
+                                ?.takeIf { it.manager.areElementsEquivalent(it.containingClass, owner) && visited.add(it) }
+                                ?.toUElementOfType<UMethod>()?.uastBody
+                                ?.accept(AllocationFinder(owner, "$path → $name()", depth - 1, visited))
+                        }
+                    }
+                }
+                return false
+            }
+
+            override fun visitBinaryExpression(node: UBinaryExpression): Boolean {
+                checkBoxing(node)
+                checkConcatenation(node)
+                return false
+            }
+            override fun visitPolyadicExpression(node: UPolyadicExpression): Boolean {
+                checkBoxing(node)
+                checkConcatenation(node)
+                return false
+            }
+            private fun checkConcatenation(node: UPolyadicExpression) {
+                if (node.isStringConcatenation &&
+                    (node.uastParent as? UPolyadicExpression)?.isStringConcatenation != true &&
+                    node.evaluate() == null) {
+                    report(node, "String concatenation in $path")
+                }
+            }
+            private val UPolyadicExpression.isStringConcatenation: Boolean
+                get() = operator == UastBinaryOperator.PLUS && getExpressionType()?.equalsToText("java.lang.String") == true
+
+            override fun visitLambdaExpression(node: ULambdaExpression): Boolean {
+                if (node.isInlined)
+                    return false // look inside
+                val captures = node.captures()
+                if (captures.isNotEmpty())
+                    report(node, "Lambda capturing ${captures.joinToString()} is allocated in $path")
+                return true // runs later, or it's someone else's business
+            }
+
+            override fun visitExpression(node: UExpression): Boolean {
+                checkBoxing(node)
+                return false
+            }
+            private fun checkBoxing(node: UExpression) {
+                // Kotlin boxing is decided by the compiler, only Java is checked
+                val expr = node.sourcePsi as? PsiExpression ?: return
+                if (expr is PsiParenthesizedExpression) return
+                val type = expr.type as? PsiPrimitiveType ?: return
+                if (type == PsiType.VOID || type == PsiType.BOOLEAN) return // Boolean.valueOf() is cached
+                if (expr is PsiLiteralExpression && (expr.value as? Number)?.toLong()?.let { it in -128L..127L } == true)
+                    return // cached, too
+                val expected = ExpectedTypeUtils.findExpectedType(expr, false) ?: return
+                if (expected !is PsiPrimitiveType && expected.isAssignableFrom(type))
+                    report(node, "Boxing of ${type.presentableText} in $path")
+            }
+
+            override fun visitClass(node: UClass): Boolean =
+                true // local and anonymous classes run later
+            override fun visitThrowExpression(node: UThrowExpression): Boolean =
+                true // this is not a hot path anymore
+
+            private fun report(node: UElement, message: String, fix: LocalQuickFix? = null) {
+                val psi = node.sourcePsi ?: return
+                if (reported.add(psi)) holder.registerProblem(psi, message, *fixes(fix))
+            }
+        }
+    }
+
+    private class MoveToFieldFix(private val reset: String) : NamedLocalQuickFix("Move to field and $reset()") {
+        override fun applyFix(project: Project, descriptor: ProblemDescriptor) {
+            when (val variable = descriptor.psiElement.parent) {
+                is PsiLocalVariable -> {
+                    val declaration = variable.parent as? PsiDeclarationStatement ?: return
+                    val cls = PsiTreeUtil.getParentOfType(variable, PsiClass::class.java) ?: return
+                    val factory = JavaPsiFacade.getElementFactory(project)
+                    val field = factory.createFieldFromText(
+                        "private final ${variable.type.canonicalText} ${variable.name} = ${variable.initializer!!.text};", cls
+                    )
+                    JavaCodeStyleManager.getInstance(project).shortenClassReferences(cls.addAfter(field, cls.lBrace))
+                    declaration.replace(factory.createStatementFromText("${variable.name}.$reset();", declaration))
+                }
+                is KtProperty -> {
+                    val body = variable.getParentOfType<KtClassOrObject>(true)?.body ?: return
+                    val factory = KtPsiFactory(project)
+                    body.addAfter(factory.createProperty("private val ${variable.name} = ${variable.initializer!!.text}"), body.lBrace)
+                    body.addAfter(factory.createNewLine(), body.lBrace)
+                    variable.replace(factory.createExpression("${variable.name}.$reset()"))
+                }
+            }
+        }
+    }
+
+    private companion object {
+        private val RESETTABLE = mapOf(
+            "android.graphics.Paint" to "reset", "android.graphics.Path" to "reset", "android.graphics.Matrix" to "reset",
+            "android.graphics.Rect" to "setEmpty", "android.graphics.RectF" to "setEmpty",
+        )
+        private val ALLOCATING_FUNCTIONS = setOf(
+            "arrayOf", "intArrayOf", "longArrayOf", "floatArrayOf", "doubleArrayOf",
+            "listOf", "mutableListOf", "arrayListOf", "setOf", "mutableSetOf", "hashSetOf",
+            "mapOf", "mutableMapOf", "hashMapOf", "listOfNotNull", "format",
+        )
+
+        /** Assigned to a field, likely a lazy initialization. */
+        private val UCallExpression.isCached: Boolean
+            get() {
+                val assignment = uastParent as? UBinaryExpression ?: return false
+                if (assignment.operator != UastBinaryOperator.ASSIGN) return false
+                val target = assignment.leftOperand.let { (it as? UQualifiedReferenceExpression)?.selector ?: it }
+                return (target as? UResolvable)?.resolve()?.toUElementOfType<UField>() != null
+            }
+
+        /** A no-arg constructor assigned to a local variable which is never reassigned. */
+        private fun UCallExpression.resetFix(): MoveToFieldFix? {
+            if (valueArgumentCount != 0) return null
+            val reset = RESETTABLE[returnType?.canonicalText] ?: return null
+            return when (val variable = sourcePsi?.parent) {
+                is PsiLocalVariable -> variable.takeIf {
+                    val cls = PsiTreeUtil.getParentOfType(it, PsiClass::class.java)
+                    cls != null && cls.findFieldByName(it.name, false) == null &&
+                        !VariableAccessUtils.variableIsAssigned(it, PsiTreeUtil.getParentOfType(it, PsiMethod::class.java))
+                }
+                is KtProperty -> variable.takeIf {
+                    it.isLocal && !it.isVar && sourcePsi is KtCallExpression &&
+                        it.getParentOfType<KtClassOrObject>(true)?.body?.properties?.none { p -> p.name == it.name } == true
+                }
+                else -> null
+            }?.let { MoveToFieldFix(reset) }
+        }
+    }
+
+}
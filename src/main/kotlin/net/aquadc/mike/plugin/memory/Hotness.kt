@@ -0,0 +1,121 @@
+package net.aquadc.mike.plugin.memory
+
+import org.jetbrains.uast.UCallExpression
+import org.jetbrains.uast.UClass
+import org.jetbrains.uast.UClassInitializer
+import org.jetbrains.uast.UElement
+import org.jetbrains.uast.UForEachExpression
+import org.jetbrains.uast.UForExpression
+import org.jetbrains.uast.ULambdaExpression
+import org.jetbrains.uast.ULoopExpression
+import org.jetbrains.uast.UMethod
+
+/**
+ * How often a piece of code is likely to run.
+ */
+internal enum class Hotness {
+    /** once per component lifetime, like `onCreate()` or a static initializer */
+    COLD,
+    /** unknown */
+    NORMAL,
+    /** per frame, per item, per iteration */
+    HOT,
+}
+
+/**
+ * @param where a human-readable name of the hot place, like `a loop` or `onDraw()`
+ */
+internal class CodeSite(val hotness: Hotness, val where: String?)
+
+private val NORMAL = CodeSite(Hotness.NORMAL, null)
+private val COLD = CodeSite(Hotness.COLD, null)
+
+/**
+ * Walks up to the enclosing method, looking for loops and lambdas called per element.
+ * Lambdas called at unknown time, like listeners, stop the search.
+ */
+internal fun UElement.codeSite(): CodeSite {
+    var child = this
+    var parent = uastParent
+    while (parent != null) {
+        when (parent) {
+            is UForEachExpression ->
+                if (child.sourcePsi != parent.iteratedValue.sourcePsi) return CodeSite(Hotness.HOT, "a loop")
+            is UForExpression ->
+                if (child.sourcePsi != parent.declaration?.sourcePsi) return CodeSite(Hotness.HOT, "a loop")
+            is ULoopExpression ->
+                return CodeSite(Hotness.HOT, "a loop")
+            is ULambdaExpression -> {
+                val name = (parent.uastParent as? UCallExpression)?.methodName ?: return NORMAL
+                if (name in PER_ELEMENT_LAMBDAS) return CodeSite(Hotness.HOT, "$name { }")
+                if (name !in RUN_ONCE_LAMBDAS) return NORMAL
+            }
+            is UMethod ->
+                return parent.callbackSite()
+            is UClassInitializer ->
+                return if (parent.isStatic) COLD else NORMAL
+            is UClass ->
+                return NORMAL
+        }
+        child = parent
+        parent = parent.uastParent
+    }
+    return NORMAL
+}
+
+private fun UMethod.callbackSite(): CodeSite = when {
+    overriddenCallback(HOT_CALLBACKS) != null -> CodeSite(Hotness.HOT, "$name()")
+    overriddenCallback(COLD_CALLBACKS) != null -> COLD
+    else -> NORMAL
+}
+
+/**
+ * @param callbacks see [callbacks]
+ * @return qualified name of a class from [callbacks] declaring the method this one overrides
+ */
+internal fun UMethod.overriddenCallback(callbacks: Map<String, Set<String>>): String? {
+    val classes = callbacks[name] ?: return null // don't look for super methods
+    return javaPsi.findDeepestSuperMethods().firstNotNullOfOrNull {
+        it.containingClass?.qualifiedName?.takeIf(classes::contains)
+    }
+}
+
+/** `Class#method` to method name to classes */
+internal fun callbacks(vararg methods: String): Map<String, Set<String>> =
+    methods.groupBy({ it.substringAfter('#') }, { it.substringBefore('#') }).mapValues { (_, classes) -> classes.toSet() }
+
+private val HOT_CALLBACKS = callbacks(
+    "android.view.View#onDraw", "android.view.View#dispatchDraw", "android.view.View#draw",
+    "android.view.View#onMeasure", "android.view.View#onLayout", "android.view.View#onTouchEvent",
+    "android.view.View#computeScroll",
+    "android.view.ViewGroup#onInterceptTouchEvent", "android.view.ViewGroup#drawChild",
+    "android.graphics.drawable.Drawable#draw", "android.graphics.drawable.Drawable#onBoundsChange",
+    "android.widget.Adapter#getView",
+    "androidx.recyclerview.widget.RecyclerView.Adapter#onBindViewHolder",
+    "androidx.recyclerview.widget.RecyclerView.Adapter#onCreateViewHolder",
+    "androidx.recyclerview.widget.RecyclerView.ItemDecoration#onDraw",
+    "androidx.recyclerview.widget.RecyclerView.ItemDecoration#onDrawOver",
+    "androidx.recyclerview.widget.RecyclerView.ItemDecoration#getItemOffsets",
+    "android.animation.ValueAnimator.AnimatorUpdateListener#onAnimationUpdate",
+    "android.animation.TypeEvaluator#evaluate",
+    "android.animation.TimeInterpolator#getInterpolation",
+    "java.util.Comparator#compare", "java.lang.Comparable#compareTo",
+)
+private val COLD_CALLBACKS = callbacks(
+    "android.app.Application#onCreate", "android.app.Activity#onCreate", "android.app.Service#onCreate",
+    "androidx.fragment.app.Fragment#onCreate", "androidx.fragment.app.Fragment#onCreateView",
+    "androidx.fragment.app.Fragment#onViewCreated",
+    "android.view.View#onFinishInflate", "android.view.View#onAttachedToWindow",
+)
+
+// forEach { } and friends call their lambdas per element, let { } and friends call them in place once
+internal val PER_ELEMENT_LAMBDAS = setOf(
+    "forEach", "forEachIndexed", "onEach", "repeat",
+    "map", "mapIndexed", "mapNotNull", "flatMap", "filter", "filterNot", "filterIndexed",
+    "any", "all", "none", "count", "first", "firstOrNull", "find", "sumOf", "fold", "reduce",
+    "associate", "associateBy", "associateWith", "groupBy", "partition",
+    "sortBy", "sortedBy", "sortByDescending", "sortedByDescending", "compareBy", "Comparator",
+)
+private val RUN_ONCE_LAMBDAS = setOf(
+    "let", "run", "apply", "also", "with", "use", "takeIf", "takeUnless", "synchronized",
+)
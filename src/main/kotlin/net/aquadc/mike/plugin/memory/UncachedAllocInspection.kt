@@ -1,15 +1,23 @@
 package net.aquadc.mike.plugin.memory
 
+import com.intellij.codeInspection.LocalQuickFix
+import com.intellij.codeInspection.ProblemHighlightType
 import com.intellij.codeInspection.ProblemsHolder
+import com.intellij.codeInspection.ui.ListEditForm
 import com.intellij.lang.LanguageRefactoringSupport
+import com.intellij.psi.PsiClass
 import com.intellij.psi.PsiClassInitializer
-import com.intellij.psi.PsiConstructorCall
 import com.intellij.psi.PsiElement
+import com.intellij.psi.PsiExpression
+import com.intellij.psi.PsiExpressionList
 import com.intellij.psi.PsiField
+import com.intellij.psi.PsiMethod
+import com.intellij.psi.PsiMethodCallExpression
 import com.intellij.psi.PsiModifier
 import com.intellij.psi.PsiNewExpression
-import com.intellij.psi.PsiReference
+import com.intellij.psi.PsiReferenceExpression
 import com.intellij.psi.impl.source.tree.TreeElement
+import com.intellij.psi.util.PsiUtil
 import com.intellij.refactoring.RefactoringActionHandler
 import com.siyeh.ig.fixes.IntroduceConstantFix
 import net.aquadc.mike.plugin.UastInspection
@@ -20,107 +28,227 @@ import org.jetbrains.kotlin.lexer.KtTokens
 import org.jetbrains.kotlin.psi.KtCallExpression
 import org.jetbrains.kotlin.psi.KtClassBody
 import org.jetbrains.kotlin.psi.KtClassInitializer
+import org.jetbrains.kotlin.psi.KtClassOrObject
+import org.jetbrains.kotlin.psi.KtConstructor
+import org.jetbrains.kotlin.psi.KtDotQualifiedExpression
+import org.jetbrains.kotlin.psi.KtExpression
 import org.jetbrains.kotlin.psi.KtFile
+import org.jetbrains.kotlin.psi.KtNameReferenceExpression
 import org.jetbrains.kotlin.psi.KtObjectDeclaration
 import org.jetbrains.kotlin.psi.KtProperty
 import org.jetbrains.kotlin.psi.psiUtil.getParentOfType
 import org.jetbrains.kotlin.psi.psiUtil.referenceExpression
+import org.jetbrains.uast.UCallExpression
 import org.jetbrains.uast.UExpression
 import org.jetbrains.uast.UMethod
 import org.jetbrains.uast.getContainingUClass
 import org.jetbrains.uast.toUElementOfType
 import org.jetbrains.uast.visitor.AbstractUastNonRecursiveVisitor
+import javax.swing.JComponent
 
 /**
  * @author Mike Gorünóv
  */
 class UncachedAllocInspection : UastInspection() {
 
+    /**
+     * `com.example.Type` reports its constructor calls with constant arguments,
+     * `com.example.Type#method` reports calls of a static method or of a method on a freshly built receiver,
+     * like `Moshi.Builder().build()`.
+     */
+    @JvmField var expensiveTypes: MutableList<String> = ArrayList(DEFAULT_EXPENSIVE_TYPES)
+
+    override fun createOptionsPanel(): JComponent =
+        ListEditForm("Expensive type or Type#factoryMethod", expensiveTypes).contentPanel
+
     override fun uVisitor(
         holder: ProblemsHolder, isOnTheFly: Boolean,
-    ): AbstractUastNonRecursiveVisitor = object : AbstractUastNonRecursiveVisitor() {
+    ): AbstractUastNonRecursiveVisitor? {
+        val expensive = ExpensiveCalls(expensiveTypes)
+        val text = holder.file.viewProvider.contents
+        if (expensive.names.none { text.contains(it) })
+            return null // skip the file without converting its every element to UAST
 
-        override fun visitExpression(node: UExpression): Boolean {
-            node.sourcePsi?.let(::checkExpression)
-            return true
-        }
+        return object : AbstractUastNonRecursiveVisitor() {
 
-        private fun checkExpression(expr: PsiElement) {
-            // skip static/object/file field/property declarations
-            if (expr.getParentOfType<PsiField>(true)?.isStaticFinal == true ||
-                expr.getParentOfType<KtProperty>(true)?.isFileOrObjVal == true) {
-                return
+            override fun visitCallExpression(node: UCallExpression): Boolean {
+                node.sourcePsi?.let { checkExpression(node, it) }
+                return true
             }
 
-            val ref = when (expr) {
-                is PsiNewExpression ->
-                    expr.takeIf {
-                        it.noTypeOrValueArguments &&
-                            it.classReference?.referenceName in unqualifiedNoArgConstructors
+            private fun checkExpression(node: UCallExpression, expr: PsiElement) {
+                // cheap syntactic checks first, they filter out almost everything
+                val name: String
+                val resolve: () -> PsiElement?
+                val freshReceiver: Boolean
+                when (expr) {
+                    is PsiNewExpression -> {
+                        if (expr.anonymousClass != null || expr.qualifier != null || expr.typeArguments.isNotEmpty())
+                            return
+                        val ref = expr.classReference ?: return
+                        name = ref.referenceName?.takeIf(expensive.constructors::containsKey) ?: return
+                        if (!expr.argumentList.isConstant) return
+                        resolve = ref::resolve
+                        freshReceiver = false
+                    }
+                    is PsiMethodCallExpression -> {
+                        val ref = expr.methodExpression
+                        name = ref.referenceName?.takeIf(expensive.methods::containsKey) ?: return
+                        if (expr.typeArguments.isNotEmpty() || !expr.argumentList.isConstant) return
+                        val receiver = ref.qualifierExpression
+                        if (receiver != null && !receiver.isFresh) return
+                        resolve = expr::resolveMethod
+                        freshReceiver = receiver != null
+                    }
+                    is KtCallExpression -> {
+                        val ref = expr.referenceExpression() ?: return
+                        name = ref.referencedName
+                            ?.takeIf { expensive.constructors.containsKey(it) || expensive.methods.containsKey(it) } ?: return
+                        if (expr.typeArguments.isNotEmpty() || !expr.hasConstantArguments) return
+                        // a constructor can be qualified only with a package or an outer class, check it after resolution
+                        freshReceiver = expr.receiver?.isFresh ?: false
+                        if (expr.receiver != null && !freshReceiver && name !in expensive.constructors) return
+                        resolve = ref.mainReference::resolve
                     }
-                is KtCallExpression ->
-                    expr.takeIf { it.noTypeOrValueArguments }?.referenceExpression()
-                        ?.takeIf { rex -> rex.referencedName in unqualifiedNoArgConstructors }
-                        ?.mainReference
-                else ->
-                    null
-            } ?: return
-
-            // resolve
-
-            // resolve (a): skip assignment to static/object/file field/property which stands apart from declaration
-            if (expr.getParentOfType<PsiClassInitializer>(true)?.hasModifierProperty(PsiModifier.STATIC) == true ||
-                (expr.getParentOfType<KtClassInitializer>(true)?.parent as? KtClassBody)?.parent is KtObjectDeclaration
-            ) return
-
-            // resolve (b): resolve call expression reference
-            val method = when (ref) {
-                is PsiConstructorCall -> ref.resolveConstructor()
-                is PsiReference -> ref.resolve()
-                else -> throw AssertionError("unexpected $ref | ${ref.javaClass}")
-            } ?: return
-
-            if (method.toUElementOfType<UMethod>()?.let {
-                it.isConstructorWithoutTypeOrValueParameters &&
-                    it.getContainingUClass()?.qualifiedName in noArgConstructors
-            } == true) {
+                    else ->
+                        return
+                }
+
+                // skip static/object/file field/property declarations
+                if (expr.getParentOfType<PsiField>(true)?.isStaticFinal == true ||
+                    expr.getParentOfType<KtProperty>(true)?.isFileOrObjVal == true) {
+                    return
+                }
+
+                // skip assignment to static/object/file field/property which stands apart from declaration
+                if (expr.getParentOfType<PsiClassInitializer>(true)?.hasModifierProperty(PsiModifier.STATIC) == true ||
+                    (expr.getParentOfType<KtClassInitializer>(true)?.parent as? KtClassBody)?.parent is KtObjectDeclaration
+                ) return
+
+                val reported = when (val target = resolve() ?: return) {
+                    is PsiClass -> // implicit default constructor
+                        target.qualifiedName in expensive.constructors[name].orEmpty()
+                    is KtClassOrObject ->
+                        target.fqName?.asString() in expensive.constructors[name].orEmpty()
+                    is PsiMethod ->
+                        expensive.matches(name, target.containingClass?.qualifiedName, target.isConstructor,
+                            freshReceiver || target.hasModifierProperty(PsiModifier.STATIC))
+                    else -> target.toUElementOfType<UMethod>()?.let {
+                        expensive.matches(name, it.getContainingUClass()?.qualifiedName, it.isConstructor,
+                            freshReceiver || it.isStatic)
+                    } == true
+                }
+                if (!reported) return
+
+                val site = node.codeSite()
+                val call = expr.qualifiedParent ?: expr // for the quick-fix to extract the whole chain
+                val refactorings = LanguageRefactoringSupport.INSTANCE.forContext(call)
+                val constantFix = introduceFix(null, refactorings?.introduceConstantHandler)
                 holder.registerProblem(
-                    expr, // remember the whole expression (for quickfix) but highlight only the relevant part
-                    "This allocation should be cached",
-                    *fixes(
-                        LanguageRefactoringSupport.INSTANCE.forContext(expr)?.introduceConstantHandler?.let {
-                            object : IntroduceConstantFix() {
-                                override fun getHandler(): RefactoringActionHandler = it
-                            }
-                        }
-                    )
+                    call,
+                    if (site.where == null) "This allocation should be cached"
+                    else "This allocation in ${site.where} should be cached",
+                    if (site.hotness == Hotness.COLD) ProblemHighlightType.WEAK_WARNING
+                    else ProblemHighlightType.GENERIC_ERROR_OR_WARNING,
+                    *if (site.hotness == Hotness.HOT) // a field keeps the instance scoped to its owner
+                        fixes(introduceFix("Hoist to field", refactorings?.introduceFieldHandler), constantFix)
+                    else fixes(constantFix)
                 )
             }
-        }
-
-        private val PsiField.isStaticFinal: Boolean
-            get() = hasModifierProperty(PsiModifier.STATIC) && hasModifierProperty(PsiModifier.FINAL)
-
-        private val KtProperty.isFileOrObjVal: Boolean
-            get() = valOrVarKeyword.let { it is TreeElement && it.elementType == KtTokens.VAL_KEYWORD } &&
-                parent.let { it is KtFile || it is KtClassBody && it.parent is KtObjectDeclaration }
-
-
-        private val PsiNewExpression.noTypeOrValueArguments: Boolean
-            get() = typeArguments.isEmpty() && argumentList?.isEmpty != false
-
-        private val KtCallExpression.noTypeOrValueArguments: Boolean
-            get() = typeArguments.isEmpty() && valueArguments.isEmpty() && lambdaArguments.isEmpty()
 
+            private fun introduceFix(name: String?, handler: RefactoringActionHandler?): LocalQuickFix? =
+                handler?.let {
+                    object : IntroduceConstantFix() {
+                        override fun getFamilyName(): String = name ?: super.getFamilyName()
+                        override fun getHandler(): RefactoringActionHandler = it
+                    }
+                }
+
+            private val PsiField.isStaticFinal: Boolean
+                get() = hasModifierProperty(PsiModifier.STATIC) && hasModifierProperty(PsiModifier.FINAL)
+
+            private val KtProperty.isFileOrObjVal: Boolean
+                get() = valOrVarKeyword.let { it is TreeElement && it.elementType == KtTokens.VAL_KEYWORD } &&
+                    parent.let { it is KtFile || it is KtClassBody && it.parent is KtObjectDeclaration }
+
+            private val PsiExpressionList?.isConstant: Boolean
+                get() = this == null || expressions.all(PsiUtil::isConstantExpression)
+
+            private val KtCallExpression.hasConstantArguments: Boolean
+                get() = lambdaArguments.isEmpty() && valueArguments.all {
+                    it.getArgumentExpression()?.toUElementOfType<UExpression>()?.evaluate() != null
+                }
+
+            private val KtCallExpression.receiver: KtExpression?
+                get() = (parent as? KtDotQualifiedExpression)?.takeIf { it.selectorExpression == this }?.receiverExpression
+
+            private val PsiElement.qualifiedParent: KtDotQualifiedExpression?
+                get() = (parent as? KtDotQualifiedExpression)?.takeIf { it.selectorExpression == this }
+
+            /** A class reference or a chain of calls with constant arguments starting with a constructor. */
+            private val PsiExpression.isFresh: Boolean
+                get() = when (this) {
+                    is PsiNewExpression -> anonymousClass == null && argumentList.isConstant
+                    is PsiMethodCallExpression ->
+                        argumentList.isConstant && methodExpression.qualifierExpression?.isFresh == true
+                    is PsiReferenceExpression -> resolve() is PsiClass
+                    else -> false
+                }
+
+            private val KtExpression.isFresh: Boolean
+                get() = when (this) {
+                    is KtDotQualifiedExpression -> when (val selector = selectorExpression) {
+                        is KtCallExpression ->
+                            selector.hasConstantArguments && (selector.isConstructorCall || receiverExpression.isFresh)
+                        is KtNameReferenceExpression -> selector.mainReference.resolve().isClass
+                        else -> false
+                    }
+                    is KtCallExpression -> hasConstantArguments && isConstructorCall
+                    is KtNameReferenceExpression -> mainReference.resolve().isClass
+                    else -> false
+                }
+
+            private val KtCallExpression.isConstructorCall: Boolean
+                get() = referenceExpression()?.mainReference?.resolve().let {
+                    it.isClass || it is KtConstructor<*> || it is PsiMethod && it.isConstructor
+                }
+
+            private val PsiElement?.isClass: Boolean
+                get() = this is PsiClass || this is KtClassOrObject
+        }
+    }
 
-        private val UMethod.isConstructorWithoutTypeOrValueParameters: Boolean
-            get() = isConstructor && uastParameters.isEmpty() && !hasTypeParameters()
+    private class ExpensiveCalls(entries: List<String>) {
+        /** simple class name to qualified names */
+        val constructors = HashMap<String, MutableSet<String>>()
+        /** method name to qualified names of declaring classes */
+        val methods = HashMap<String, MutableSet<String>>()
+        init {
+            for (entry in entries) {
+                val fqn = entry.trim().takeIf(String::isNotEmpty) ?: continue
+                val hash = fqn.indexOf('#')
+                if (hash < 0) constructors.getOrPut(fqn.substring(fqn.lastIndexOf('.') + 1), ::HashSet).add(fqn)
+                else methods.getOrPut(fqn.substring(hash + 1), ::HashSet).add(fqn.substring(0, hash))
+            }
+        }
+        val names: Set<String>
+            get() = constructors.keys + methods.keys
 
+        fun matches(name: String, classFqn: String?, isConstructor: Boolean, staticOrFresh: Boolean): Boolean =
+            if (isConstructor) classFqn in constructors[name].orEmpty()
+            else staticOrFresh && classFqn in methods[name].orEmpty()
     }
 
-    companion object {
-        private val noArgConstructors = listOf("com.google.gson.Gson", "okhttp3.OkHttpClient")
-        private val unqualifiedNoArgConstructors = noArgConstructors.map { it.substring(it.lastIndexOf('.') + 1) }
+    private companion object {
+        private val DEFAULT_EXPENSIVE_TYPES = listOf(
+            "com.google.gson.Gson",
+            "com.google.gson.GsonBuilder#create",
+            "okhttp3.OkHttpClient",
+            "okhttp3.OkHttpClient.Builder#build",
+            "com.squareup.moshi.Moshi.Builder#build",
+            "com.fasterxml.jackson.databind.ObjectMapper",
+            "retrofit2.Retrofit.Builder#build",
+        )
     }
 
 }
@@ -24,6 +24,9 @@ import com.intellij.refactoring.suggested.endOffset
 import com.intellij.refactoring.suggested.startOffset
 import net.aquadc.mike.plugin.DumbHintsConfigurable
 import net.aquadc.mike.plugin.hint
+import net.aquadc.mike.plugin.perf.Instrumentation
+import net.aquadc.mike.plugin.perf.Sample
+import net.aquadc.mike.plugin.perf.measure
 import net.aquadc.mike.plugin.miserlyMap as map
 import org.jetbrains.kotlin.idea.references.mainReference
 import org.jetbrains.kotlin.lexer.KtTokens
@@ -93,15 +96,18 @@ private class VarargAllocationHintsCollector(
         private val CONSTRAINTS = HorizontalConstraints(0, true) // in case of two hints, like `rest...` `new[] {` we wanna be last
     }
     private val hints: Array<InlayPresentation> = HINTS.map { factory.hint(it) }
+    private val sample = Instrumentation.sample("VarargAllocHints", Sample.Kind.HINTS, file)
 
     override fun collect(element: PsiElement, editor: Editor, sink: InlayHintsSink): Boolean {
         if (!settings.enabled || file.project.let { DumbService.isDumb(it) || it.isDefault }) return false
-        if (element is PsiCallExpression) {
-            collectJava(element, sink)
-            return true
-            // Avoid returning `false` because it makes the whole pass to be skipped, not only children
-        } else if (element is KtCallExpression) {
-            return collectKotlin(element, sink)
+        sample.measure {
+            if (element is PsiCallExpression) {
+                collectJava(element, sink)
+                return true
+                // Avoid returning `false` because it makes the whole pass to be skipped, not only children
+            } else if (element is KtCallExpression) {
+                return collectKotlin(element, sink)
+            }
         }
         return true
     }
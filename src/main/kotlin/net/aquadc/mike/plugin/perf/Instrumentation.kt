@@ -0,0 +1,107 @@
+package net.aquadc.mike.plugin.perf
+
+import com.google.gson.GsonBuilder
+import com.intellij.codeInspection.InspectionProfileEntry
+import com.intellij.codeInspection.ProblemsHolder
+import com.intellij.psi.PsiElement
+import com.intellij.psi.PsiElementVisitor
+import com.intellij.psi.PsiFile
+import java.lang.management.ManagementFactory
+
+/**
+ * Wall time, element count, and allocated bytes of the plugin's inspections, inlay hints, and folding builders,
+ * per file, in a ring buffer. Off by default, [sample] returns `null` and nothing is measured then.
+ * @author Mike Gorünóv
+ */
+object Instrumentation {
+
+    @Volatile var enabled: Boolean = false
+
+    private const val CAPACITY = 4096
+    private val ring = arrayOfNulls<Sample>(CAPACITY)
+    private var next = 0
+    private var size = 0
+
+    fun sample(what: String, kind: Sample.Kind, file: PsiFile?): Sample? =
+        if (!enabled) null
+        else Sample(what, kind, file?.let { it.virtualFile?.path ?: it.name } ?: "", System.currentTimeMillis()).also {
+            synchronized(ring) {
+                ring[next] = it
+                next = (next + 1) % CAPACITY
+                if (size < CAPACITY) size++
+            }
+        }
+
+    /** @return recorded samples, oldest first */
+    fun samples(): List<Sample> = synchronized(ring) {
+        List(size) { ring[(next - size + it + CAPACITY) % CAPACITY]!! }
+    }
+
+    fun clear(): Unit = synchronized(ring) {
+        ring.fill(null)
+        next = 0
+        size = 0
+    }
+
+    fun toJson(samples: List<Sample>): String =
+        GsonBuilder().setPrettyPrinting().create().toJson(samples)
+
+    private val threads = ManagementFactory.getThreadMXBean() as? com.sun.management.ThreadMXBean
+
+    /** @return bytes allocated by current thread so far, or -1 if unsupported */
+    @PublishedApi internal fun allocatedBytes(): Long =
+        threads?.takeIf { it.isThreadAllocatedMemoryEnabled }?.currentThreadAllocatedBytes ?: -1L
+
+}
+
+/**
+ * One inspection, hints collector, or folding builder run on one file.
+ * Updated while running, thus may be incomplete when read.
+ */
+class Sample internal constructor(
+    val what: String,
+    val kind: Kind,
+    val file: String,
+    val startedAt: Long,
+) {
+    enum class Kind { INSPECTION, HINTS, FOLDING }
+
+    var wallNanos: Long = 0L
+        private set
+    /** Elements visited by an inspection or hints collector, calls for folding builders. */
+    var elements: Int = 0
+        private set
+    /** -1 if the JVM doesn't count thread allocations */
+    var allocatedBytes: Long = 0L
+        private set
+
+    @PublishedApi internal fun add(nanos: Long, bytesBefore: Long, bytesAfter: Long) {
+        wallNanos += nanos
+        elements++
+        if (bytesBefore < 0 || bytesAfter < 0) allocatedBytes = -1
+        else if (allocatedBytes >= 0) allocatedBytes += bytesAfter - bytesBefore
+    }
+}
+
+inline fun <R> Sample?.measure(block: () -> R): R {
+    if (this == null) return block()
+    val bytes = Instrumentation.allocatedBytes()
+    val nanos = System.nanoTime()
+    try {
+        return block()
+    } finally {
+        add(System.nanoTime() - nanos, bytes, Instrumentation.allocatedBytes())
+    }
+}
+
+/** Measures every element visit, if [Instrumentation] is enabled. */
+fun PsiElementVisitor.instrumented(tool: InspectionProfileEntry, holder: ProblemsHolder): PsiElementVisitor {
+    if (this === PsiElementVisitor.EMPTY_VISITOR) return this
+    val sample = Instrumentation.sample(tool.shortName, Sample.Kind.INSPECTION, holder.file) ?: return this
+    val delegate = this
+    return object : PsiElementVisitor() {
+        override fun visitElement(element: PsiElement) {
+            sample.measure { element.accept(delegate) }
+        }
+    }
+}
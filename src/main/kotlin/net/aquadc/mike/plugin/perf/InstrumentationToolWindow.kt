@@ -0,0 +1,103 @@
+package net.aquadc.mike.plugin.perf
+
+import com.intellij.icons.AllIcons
+import com.intellij.openapi.actionSystem.ActionManager
+import com.intellij.openapi.actionSystem.ActionUpdateThread
+import com.intellij.openapi.actionSystem.AnActionEvent
+import com.intellij.openapi.actionSystem.DefaultActionGroup
+import com.intellij.openapi.actionSystem.ToggleAction
+import com.intellij.openapi.fileChooser.FileChooserFactory
+import com.intellij.openapi.fileChooser.FileSaverDescriptor
+import com.intellij.openapi.project.DumbAware
+import com.intellij.openapi.project.DumbAwareAction
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.ui.SimpleToolWindowPanel
+import com.intellij.openapi.vfs.VirtualFile
+import com.intellij.openapi.wm.ToolWindow
+import com.intellij.openapi.wm.ToolWindowFactory
+import com.intellij.ui.components.JBScrollPane
+import com.intellij.ui.content.ContentFactory
+import com.intellij.ui.table.TableView
+import com.intellij.util.ui.ColumnInfo
+import com.intellij.util.ui.ListTableModel
+
+/**
+ * Shows [Instrumentation] samples summed up by file and by inspection, slowest first.
+ * @author Mike Gorünóv
+ */
+class InstrumentationToolWindow : ToolWindowFactory, DumbAware {
+
+    override fun createToolWindowContent(project: Project, toolWindow: ToolWindow) {
+        val byFile = ListTableModel<Total>(Total.Name("File"), *Total.COLUMNS)
+        val byTool = ListTableModel<Total>(Total.Name("Inspection, hints, or folding"), *Total.COLUMNS)
+        val refresh = {
+            val samples = Instrumentation.samples()
+            byFile.items = Total.of(samples, Sample::file)
+            byTool.items = Total.of(samples, Sample::what)
+        }
+
+        val actions = DefaultActionGroup(
+            object : ToggleAction("Record", "Measure inspections, hints, and folding", AllIcons.Actions.Resume) {
+                override fun getActionUpdateThread(): ActionUpdateThread = ActionUpdateThread.BGT
+                override fun isSelected(e: AnActionEvent): Boolean = Instrumentation.enabled
+                override fun setSelected(e: AnActionEvent, state: Boolean) {
+                    Instrumentation.enabled = state
+                    if (!state) refresh()
+                }
+            },
+            DumbAwareAction.create("Refresh", AllIcons.Actions.Refresh) { refresh() },
+            DumbAwareAction.create("Clear", AllIcons.Actions.GC) { Instrumentation.clear(); refresh() },
+            DumbAwareAction.create("Export JSON", AllIcons.ToolbarDecorator.Export) {
+                FileChooserFactory.getInstance()
+                    .createSaveFileDialog(FileSaverDescriptor("Export Samples", "Save all samples as JSON", "json"), project)
+                    .save(null as VirtualFile?, "samples.json")
+                    ?.file?.writeText(Instrumentation.toJson(Instrumentation.samples()))
+            },
+        )
+
+        val contents = toolWindow.contentManager
+        listOf("Files" to byFile, "Inspections" to byTool).forEach { (title, model) ->
+            val panel = SimpleToolWindowPanel(true, true)
+            panel.toolbar = ActionManager.getInstance().createActionToolbar("MikeInstrumentation", actions, true)
+                .also { it.targetComponent = panel }.component
+            panel.setContent(JBScrollPane(TableView(model)))
+            contents.addContent(ContentFactory.getInstance().createContent(panel, title, false))
+        }
+        refresh()
+    }
+
+    private class Total(val name: String) {
+        var runs = 0
+        var wallNanos = 0L
+        var elements = 0L
+        var allocatedBytes = 0L
+
+        class Name(title: String) : ColumnInfo<Total, String>(title) {
+            override fun valueOf(item: Total): String = item.name
+        }
+        private class Num(title: String, private val get: (Total) -> Long) : ColumnInfo<Total, Long>(title) {
+            override fun valueOf(item: Total): Long = get(item)
+            override fun getColumnClass(): Class<*> = java.lang.Long::class.java
+            override fun getComparator(): Comparator<Total> = compareBy(get)
+        }
+
+        companion object {
+            val COLUMNS: Array<ColumnInfo<Total, *>> = arrayOf(
+                Num("Time, ms") { it.wallNanos / 1_000_000 },
+                Num("Runs") { it.runs.toLong() },
+                Num("Elements") { it.elements },
+                Num("Allocated, KiB") { it.allocatedBytes / 1024 },
+            )
+
+            fun of(samples: List<Sample>, key: (Sample) -> String): List<Total> =
+                samples.groupingBy(key).fold({ name, _ -> Total(name) }) { _, total, sample ->
+                    total.runs++
+                    total.wallNanos += sample.wallNanos
+                    total.elements += sample.elements
+                    if (sample.allocatedBytes > 0) total.allocatedBytes += sample.allocatedBytes
+                    total
+                }.values.sortedByDescending(Total::wallNanos)
+        }
+    }
+
+}
@@ -6,6 +6,7 @@ import com.intellij.codeInspection.ProblemsHolder
 import com.intellij.openapi.project.Project
 import com.intellij.psi.PsiElementVisitor
 import net.aquadc.mike.plugin.NamedLocalQuickFix
+import net.aquadc.mike.plugin.perf.instrumented
 import org.intellij.lang.regexp.inspection.RegExpReplacementUtil
 import org.intellij.lang.regexp.psi.RegExpCharRange
 import org.intellij.lang.regexp.psi.RegExpElementVisitor
@@ -27,7 +28,7 @@ class BadCyrillicRegexp : LocalInspectionTool() {
                     )
                 }
             }
-        }
+        }.instrumented(this, holder)
 
     class Fix(private val upper: Boolean?) : NamedLocalQuickFix(when (upper) {
         null -> "Match any Cyrillic letter"
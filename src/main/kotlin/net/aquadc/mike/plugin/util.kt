@@ -18,9 +18,11 @@ import com.intellij.psi.PsiElement
 import com.intellij.psi.PsiElementVisitor
 import com.intellij.psi.PsiExpression
 import com.intellij.psi.PsiExpressionStatement
+import com.intellij.psi.PsiFile
 import com.intellij.psi.PsiMember
 import com.intellij.psi.PsiMethod
 import com.intellij.psi.PsiMethodCallExpression
+import com.intellij.psi.PsiNewExpression
 import com.intellij.psi.PsiPrimitiveType
 import com.intellij.psi.PsiReference
 import com.intellij.psi.PsiStatement
@@ -33,6 +35,7 @@ import com.intellij.ui.dsl.builder.panel
 import com.siyeh.ig.PsiReplacementUtil
 import com.siyeh.ig.callMatcher.CallMatcher
 import it.unimi.dsi.fastutil.ints.IntArrayList
+import net.aquadc.mike.plugin.perf.instrumented
 import org.jetbrains.kotlin.idea.KotlinLanguage
 import org.jetbrains.kotlin.idea.core.ShortenReferences
 import org.jetbrains.kotlin.idea.references.mainReference
@@ -45,6 +48,7 @@ import org.jetbrains.kotlin.psi.KtCallableReferenceExpression
 import org.jetbrains.kotlin.psi.KtDotQualifiedExpression
 import org.jetbrains.kotlin.psi.KtElement
 import org.jetbrains.kotlin.psi.KtExpression
+import org.jetbrains.kotlin.psi.KtFile
 import org.jetbrains.kotlin.psi.KtFunction
 import org.jetbrains.kotlin.psi.KtLambdaExpression
 import org.jetbrains.kotlin.psi.KtNameReferenceExpression
@@ -75,15 +79,26 @@ import kotlin.reflect.KMutableProperty0
 abstract class UastInspection : LocalInspectionTool() {
 
     final override fun buildVisitor(holder: ProblemsHolder, isOnTheFly: Boolean): PsiElementVisitor =
-        UastVisitorAdapter(uVisitor(holder, isOnTheFly), true)
+        when (val visitor = uVisitor(holder, isOnTheFly)) {
+            null -> PsiElementVisitor.EMPTY_VISITOR
+            is FunctionCallVisitor -> if (visitor.callsOnly) visitor.psiVisitor(holder.file) else UastVisitorAdapter(visitor, true)
+            else -> UastVisitorAdapter(visitor, true)
+        }.instrumented(this, holder)
 
-    abstract fun uVisitor(holder: ProblemsHolder, isOnTheFly: Boolean): AbstractUastNonRecursiveVisitor
+    /** @return `null` if there's nothing to look for in [ProblemsHolder.getFile] */
+    abstract fun uVisitor(holder: ProblemsHolder, isOnTheFly: Boolean): AbstractUastNonRecursiveVisitor?
 
 }
 
+/**
+ * Looks for calls in [CallIndex] of the file, thus sharing UAST and resolution results with other inspections.
+ * @param names simple names of methods, and classes for constructor calls, to look for.
+ *   Calls with other names are skipped before resolving anything. `null` means any call
+ */
 abstract class FunctionCallVisitor(
     private val assignment: Boolean = false,
     private val comparison: Boolean = false,
+    private val names: Set<String>? = null,
 ) : AbstractUastNonRecursiveVisitor() {
     final override fun visitQualifiedReferenceExpression(node: UQualifiedReferenceExpression): Boolean {
         if (node.sourcePsi?.language === KotlinLanguage.INSTANCE) return true
@@ -92,24 +107,37 @@ abstract class FunctionCallVisitor(
     }
     final override fun visitSimpleNameReferenceExpression(node: USimpleNameReferenceExpression) =
         true
+    /**
+     * Whether [visitCallExpr] is the only thing this visitor needs.
+     * If so, file elements are looked up in [CallIndex] without converting them to UAST again.
+     */
+    internal open val callsOnly: Boolean get() = true
+
+    internal fun psiVisitor(file: PsiFile): PsiElementVisitor = object : PsiElementVisitor() {
+        private val index by lazy(LazyThreadSafetyMode.NONE) { file.callIndex }
+        override fun visitElement(element: PsiElement) {
+            visitCall(index, element)
+        }
+    }
+
     final override fun visitCallExpression(node: UCallExpression): Boolean {
         node.sourcePsi?.let { src ->
             if (src is PsiExpressionStatement) // some wisdom from IDEA sources, not sure whether it is useful
                 return true
-
-            val method = if (node.kind == UastCallKind.CONSTRUCTOR_CALL) "<init>" else node.methodName
-            val cls = node.resolvedClassFqn
-            val args = if (node.valueArgumentCount == 0) emptyList() else object : AbstractList<UExpression>() {
-                override val size: Int get() = node.valueArgumentCount
-                override fun get(index: Int): UExpression = node.valueArguments[index]
-            }
-            if (method != null && cls != null) {
-                return visitCallExpr(node, src, node.kind, null, cls, node.receiver, method, args)
-            }
+            src.containingFile?.let { visitCall(it.callIndex, src) }
         }
         return true
     }
 
+    private fun visitCall(index: CallIndex, src: PsiElement) {
+        if (names != null && src.calleeName?.let { it in names || src.isImportAliasOf(it, names) } == false) return
+        val call = index[src] ?: return
+        if (call.operator != null && !comparison) return
+        val method = call.methodName ?: return
+        val cls = call.declaringClassFqn ?: return
+        visitCallExpr(call.node, src, call.kind, call.operator, cls, call.receiver, method, call.valueArguments)
+    }
+
     final override fun visitBinaryExpression(node: UBinaryExpression): Boolean {
         val src = node.sourcePsi ?: return true
         val op = node.operatorIdentifier?.name
@@ -130,16 +158,8 @@ abstract class FunctionCallVisitor(
                     )
                 }
             }
-        } else if (comparison && (op == "<" || op == "<=" || op == ">" || op == ">=")) {
-            (node.leftOperand as? UReferenceExpression)?.let { leftRef ->
-                val cls = leftRef.resolvedClassFqn
-                if (cls != null) {
-                    return visitCallExpr(
-                        node, src, UastCallKind.METHOD_CALL, op,
-                        cls, node.leftOperand, "compareTo", listOf(node.rightOperand),
-                    )
-                }
-            }
+        } else if (comparison) {
+            src.containingFile?.let { visitCall(it.callIndex, src) }
         }
         return true
     }
@@ -149,6 +169,21 @@ abstract class FunctionCallVisitor(
     ): Boolean
 }
 
+/** Name of a called method or instantiated class as written, or `null` if unknown without resolving. */
+private val PsiElement.calleeName: String?
+    get() = when (this) {
+        is PsiMethodCallExpression -> methodExpression.referenceName
+        is PsiNewExpression -> classReference?.referenceName
+        is KtCallExpression -> (calleeExpression as? KtNameReferenceExpression)?.getReferencedName()
+        else -> null
+    }
+
+/** Whether [alias] is declared like `import android.graphics.Color.parseColor as pc`, importing one of [names]. */
+private fun PsiElement.isImportAliasOf(alias: String, names: Set<String>): Boolean =
+    (containingFile as? KtFile)?.importDirectives?.any {
+        it.aliasName == alias && it.importedFqName?.shortName()?.asString() in names
+    } == true
+
 val UResolvable.resolvedClassFqn: String?
     get() = (resolve() as? PsiMember)?.containingClass?.qualifiedName
 
@@ -159,35 +194,75 @@ fun CallMatcher.test(expr: PsiElement): Boolean = when (expr) {
 }
 
 fun CallMatcher.test(expr: KtExpression): Boolean {
-    val (refExpr, args) = if (expr is KtCallExpression) {
-        val refExpr = expr.referenceExpression() ?: return false
-
+    val (refExpr, args) = expr.callee ?: return false
+    if (expr is KtCallExpression) {
         val name = refExpr.referencedName ?: return false
         if (names().noneMatch { it == name }) return false
-
-        refExpr to expr.valueArguments.size
-    } else if (expr is KtBinaryExpression) {
-        val op = expr.operationToken
-        if (op == KtTokens.EQ) {
-            val refExpr = expr.leftRef ?: return false
-            refExpr to 1
-        } else {
-            return false
-        }
-    } else {
-        return false
     }
 
     /* impossible to check this from outside class, skip it:
     if (myParameters != null && myParameters!!.size > 0) {
         if (args.size < myParameters!!.size) return false
     }*/
-    val method = (refExpr as? KtNameReferenceExpression)?.references
-        ?.firstNotNullOfOrNull(PsiReference::resolve) as? PsiMethod ?: return false
+    val method = refExpr.resolvedMethod ?: return false
 
     return method.isCorrectArgCount(args) && methodMatches(method)
 }
 
+/**
+ * [CallMatcher]s indexed by method name.
+ * A call is resolved once and checked only against matchers with the same name,
+ * so adding matchers doesn't make checking a call more expensive.
+ */
+class CallMatchers(private vararg val matchers: CallMatcher) {
+    private val byName = HashMap<String, IntArray>().also { byName ->
+        matchers.forEachIndexed { i, matcher ->
+            matcher.names().forEach { name -> byName[name] = byName[name]?.plus(i) ?: intArrayOf(i) }
+        }
+    }
+    private val all = IntArray(matchers.size) { it }
+
+    val names: Set<String> get() = byName.keys
+
+    /** @return index of the first matcher which matches [expr] and satisfies [predicate], or -1 */
+    fun indexOfFirst(expr: PsiElement, predicate: (Int) -> Boolean = { true }): Int {
+        val candidates: IntArray
+        val args: Int
+        val method: PsiMethod?
+        when (expr) {
+            is PsiMethodCallExpression -> {
+                candidates = expr.methodExpression.referenceName?.let(byName::get) ?: return -1
+                args = expr.argumentList.expressionCount
+                method = expr.resolveMethod()
+            }
+            is KtExpression -> {
+                val (refExpr, argCount) = expr.callee ?: return -1
+                // property assignment is named after the property, not its setter
+                candidates = if (expr is KtCallExpression) {
+                    val name = refExpr.referencedName ?: return -1
+                    byName[name] ?: if (expr.isImportAliasOf(name, names)) all else return -1
+                } else all
+                args = argCount
+                method = refExpr.resolvedMethod
+            }
+            else -> return -1
+        }
+        if (method == null || !method.isCorrectArgCount(args)) return -1
+        return candidates.firstOrNull { matchers[it].methodMatches(method) && predicate(it) } ?: -1
+    }
+}
+
+/** Callee reference and argument count of a call or a property assignment */
+private val KtExpression.callee: Pair<KtReferenceExpression, Int>?
+    get() = when (this) {
+        is KtCallExpression -> referenceExpression()?.let { it to valueArguments.size }
+        is KtBinaryExpression -> if (operationToken == KtTokens.EQ) leftRef?.let { it to 1 } else null
+        else -> null
+    }
+
+private val KtReferenceExpression.resolvedMethod: PsiMethod?
+    get() = (this as? KtNameReferenceExpression)?.references?.firstNotNullOfOrNull(PsiReference::resolve) as? PsiMethod
+
 val KtBinaryExpression.leftRef: KtReferenceExpression?
     get() = (left as? KtDotQualifiedExpression)?.selectorExpression?.referenceExpression()
         ?: left as? KtReferenceExpression
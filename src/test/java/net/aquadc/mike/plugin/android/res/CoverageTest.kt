@@ -0,0 +1,84 @@
+package net.aquadc.mike.plugin.android.res
+
+import org.junit.Test
+import java.awt.Shape
+import java.awt.geom.Area
+import java.awt.geom.Rectangle2D
+
+class CoverageTest {
+
+    private val rasterizer = Coverage.Rasterizer(1.0, 256, 16)
+    private fun rect(x: Int, y: Int, w: Int, h: Int): Coverage =
+        rasterizer.rasterize(Rectangle2D.Float(x.toFloat(), y.toFloat(), w.toFloat(), h.toFloat()))
+
+    /** Probes one-pixel coverages, which also checks that bit order is the same everywhere. */
+    private fun Coverage.pixels(): Set<Pair<Int, Int>> =
+        (0 until 16).flatMap { y -> (0 until 256).map { x -> x to y } }.filterTo(HashSet()) { (x, y) -> covers(rect(x, y, 1, 1)) }
+
+    private fun Shape.pixels(): Set<Pair<Int, Int>> =
+        (0 until 16).flatMap { y -> (0 until 256).map { x -> x to y } }.filterTo(HashSet()) { (x, y) -> contains(x + .5, y + .5) }
+
+    @Test
+    fun disjointAcrossWords() {
+        val c = rect(0, 0, 60, 4)
+        c.add(rect(70, 8, 60, 4)) // grows to the right and down, words 0..2
+        assert(c.covers(rect(0, 0, 60, 4)))
+        assert(c.covers(rect(70, 8, 60, 4)))
+        assert(!c.covers(rect(60, 0, 10, 4))) // straddles the 64th pixel, uncovered
+        assert(!c.covers(rect(0, 4, 60, 4))) // the gap between rows
+        assert(c.pixels() == Area(Rectangle2D.Float(0f, 0f, 60f, 4f)).also { it.add(Area(Rectangle2D.Float(70f, 8f, 60f, 4f))) }.pixels())
+    }
+
+    @Test
+    fun growLeftAndUp() {
+        val c = rect(200, 8, 40, 4)
+        c.add(rect(10, 2, 40, 4))
+        assert(c.covers(rect(200, 8, 40, 4)))
+        assert(c.covers(rect(10, 2, 40, 4)))
+        assert(!c.covers(rect(100, 5, 1, 1)))
+    }
+
+    @Test
+    fun overlappingAcrossWords() {
+        val c = rect(0, 0, 100, 4)
+        c.add(rect(50, 0, 100, 4))
+        assert(c.covers(rect(0, 0, 150, 4)))
+        assert(!c.covers(rect(0, 0, 151, 4)))
+
+        c.subtract(rect(60, 0, 10, 4)) // a hole around the word boundary
+        assert(c.covers(rect(0, 0, 60, 4)))
+        assert(c.covers(rect(70, 0, 80, 4)))
+        assert(!c.covers(rect(63, 1, 2, 1)))
+        assert(!c.isEmpty)
+
+        c.intersect(rect(64, 0, 128, 16)) // keeps 70..150 only
+        assert(c.covers(rect(70, 0, 80, 4)))
+        assert(!c.covers(rect(0, 0, 1, 1)))
+        c.intersect(rect(200, 0, 10, 4))
+        assert(c.isEmpty)
+    }
+
+    @Test
+    fun coversExactSubset() {
+        val c = rect(10, 2, 190, 8)
+        assert(c.covers(rect(10, 2, 190, 8)))
+        assert(c.covers(rect(64, 2, 64, 8))) // exactly one word
+        assert(c.covers(Coverage()))
+        assert(!c.covers(rect(10, 2, 191, 8)))
+        assert(!c.covers(rect(9, 2, 1, 1)))
+        assert(!c.covers(rect(10, 10, 1, 1)))
+        assert(!Coverage().covers(c))
+    }
+
+    @Test
+    fun rasterizedLikeArea() {
+        val rect = Rectangle2D.Float(3.2f, 1.7f, 100.4f, 5.5f)
+        assert(rasterizer.rasterize(rect).pixels() == Area(rect).pixels())
+
+        val hole = Rectangle2D.Float(60.6f, 3.1f, 10.2f, 20f)
+        val c = rasterizer.rasterize(rect)
+        c.subtract(rasterizer.rasterize(hole))
+        assert(c.pixels() == Area(rect).also { it.subtract(Area(hole)) }.pixels())
+    }
+
+}
@@ -4,6 +4,7 @@ import android.graphics.PathDelegate
 import it.unimi.dsi.fastutil.ints.IntArrayList
 import org.junit.Test
 import java.awt.geom.Path2D
+import java.math.BigDecimal
 import kotlin.math.absoluteValue
 
 class PathCmdTest {
@@ -80,6 +81,25 @@ class PathCmdTest {
         assert(shortened == "M0 0-1-1.5-0.5 0.5") { shortened }
     }
 
+    @Test fun exactNumbers() {
+        val paths = ArrayList<Path2D.Float>()
+        val cmds = ArrayList<Cmd>()
+        PathDelegate.parse(
+            "M1.50e1 .10000000000000000000001l92233720368547758070-1 .2,.30 z",
+            paths, cmds, null, IntArrayList(), null, false,
+        )
+        val (_, l1, l2, z) = cmds
+        assert(l1.startX == BigDecimal("15.0") && l1.startY == BigDecimal(".10000000000000000000001")) { l1 }
+        assert(l2.startX == BigDecimal("92233720368547758085.0")) { l2 }
+        assert(l2.args.contentEquals(arrayOf(BigDecimal(".2"), BigDecimal(".30")))) { l2 }
+        assert(z.startX == l1.startX && z.startY == l1.startY) { z }
+
+        val coords = FloatArray(6)
+        val it = paths.single().getPathIterator(null)
+        it.currentSegment(coords)
+        assert(coords[0] == 15f && coords[1] == .1f) { coords.contentToString() }
+    }
+
     private fun printErr(cmd: Cmd, fIdx: Int) {
         val cmd = cmd.src!!
         println(cmd.pathData)